@@ -0,0 +1,95 @@
+package benchmarks;
+
+import models.Transaction;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.AnalyticsService;
+import services.SystemReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк общих отчетов по всем пользователям при разной степени параллелизма.
+ * Общее количество транзакций постоянно и распределяется между пользователями: при малом числе
+ * пользователей параллельно обрабатываются участки истории одного кошелька, при большом - группы пользователей.
+ * При подготовке отчет сравнивается с последовательным расчётом; расхождение прерывает бенчмарк с ошибкой.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="AnalyticsBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class AnalyticsBenchmark {
+    private static final int TOTAL_TRANSACTIONS = 1_000_000;
+    private static final int TOP = 10;
+
+    @Param({"1", "4", "8"})
+    public int parallelism;
+
+    @Param({"4", "1000"})
+    public int users;
+
+    @Param({"500"})
+    public int categories;
+
+    private List<User> accounts;
+    private AnalyticsService service;
+    private long from;
+    private long to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        accounts = new ArrayList<>();
+        int size = TOTAL_TRANSACTIONS / users;
+        for (int i = 0; i < users; i++) {
+            User user = new User("user" + i, "0");
+            WalletFixtures.fill(user.getWallet(), size, categories, i);
+            accounts.add(user);
+        }
+
+        // Период - средняя половина истории первого пользователя
+        List<Transaction> history = accounts.get(0).getWallet().getTransactions();
+        long first = history.get(0).getTimestamp();
+        long span = history.get(history.size() - 1).getTimestamp() - first;
+        from = first + span / 4;
+        to = first + span * 3 / 4;
+
+        service = new AnalyticsService(parallelism);
+        try (AnalyticsService sequential = new AnalyticsService(1)) {
+            verify(sequential.analyze(accounts), service.analyze(accounts), "за всю историю");
+            verify(sequential.analyze(accounts, from, to), service.analyze(accounts, from, to), "за период");
+            verify(sequential.analyze(accounts), sequential.analyze(accounts, Long.MIN_VALUE, Long.MAX_VALUE),
+                    "по индексу категорий и по истории транзакций");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public SystemReport allTime() {
+        return service.analyze(accounts);
+    }
+
+    @Benchmark
+    public SystemReport period() {
+        return service.analyze(accounts, from, to);
+    }
+
+    private void verify(SystemReport expected, SystemReport actual, String stage) {
+        String expectedText = service.render(expected, TOP);
+        String actualText = service.render(actual, TOP);
+        if (!expectedText.equals(actualText)) {
+            throw new IllegalStateException("Общий отчет " + stage + " не совпадает с последовательным расчётом:\n"
+                    + expectedText + "\n---\n" + actualText);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import models.CategoryAggregate;
+import models.Money;
+import models.Transaction;
+import models.TransactionType;
+import models.User;
+import models.Wallet;
+import org.openjdk.jmh.annotations.*;
+import services.FinanceService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Бенчмарк группировки транзакций по категориям.
+ * Сравнивает прежний способ (отдельный проход по транзакциям для каждой категории),
+ * группировку за один проход, копирование индекса категорий кошелька
+ * и построение отчета о бюджете на основе агрегата.
+ *
+ * Запуск с профилировщиком аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="CategoryAggregationBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class CategoryAggregationBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"500"})
+    public int categories;
+
+    private User user;
+    private Wallet wallet;
+    private List<Transaction> transactions;
+    private FinanceService financeService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        user = WalletFixtures.user(size, categories, 42);
+        wallet = user.getWallet();
+        transactions = wallet.getTransactions();
+        financeService = new FinanceService(0);
+    }
+
+    /**
+     * Прежний способ: список категорий одним проходом, затем отдельный проход по истории для каждой категории.
+     */
+    @Benchmark
+    public long perCategoryStreams() {
+        Set<String> incomeCategories = transactions.stream()
+                .filter(t -> t.getType() == TransactionType.INCOME)
+                .map(Transaction::getCategory)
+                .collect(Collectors.toSet());
+        long checksum = 0;
+        for (String category : incomeCategories) {
+            checksum += transactions.stream()
+                    .filter(t -> t.getType() == TransactionType.INCOME && t.getCategory().equals(category))
+                    .mapToLong(Transaction::getAmountMinor)
+                    .reduce(0, Money::addMinor);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public CategoryAggregate singlePass() {
+        return CategoryAggregate.of(transactions);
+    }
+
+    @Benchmark
+    public CategoryAggregate walletIndexSnapshot() {
+        return wallet.getCategoryAggregate();
+    }
+
+    @Benchmark
+    public String budgetReport() {
+        return financeService.getBudget(user);
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import models.CategoryAggregate;
+import models.Transaction;
+import models.User;
+import models.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк способов хранения истории кошелька (системное свойство finance.history.store):
+ * массив объектов в куче (heap), столбцы вне кучи (offheap) и столбцы в отображаемом в память
+ * временном файле (mapped).
+ * Сравнивает группировку по категориям за весь период и за половину истории (обход столбцов
+ * без создания объектов транзакций) и последовательное чтение транзакций по одной.
+ * Нагрузку на сборщик мусора показывает профилировщик аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="ColumnarHistoryBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ColumnarHistoryBenchmark {
+
+    @Param({"heap", "offheap", "mapped"})
+    public String store;
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"500"})
+    public int categories;
+
+    private Wallet wallet;
+    private long from;
+    private long to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Способ хранения выбирается при создании истории кошелька
+        System.setProperty("finance.history.store", store);
+        User user = WalletFixtures.user(size, categories, 42);
+        wallet = user.getWallet();
+        List<Transaction> transactions = wallet.getTransactions();
+        from = transactions.get(size / 4).getTimestamp();
+        to = transactions.get(size * 3 / 4).getTimestamp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty("finance.history.store");
+    }
+
+    @Benchmark
+    public CategoryAggregate aggregateAll() {
+        return CategoryAggregate.of(wallet.getTransactions());
+    }
+
+    @Benchmark
+    public CategoryAggregate aggregatePeriod() {
+        return CategoryAggregate.of(wallet.getTransactionsBetween(from, to));
+    }
+
+    @Benchmark
+    public long readEach() {
+        long checksum = 0;
+        for (Transaction transaction : wallet.getTransactions()) {
+            checksum += transaction.getAmountMinor();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,102 @@
+package benchmarks;
+
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.AuthService;
+import services.ExportFormat;
+import services.ExportService;
+import services.FinanceService;
+import storage.FsyncPolicy;
+import storage.StorageConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Бенчмарк выгрузки истории операций всех пользователей в файлы.
+ * - export: потоковая выгрузка ExportService (по файлу на пользователя) при разном количестве потоков;
+ * - text: прежний способ - текст getAllTransactions целиком в памяти и запись строки в файл.
+ * Расход памяти сравнивается профилировщиком аллокаций (-prof gc).
+ * При подготовке проверяется, что выгружены все операции всех пользователей.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="ExportBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+    private static final int USERS = 16;
+    private static final int SIZE = 100_000;
+    private static final int CATEGORIES = 50;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"CSV", "JSONL"})
+    public ExportFormat format;
+
+    private Path dataDir;
+    private Path exportDir;
+    private AuthService authService;
+    private ExportService exportService;
+    private FinanceService financeService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("export-data");
+        exportDir = Files.createTempDirectory("export");
+        authService = new AuthService(new StorageConfig(dataDir.toString(), false, FsyncPolicy.NEVER, 64));
+        for (int i = 0; i < USERS; i++) {
+            authService.register("user" + i, "password");
+            WalletFixtures.fill(authService.getUser("user" + i).getWallet(), SIZE, CATEGORIES, i);
+        }
+        exportService = new ExportService(parallelism);
+        financeService = new FinanceService(0);
+
+        Map<String, Long> exported = exportService.exportAll(authService, format, exportDir);
+        long rows = exported.values().stream().mapToLong(Long::longValue).sum();
+        if (exported.size() != USERS || rows != (long) USERS * SIZE) {
+            throw new IllegalStateException("Выгружено " + rows + " операций " + exported.size() + " пользователей");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        exportService.close();
+        authService.close();
+        for (Path dir : new Path[]{dataDir, exportDir}) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, Long> export() throws IOException {
+        return exportService.exportAll(authService, format, exportDir);
+    }
+
+    @Benchmark
+    public long text() throws IOException {
+        long length = 0;
+        for (int i = 0; i < USERS; i++) {
+            User user = authService.getUser("user" + i);
+            String text = financeService.getAllTransactions(user);
+            Files.writeString(exportDir.resolve("user" + i + ".txt"), text, StandardCharsets.UTF_8);
+            length += text.length();
+        }
+        return length;
+    }
+}
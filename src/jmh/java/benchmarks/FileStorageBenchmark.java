@@ -0,0 +1,69 @@
+package benchmarks;
+
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import storage.FileStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк сохранения и загрузки данных пользователя через FileStorage.
+ * Измеряет отдельно запись, чтение и полный цикл записи с последующим чтением.
+ *
+ * Запуск с профилировщиком аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="FileStorageBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FileStorageBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"10", "500"})
+    public int categories;
+
+    private User user;
+    private Path dir;
+    private String savedPath;
+    private String scratchPath;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        user = WalletFixtures.user(size, categories, 42);
+        dir = Files.createTempDirectory("file-storage-bench");
+        savedPath = dir.resolve("saved.dat").toString();
+        scratchPath = dir.resolve("scratch.dat").toString();
+        FileStorage.saveData(user, savedPath);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(savedPath));
+        Files.deleteIfExists(Path.of(scratchPath));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void saveData() throws IOException {
+        FileStorage.saveData(user, scratchPath);
+    }
+
+    @Benchmark
+    public Object loadData() throws IOException, ClassNotFoundException {
+        return FileStorage.loadData(savedPath);
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, ClassNotFoundException {
+        FileStorage.saveData(user, scratchPath);
+        return FileStorage.loadData(scratchPath);
+    }
+}
@@ -0,0 +1,117 @@
+package benchmarks;
+
+import models.Transaction;
+import models.TransactionType;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.FinanceService;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк формирования отчетов FinanceService.
+ * Отчеты строятся по кошелькам разного размера и с разным количеством категорий.
+ * Основные замеры выполняются с отключенным кэшем отчетов, чтобы измерять само формирование;
+ * замер cachedOverview показывает стоимость повторного просмотра неизменного кошелька.
+ * writeTopExpenses отбирает 20 крупнейших расходов ограниченной кучей, sortTopExpenses - те же расходы
+ * сортировкой всей истории, как при внешней сортировке выгруженного списка.
+ *
+ * Запуск с профилировщиком аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="FinanceServiceBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class FinanceServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"10", "500"})
+    public int categories;
+
+    private FinanceService financeService;
+    private FinanceService cachedFinanceService;
+    private User user;
+    private List<String> reportCategories;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        financeService = new FinanceService(0);
+        cachedFinanceService = new FinanceService();
+        user = WalletFixtures.user(size, categories, 42);
+        // Отчет по категориям: две расходные и одна доходная категория
+        reportCategories = List.of(WalletFixtures.expenseCategory(0), WalletFixtures.expenseCategory(1),
+                WalletFixtures.incomeCategory(0));
+    }
+
+    @Benchmark
+    public String getBudgetByTypeExpense() {
+        return financeService.getBudgetByType(user, TransactionType.EXPENSE);
+    }
+
+    @Benchmark
+    public String getBudgetByTypeIncome() {
+        return financeService.getBudgetByType(user, TransactionType.INCOME);
+    }
+
+    @Benchmark
+    public String getOverview() {
+        return financeService.getOverview(user);
+    }
+
+    @Benchmark
+    public String getCategoryTransactions() {
+        return financeService.getCategoryTransactions(user, reportCategories);
+    }
+
+    @Benchmark
+    public String getAllTransactions() {
+        return financeService.getAllTransactions(user);
+    }
+
+    @Benchmark
+    public int writeAllTransactions() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        return financeService.writeTransactions(user, null, Long.MIN_VALUE, Long.MAX_VALUE, 1, 0, out);
+    }
+
+    @Benchmark
+    public int writeTransactionsPage() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        return financeService.writeTransactions(user, TransactionType.EXPENSE, Long.MIN_VALUE, Long.MAX_VALUE, 10, 20, out);
+    }
+
+    @Benchmark
+    public String cachedOverview() {
+        return cachedFinanceService.getOverview(user);
+    }
+
+    @Benchmark
+    public int writeTopExpenses() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        return financeService.writeTopTransactions(user, TransactionType.EXPENSE, null, Long.MIN_VALUE, Long.MAX_VALUE, 20, out);
+    }
+
+    @Benchmark
+    public List<Transaction> sortTopExpenses() {
+        return user.getWallet().getTransactions().stream()
+                .filter(t -> t.getType() == TransactionType.EXPENSE)
+                .sorted(Comparator.comparingLong(Transaction::getAmountMinor).reversed())
+                .limit(20)
+                .toList();
+    }
+
+    @Benchmark
+    public int writeTopCategories() {
+        PrintWriter out = new PrintWriter(Writer.nullWriter());
+        return financeService.writeTopCategories(user, TransactionType.EXPENSE, Long.MIN_VALUE, Long.MAX_VALUE, 10, out);
+    }
+}
@@ -0,0 +1,164 @@
+package benchmarks;
+
+import models.Money;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.AuthService;
+import services.FinanceService;
+import services.ImportResult;
+import services.ImportService;
+import storage.FsyncPolicy;
+import storage.StorageConfig;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Бенчмарк скорости загрузки выписки (строк в секунду).
+ * Каждая операция загружает всю выписку в кошелек нового пользователя с журналом и сбросом на диск
+ * после каждой фиксации (настройки интерактивного режима):
+ * - import: потоковый импорт CSV пакетами с одной фиксацией журнала на пакет;
+ * - commands: те же строки как команды add-income/add-expense с фиксацией после каждой команды,
+ *   как при вводе в консоли.
+ * При подготовке проверяется, что импорт принимает все строки выписки.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="ImportBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    private static final int ROWS = 100_000;
+    private static final int CATEGORIES = 50;
+    private static final long START_TIMESTAMP = 1_700_000_000_000L;
+
+    @Param({"import", "commands"})
+    public String mode;
+
+    private String statement;
+    private Path dataDir;
+    private AuthService authService;
+    private ImportService importService;
+    private FinanceService financeService;
+    private PrintWriter errors;
+    private PrintStream console;
+    private int users;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Команды выводят сообщения о каждой операции; в бенчмарке они не нужны
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        errors = new PrintWriter(Writer.nullWriter());
+        statement = statement(ROWS);
+
+        setUpStorage();
+        ImportResult result = importService.importCsv(newUser(), new StringReader(statement), errors);
+        if (result.getImported() != ROWS) {
+            throw new IllegalStateException("Импортировано " + result.getImported() + " строк из " + ROWS);
+        }
+        tearDownStorage();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpStorage() throws IOException {
+        dataDir = Files.createTempDirectory("import");
+        authService = new AuthService(new StorageConfig(dataDir.toString(), true, FsyncPolicy.ALWAYS, 64));
+        importService = new ImportService(authService);
+        financeService = new FinanceService();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownStorage() throws IOException {
+        authService.close();
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long load() throws IOException {
+        User user = newUser();
+        if (mode.equals("import")) {
+            return importService.importCsv(user, new StringReader(statement), errors).getImported();
+        }
+
+        BufferedReader reader = new BufferedReader(new StringReader(statement));
+        reader.readLine();
+        long loaded = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split(",");
+            Money amount = Money.parse(fields[2]);
+            if (fields[1].equals("income")) {
+                financeService.addIncome(user, fields[3], amount);
+            } else {
+                financeService.addExpense(user, fields[3], amount);
+            }
+            authService.commit();
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * Регистрирует нового пользователя и устанавливает бюджеты расходных категорий,
+     * чтобы расходы не превышали лимит.
+     *
+     * @return Пользователь с пустым кошельком.
+     */
+    private User newUser() {
+        String username = "user" + users++;
+        authService.register(username, "password");
+        User user = authService.getUser(username);
+        for (int i = 0; i < CATEGORIES; i++) {
+            financeService.setBudget(user, WalletFixtures.expenseCategory(i), Money.ofMinor(WalletFixtures.CATEGORY_BUDGET));
+        }
+        authService.commit();
+        return user;
+    }
+
+    /**
+     * Формирует выписку: каждая пятая строка - доход, покрывающий последующие расходы.
+     * Даты операций возрастают, в среднем по 12 операций в день.
+     *
+     * @param rows Количество строк.
+     * @return Текст CSV с заголовком.
+     */
+    private static String statement(int rows) {
+        Random random = new Random(42);
+        StringBuilder csv = new StringBuilder("date,type,amount,category,description\n");
+        long timestamp = START_TIMESTAMP;
+        for (int i = 0; i < rows; i++) {
+            timestamp += random.nextInt(4 * 60 * 60 * 1000);
+            String date = Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate().toString();
+            if (i % 5 == 0) {
+                csv.append(date).append(",income,1000.00,").append(WalletFixtures.incomeCategory(i % 3)).append(",Поступление\n");
+            } else {
+                Money amount = Money.ofMinor(1 + random.nextInt(20_000));
+                csv.append(date).append(",expense,").append(amount).append(',')
+                        .append(WalletFixtures.expenseCategory(random.nextInt(CATEGORIES))).append(",Покупка\n");
+            }
+        }
+        return csv.toString();
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк накладных расходов записи показателей: замер длительности с записью в гистограмму
+ * в сравнении с одним вызовом System.nanoTime(), в одном и в нескольких потоках.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="MetricsBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private LatencyHistogram timer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timer = Metrics.timer("bench.record");
+    }
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void recordSince() {
+        timer.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    public void recordValue() {
+        timer.record(ThreadLocalRandom.current().nextLong(1_000_000_000L));
+    }
+
+    @Benchmark
+    public void lookupAndRecord() {
+        Metrics.timer("command.show-overview").recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSinceContended() {
+        timer.recordSince(System.nanoTime());
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import models.Money;
+import models.Transaction;
+import models.TransactionType;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк суммирования денежных сумм.
+ * Сравнивает прежний способ (свертка BigDecimal::add, создающая объект на каждый элемент)
+ * с суммированием копеек в примитиве long.
+ *
+ * Запуск с профилировщиком аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="MoneyBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<BigDecimal> decimals;
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        decimals = new ArrayList<>(size);
+        transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long minor = 1 + random.nextInt(1_000_000);
+            decimals.add(BigDecimal.valueOf(minor, Money.SCALE));
+            transactions.add(new Transaction(Money.ofMinor(minor), i, TransactionType.EXPENSE, "Категория"));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalReduce() {
+        return decimals.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public long minorUnitsReduce() {
+        return transactions.stream()
+                .mapToLong(Transaction::getAmountMinor)
+                .reduce(0, Money::addMinor);
+    }
+
+    @Benchmark
+    public long minorUnitsLoop() {
+        long total = 0;
+        for (Transaction t : transactions) {
+            total = Money.addMinor(total, t.getAmountMinor());
+        }
+        return total;
+    }
+}
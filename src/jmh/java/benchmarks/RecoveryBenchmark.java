@@ -0,0 +1,103 @@
+package benchmarks;
+
+import models.Money;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.AuthService;
+import storage.FsyncPolicy;
+import storage.StorageConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Бенчмарк времени перезапуска в зависимости от объема данных.
+ * Данные создаются через обычные операции с журналом. В режиме journal вся история хранится только
+ * в журнале и воспроизводится при каждом запуске; в режиме snapshot сохраняется снимок,
+ * после которого в журнал попадает лишь небольшой хвост изменений.
+ * Замеряется открытие хранилища (индекс и журнал) и открытие с загрузкой всех кошельков.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="RecoveryBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+    private static final int USERS = 100;
+    private static final int CATEGORIES = 20;
+
+    /**
+     * Количество изменений после последнего снимка в режиме snapshot.
+     */
+    private static final int TAIL = 1_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int transactions;
+
+    @Param({"journal", "snapshot"})
+    public String mode;
+
+    private Path dataDir;
+    private StorageConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = Files.createTempDirectory("recovery");
+        config = new StorageConfig(dataDir.toString(), true, FsyncPolicy.NEVER, 64);
+        AuthService authService = new AuthService(config);
+        User[] users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            authService.register("user" + i, "password");
+            users[i] = authService.getUser("user" + i);
+        }
+
+        boolean snapshot = mode.equals("snapshot");
+        int history = snapshot ? transactions - TAIL : transactions;
+        for (int i = 0; i < history; i++) {
+            addIncome(users, i);
+        }
+        if (snapshot) {
+            authService.saveUsers();
+            for (int i = history; i < transactions; i++) {
+                addIncome(users, i);
+            }
+        }
+        authService.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public AuthService open() {
+        AuthService authService = new AuthService(config);
+        authService.close();
+        return authService;
+    }
+
+    @Benchmark
+    public int openAndLoadAll() {
+        AuthService authService = new AuthService(config);
+        int loaded = authService.getAllUsers().size();
+        authService.close();
+        return loaded;
+    }
+
+    private static void addIncome(User[] users, int index) {
+        users[index % USERS].getWallet().addIncome(WalletFixtures.incomeCategory(index % CATEGORIES), Money.ofMinor(1 + index % 10_000));
+    }
+}
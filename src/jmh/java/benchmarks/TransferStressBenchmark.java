@@ -0,0 +1,167 @@
+package benchmarks;
+
+import models.Money;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+import services.AuthService;
+import services.FinanceService;
+import services.TransferException;
+import storage.FsyncPolicy;
+import storage.StorageConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочная проверка переводов между пользователями.
+ * Несколько потоков выполняют случайные встречные переводы, а отдельный поток параллельно сохраняет данные.
+ * После каждой итерации проверяется, что сумма балансов не изменилась; в конце данные перечитываются
+ * с диска (сегменты и журнал) и проверяются ещё раз. Нарушение инварианта прерывает бенчмарк с ошибкой.
+ * С параметром keyed=true каждый перевод получает ключ идемпотентности, а каждый десятый запрос повторяет
+ * предыдущий перевод потока с тем же ключом: повтор не должен менять балансы, а индекс ключей
+ * заполняется до предела и вытесняет старые ключи.
+ *
+ * Запуск:
+ * mvn -Pbench compile exec:exec -Djmh.args="TransferStressBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferStressBenchmark {
+    private static final long INITIAL_BALANCE = 1_000_000_00L;
+
+    /**
+     * Количество пользователей: при малом числе почти каждый перевод конкурирует за одни и те же кошельки.
+     */
+    @Param({"4", "64"})
+    public int users;
+
+    /**
+     * Передавать ли ключи идемпотентности (с повторами запросов).
+     */
+    @Param({"false", "true"})
+    public boolean keyed;
+
+    private Path dataDir;
+    private StorageConfig config;
+    private AuthService authService;
+    private FinanceService financeService;
+    private User[] accounts;
+    private long expectedTotal;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Переводы выводят предупреждения о бюджете; в бенчмарке они не нужны
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        dataDir = Files.createTempDirectory("transfer-stress");
+        config = new StorageConfig(dataDir.toString(), true, FsyncPolicy.NEVER, 64);
+        authService = new AuthService(config);
+        financeService = new FinanceService();
+        accounts = new User[users];
+        for (int i = 0; i < users; i++) {
+            String username = "user" + i;
+            authService.register(username, "password");
+            accounts[i] = authService.getUser(username);
+            financeService.addIncome(accounts[i], "Начальный баланс", Money.ofMinor(INITIAL_BALANCE));
+        }
+        expectedTotal = totalBalance(accounts);
+    }
+
+    /**
+     * Последний перевод потока, который повторяется с тем же ключом.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+        private static final AtomicInteger CLIENTS = new AtomicInteger();
+
+        private final String prefix = "client" + CLIENTS.incrementAndGet() + "-";
+        private long requests;
+        private int from;
+        private int to;
+        private Money amount;
+        private String key;
+    }
+
+    @Benchmark
+    @Group("transfers")
+    @GroupThreads(7)
+    public boolean transfer(Client client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (client.key == null || random.nextInt(10) != 0) {
+            client.from = random.nextInt(users);
+            int to = random.nextInt(users - 1);
+            client.to = to >= client.from ? to + 1 : to;
+            client.amount = Money.ofMinor(1 + random.nextInt(10_000));
+            client.key = keyed ? client.prefix + client.requests++ : null;
+        }
+        try {
+            financeService.transfer(accounts[client.from], accounts[client.to].getUsername(), client.amount,
+                    client.key, authService);
+            return true;
+        } catch (TransferException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("transfers")
+    @GroupThreads(1)
+    public void save() {
+        authService.saveUsers();
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkBalances() {
+        verify(totalBalance(accounts), "после итерации");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try {
+            // Перечитываем данные с диска: последний снимок плюс записи журнала после него
+            authService.commit();
+            AuthService reopened = new AuthService(config);
+            User[] restored = new User[users];
+            for (int i = 0; i < users; i++) {
+                restored[i] = reopened.getUser(accounts[i].getUsername());
+            }
+            verify(totalBalance(restored), "после восстановления");
+        } finally {
+            System.setOut(console);
+            try (Stream<Path> files = Files.walk(dataDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private void verify(long total, String stage) {
+        if (total != expectedTotal) {
+            throw new IllegalStateException("Сумма балансов " + stage + " изменилась: ожидалось "
+                    + Money.ofMinor(expectedTotal) + ", получено " + Money.ofMinor(total));
+        }
+    }
+
+    private static long totalBalance(User[] users) {
+        long total = 0;
+        for (User user : users) {
+            total = Money.addMinor(total, user.getWallet().getBalance().getMinorUnits());
+        }
+        return total;
+    }
+}
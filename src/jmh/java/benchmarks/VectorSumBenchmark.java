@@ -0,0 +1,65 @@
+package benchmarks;
+
+import models.CategoryStats;
+import models.Transaction;
+import models.TransactionType;
+import models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк суммирования истории по типу и по категории (CategoryStats.total):
+ * обход объектов транзакций в куче (objects), построчное суммирование столбцов вне кучи (scalar)
+ * и векторное суммирование столбцов через Vector API (vector).
+ * Каждое значение параметра замеряется в отдельном процессе JMH, поэтому ядро суммирования,
+ * выбираемое один раз при запуске по свойству finance.history.simd, соответствует параметру.
+ *
+ * mvn -Pbench compile exec:exec -Djmh.args="VectorSumBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class VectorSumBenchmark {
+
+    @Param({"objects", "scalar", "vector"})
+    public String kernel;
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"500"})
+    public int categories;
+
+    private List<Transaction> transactions;
+    private String category;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("finance.history.store", kernel.equals("objects") ? "heap" : "offheap");
+        System.setProperty("finance.history.simd", String.valueOf(kernel.equals("vector")));
+        User user = WalletFixtures.user(size, categories, 42);
+        transactions = user.getWallet().getTransactions();
+        category = WalletFixtures.expenseCategory(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.clearProperty("finance.history.store");
+        System.clearProperty("finance.history.simd");
+    }
+
+    @Benchmark
+    public CategoryStats sumByType() {
+        return CategoryStats.total(transactions, TransactionType.EXPENSE, null);
+    }
+
+    @Benchmark
+    public CategoryStats sumByCategory() {
+        return CategoryStats.total(transactions, TransactionType.EXPENSE, category);
+    }
+}
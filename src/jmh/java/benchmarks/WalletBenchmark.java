@@ -0,0 +1,101 @@
+package benchmarks;
+
+import models.Money;
+import models.Transaction;
+import models.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк операций кошелька: добавления расхода, расчёта остатка бюджета и получения снимков
+ * истории и бюджетов (getTransactions, getTransactionsBetween за последние сутки, getBudgets).
+ * Размер кошелька и количество категорий задаются параметрами; эти операции не должны
+ * зависеть от размера истории транзакций.
+ * copyTransactions - прежний способ получения истории копированием списка, для сравнения.
+ *
+ * Запуск с профилировщиком аллокаций:
+ * mvn -Pbench compile exec:exec -Djmh.args="WalletBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class WalletBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"10", "500"})
+    public int categories;
+
+    private Wallet wallet;
+    private String[] expenseCategories;
+    private Money amount;
+    private int next;
+    private long dayStart;
+    private long dayEnd;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        expenseCategories = new String[categories - WalletFixtures.incomeCategories(categories)];
+        for (int i = 0; i < expenseCategories.length; i++) {
+            expenseCategories[i] = WalletFixtures.expenseCategory(i);
+        }
+        amount = Money.ofMinor(125);
+    }
+
+    /**
+     * Пересоздает кошелек перед каждой итерацией, чтобы добавленные расходы не увеличивали его размер
+     * от итерации к итерации.
+     */
+    @Setup(Level.Iteration)
+    public void resetWallet() {
+        wallet = WalletFixtures.user(size, categories, 42).getWallet();
+        List<Transaction> transactions = wallet.getTransactions();
+        dayEnd = transactions.get(transactions.size() - 1).getTimestamp() + 1;
+        dayStart = dayEnd - 24 * 60 * 60 * 1000L;
+    }
+
+    private String nextCategory() {
+        String category = expenseCategories[next];
+        next = next + 1 == expenseCategories.length ? 0 : next + 1;
+        return category;
+    }
+
+    @Benchmark
+    public Wallet addExpense() {
+        wallet.addExpense(nextCategory(), amount);
+        return wallet;
+    }
+
+    @Benchmark
+    public Money getBudgetRemain() {
+        return wallet.getBudgetRemain(nextCategory());
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactions() {
+        return wallet.getTransactions();
+    }
+
+    @Benchmark
+    public List<Transaction> copyTransactions() {
+        return new ArrayList<>(wallet.getTransactions());
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactionsBetween() {
+        return wallet.getTransactionsBetween(dayStart, dayEnd);
+    }
+
+    @Benchmark
+    public Map<String, Money> getBudgets() {
+        return wallet.getBudgets();
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import models.Money;
+import models.Transaction;
+import models.TransactionType;
+import models.User;
+import models.Wallet;
+
+import java.util.Random;
+
+/**
+ * Генератор тестовых кошельков для бенчмарков.
+ * Кошелек заполняется через восстановление истории (без проверок и уведомлений),
+ * поэтому даже кошелек на миллион транзакций строится за доли секунды.
+ * Данные детерминированы: одинаковые параметры дают одинаковый кошелек.
+ */
+final class WalletFixtures {
+    /**
+     * Начальный доход, покрывающий все расходы, в том числе добавляемые во время замеров.
+     */
+    static final long INITIAL_INCOME = 1_000_000_000_000_00L;
+
+    /**
+     * Бюджет каждой расходной категории: достаточно большой, чтобы расходы не выводили предупреждений.
+     */
+    static final long CATEGORY_BUDGET = 1_000_000_000_000_00L;
+
+    private static final long START_TIMESTAMP = 1_700_000_000_000L;
+
+    private WalletFixtures() {
+    }
+
+    /**
+     * Название расходной категории с указанным номером.
+     *
+     * @param index Номер категории.
+     * @return Название категории.
+     */
+    static String expenseCategory(int index) {
+        return "Расход-" + index;
+    }
+
+    /**
+     * Название доходной категории с указанным номером.
+     *
+     * @param index Номер категории.
+     * @return Название категории.
+     */
+    static String incomeCategory(int index) {
+        return "Доход-" + index;
+    }
+
+    /**
+     * Количество доходных категорий для заданного общего числа категорий (примерно пятая часть).
+     *
+     * @param categories Общее количество категорий.
+     * @return Количество доходных категорий.
+     */
+    static int incomeCategories(int categories) {
+        return Math.max(1, categories / 5);
+    }
+
+    /**
+     * Создает пользователя с кошельком заданного размера.
+     * Примерно пятая часть транзакций - доходы, остальные - расходы с установленными бюджетами.
+     *
+     * @param size Количество транзакций.
+     * @param categories Общее количество категорий.
+     * @param seed Начальное значение генератора случайных чисел.
+     * @return Пользователь с заполненным кошельком.
+     */
+    static User user(int size, int categories, long seed) {
+        User user = new User("bench", "0");
+        fill(user.getWallet(), size, categories, seed);
+        return user;
+    }
+
+    /**
+     * Заполняет кошелек бюджетами и транзакциями.
+     *
+     * @param wallet Пустой кошелек.
+     * @param size Количество транзакций.
+     * @param categories Общее количество категорий.
+     * @param seed Начальное значение генератора случайных чисел.
+     */
+    static void fill(Wallet wallet, int size, int categories, long seed) {
+        Random random = new Random(seed);
+        int income = incomeCategories(categories);
+        int expense = Math.max(1, categories - income);
+        for (int i = 0; i < expense; i++) {
+            wallet.restoreBudget(expenseCategory(i), Money.ofMinor(CATEGORY_BUDGET));
+        }
+
+        long timestamp = START_TIMESTAMP;
+        wallet.restoreTransaction(new Transaction(Money.ofMinor(INITIAL_INCOME), timestamp, TransactionType.INCOME, incomeCategory(0)));
+        for (int i = 1; i < size; i++) {
+            timestamp += 1 + random.nextInt(60_000);
+            Money amount = Money.ofMinor(1 + random.nextInt(100_000));
+            Transaction transaction = random.nextInt(5) == 0
+                    ? new Transaction(amount, timestamp, TransactionType.INCOME, incomeCategory(random.nextInt(income)))
+                    : new Transaction(amount, timestamp, TransactionType.EXPENSE, expenseCategory(random.nextInt(expense)));
+            wallet.restoreTransaction(transaction);
+        }
+    }
+}
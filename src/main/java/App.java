@@ -1,15 +1,321 @@
+import api.ApiServer;
+import api.LoadTest;
+import services.AuthService;
+import services.ExportFormat;
+import services.ExportService;
+import services.FinanceService;
+import storage.FsyncPolicy;
+import storage.StorageConfig;
 import ui.CommandProcessor;
+import workload.Workload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Точка входа в приложение управления финансами.
- * Запускает интерфейс командной строки.
+ * Без аргументов запускает интерактивный интерфейс командной строки.
+ * С аргументами запускает пакетный режим: команды читаются из файла или стандартного ввода.
+ *
+ * Аргументы пакетного режима:
+ * - <file>: Файл с командами (по одной в строке).
+ * - --batch: Читать команды из стандартного ввода (если файл не указан).
+ * - --commit-every <N>: Фиксировать журнал каждые N команд (по умолчанию - один раз в конце пакета).
+ *
+ * Аргументы выгрузки (команды не выполняются):
+ * - --export <csv|jsonl> <dir>: Выгрузить историю операций всех пользователей в отдельные файлы каталога.
+ *
+ * Аргументы HTTP API (команды не выполняются):
+ * - --serve [port]: Запустить HTTP API (по умолчанию на порту 8080) до завершения процесса.
+ * - --load-test [url]: Выполнить нагрузочный тест HTTP API по адресу url; без адреса тест выполняется
+ *   против встроенного сервера с данными во временном каталоге.
+ * - --sessions <N>: Количество одновременных сессий нагрузочного теста (по умолчанию 1000).
+ * - --seconds <N>: Длительность нагрузочного теста в секундах (по умолчанию 10).
+ *
+ * Аргументы синтетической нагрузки (команды не выполняются):
+ * - --workload [dir]: Выполнить нагрузку через сервисы с данными в каталоге dir (данные сохраняются,
+ *   например, для бенчмарков запуска и восстановления); без каталога - во временном каталоге.
+ * - --users <N>: Количество пользователей (по умолчанию 1000).
+ * - --operations <N>: Количество операций (по умолчанию не ограничено, если задана длительность).
+ * - --seconds <N>: Длительность нагрузки в секундах (по умолчанию 10, если не задано количество операций).
+ * - --threads <N>: Количество потоков нагрузки (по умолчанию 1).
+ * - --seed <N>: Начальное число генератора случайных значений (по умолчанию 42).
+ * - --mix <смесь>: Веса операций, например income=20,expense=40,budget=5,transfer=15,report=20.
  */
 public class App {
     public static void main(String[] args) {
-        // Инициализация процессора команд
-        CommandProcessor processor = new CommandProcessor();
+        if (args.length == 0) {
+            // Инициализация процессора команд
+            CommandProcessor processor = new CommandProcessor();
+
+            // Запуск обработки команд
+            processor.start();
+            return;
+        }
+
+        String script = null;
+        int commitEvery = 0;
+        String exportFormat = null;
+        String exportDir = null;
+        Integer servePort = null;
+        String loadTestUrl = null;
+        boolean loadTest = false;
+        int sessions = 1000;
+        Integer seconds = null;
+        boolean workload = false;
+        String workloadDir = null;
+        int users = 1000;
+        long operations = 0;
+        int threads = 1;
+        long seed = 42;
+        String mix = Workload.DEFAULT_MIX;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--batch" -> { }
+                case "--serve" -> {
+                    servePort = ApiServer.DEFAULT_PORT;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        try {
+                            servePort = Integer.parseInt(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.out.println("Ошибка: Укажите номер порта, например: --serve 8080");
+                            return;
+                        }
+                    }
+                }
+                case "--load-test" -> {
+                    loadTest = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        loadTestUrl = args[++i];
+                    }
+                }
+                case "--workload" -> {
+                    workload = true;
+                    if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                        workloadDir = args[++i];
+                    }
+                }
+                case "--mix" -> {
+                    if (i + 1 >= args.length) {
+                        System.out.println("Ошибка: Укажите смесь операций, например: --mix " + Workload.DEFAULT_MIX);
+                        return;
+                    }
+                    mix = args[++i];
+                }
+                case "--sessions", "--seconds", "--users", "--operations", "--threads", "--seed" -> {
+                    try {
+                        long value = Long.parseLong(args[i + 1]);
+                        switch (args[i++]) {
+                            case "--sessions" -> sessions = Math.toIntExact(value);
+                            case "--seconds" -> seconds = Math.toIntExact(value);
+                            case "--users" -> users = Math.toIntExact(value);
+                            case "--operations" -> operations = value;
+                            case "--threads" -> threads = Math.toIntExact(value);
+                            default -> seed = value;
+                        }
+                    } catch (ArrayIndexOutOfBoundsException | NumberFormatException | ArithmeticException e) {
+                        System.out.println("Ошибка: Укажите число после " + args[i] + ", например: " + args[i] + " 10");
+                        return;
+                    }
+                }
+                case "--commit-every" -> {
+                    try {
+                        commitEvery = Integer.parseInt(args[++i]);
+                    } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                        System.out.println("Ошибка: Укажите количество команд между фиксациями, например: --commit-every 1000");
+                        return;
+                    }
+                }
+                case "--export" -> {
+                    if (i + 2 >= args.length) {
+                        System.out.println("Ошибка: Укажите формат и каталог выгрузки, например: --export csv export");
+                        return;
+                    }
+                    exportFormat = args[++i];
+                    exportDir = args[++i];
+                }
+                default -> script = args[i];
+            }
+        }
+
+        if (exportDir != null) {
+            exportAll(exportFormat, exportDir);
+            return;
+        }
+        if (servePort != null) {
+            serve(servePort);
+            return;
+        }
+        if (loadTest) {
+            loadTest(loadTestUrl, sessions, seconds != null ? seconds : 10);
+            return;
+        }
+        if (workload) {
+            int duration = seconds != null ? seconds : operations > 0 ? 0 : 10;
+            runWorkload(workloadDir, users, operations, duration, threads, seed, mix);
+            return;
+        }
+
+        // В пакетном режиме журнал фиксируется только процессором команд, а не по размеру группы
+        StorageConfig config = StorageConfig.fromSystemProperties();
+        CommandProcessor processor = new CommandProcessor(new StorageConfig(config.getDataDir(),
+                config.isJournalEnabled(), config.getFsyncPolicy(), Integer.MAX_VALUE, config.getSnapshotInterval()));
+
+        try (BufferedReader reader = script != null
+                ? Files.newBufferedReader(Paths.get(script))
+                : new BufferedReader(new InputStreamReader(System.in))) {
+            processor.runBatch(reader, commitEvery);
+        } catch (IOException e) {
+            System.out.println("Не удалось прочитать файл команд: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Выгружает историю операций всех пользователей параллельно, каждого в отдельный файл.
+     *
+     * @param format Формат файлов (csv или jsonl).
+     * @param dir Каталог выгрузки.
+     */
+    private static void exportAll(String format, String dir) {
+        AuthService authService = new AuthService(StorageConfig.fromSystemProperties());
+        try (ExportService exportService = new ExportService()) {
+            long started = System.nanoTime();
+            Map<String, Long> exported = exportService.exportAll(authService, ExportFormat.parse(format), Paths.get(dir));
+            long rows = exported.values().stream().mapToLong(Long::longValue).sum();
+            System.out.printf("Выгружено пользователей: %d, операций: %d в каталог %s за %.3f с (потоков: %d)%n",
+                    exported.size(), rows, dir, (System.nanoTime() - started) / 1e9, exportService.getParallelism());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Не удалось выгрузить данные: " + e.getMessage());
+        } finally {
+            authService.close();
+        }
+    }
+
+    /**
+     * Запускает HTTP API. Сервер работает до завершения процесса; при завершении
+     * (например, по Ctrl+C) он останавливается, а данные сохраняются.
+     *
+     * @param port Порт.
+     */
+    private static void serve(int port) {
+        AuthService authService = new AuthService(StorageConfig.fromSystemProperties());
+        try {
+            ApiServer server = new ApiServer(authService, new FinanceService(), port);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                authService.saveUsers();
+                authService.close();
+            }));
+            System.out.println("HTTP API запущен на порту " + server.getPort() + ". Для остановки нажмите Ctrl+C.");
+        } catch (IOException e) {
+            System.out.println("Не удалось запустить HTTP API: " + e.getMessage());
+            authService.close();
+        }
+    }
+
+    /**
+     * Выполняет нагрузочный тест HTTP API и выводит отчет.
+     * Без адреса сервера тест выполняется против встроенного сервера; его данные хранятся
+     * во временном каталоге (журнал со сбросом на диск в фоне) и удаляются после теста.
+     *
+     * @param url Адрес сервера или null для встроенного сервера.
+     * @param sessions Количество одновременных сессий.
+     * @param seconds Длительность нагрузки в секундах.
+     */
+    private static void loadTest(String url, int sessions, int seconds) {
+        Path dataDir = null;
+        AuthService authService = null;
+        ApiServer server = null;
+        try {
+            if (url == null) {
+                dataDir = Files.createTempDirectory("finance-load");
+                authService = new AuthService(new StorageConfig(dataDir.toString(), true, FsyncPolicy.BACKGROUND, 64));
+                server = new ApiServer(authService, new FinanceService(), 0);
+                server.start();
+                url = "http://localhost:" + server.getPort();
+            }
+            System.out.println(new LoadTest(URI.create(url), sessions, seconds).run());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Не удалось запустить встроенный сервер: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+            if (authService != null) {
+                authService.close();
+            }
+            if (dataDir != null) {
+                deleteDirectory(dataDir);
+            }
+        }
+    }
+
+    /**
+     * Выполняет синтетическую нагрузку через сервисы и выводит промежуточные показатели и итоговый отчет.
+     * Настройки хранения берутся из системных свойств; без каталога данные хранятся во временном каталоге
+     * и удаляются после нагрузки, а в указанном каталоге остаются для последующих запусков.
+     *
+     * @param dir Каталог данных или null для временного каталога.
+     * @param users Количество пользователей.
+     * @param operations Количество операций (0 - до истечения времени).
+     * @param seconds Длительность нагрузки в секундах (0 - до выполнения всех операций).
+     * @param threads Количество потоков нагрузки.
+     * @param seed Начальное число генератора случайных значений.
+     * @param mix Смесь операций.
+     */
+    private static void runWorkload(String dir, int users, long operations, int seconds, int threads, long seed, String mix) {
+        Path dataDir = null;
+        AuthService authService = null;
+        try {
+            Workload workload = new Workload(users, seed, mix, threads, operations, seconds);
+            dataDir = dir != null ? Files.createDirectories(Paths.get(dir)) : Files.createTempDirectory("finance-workload");
+            StorageConfig config = StorageConfig.fromSystemProperties();
+            authService = new AuthService(new StorageConfig(dataDir.toString(), config.isJournalEnabled(),
+                    config.getFsyncPolicy(), config.getGroupSize(), config.getSnapshotInterval()));
+            System.out.println(workload.run(authService, new FinanceService(), dataDir, System.out));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Не удалось создать каталог данных: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (authService != null) {
+                authService.close();
+            }
+            if (dir == null && dataDir != null) {
+                deleteDirectory(dataDir);
+            }
+        }
+    }
 
-        // Запуск обработки команд
-        processor.start();
+    /**
+     * Удаляет каталог вместе с содержимым; ошибки удаления выводятся в консоль.
+     *
+     * @param dir Каталог.
+     */
+    private static void deleteDirectory(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            System.out.println("Не удалось удалить временный каталог " + dir + ": " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,472 @@
+package api;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import metrics.Metrics;
+import models.Money;
+import models.TransactionType;
+import models.Transfer;
+import models.User;
+import services.AuthService;
+import services.FinanceService;
+import services.TransferException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP API приложения поверх сервисов пользователей и финансовых операций.
+ * Каждый запрос обрабатывается в собственном виртуальном потоке, поэтому тысячи одновременных
+ * клиентов не требуют пула потоков: поток, ожидающий сеть, диск или монитор кошелька, не занимает
+ * поток операционной системы. Согласованность данных обеспечивают сами сервисы: кошельки
+ * синхронизированы, переводы блокируют оба кошелька в едином порядке, журнал объединяет
+ * фиксации одновременных запросов.
+ *
+ * Запросы и ответы - JSON (UTF-8). После входа клиент передаёт токен сессии в заголовке
+ * Authorization: Bearer <token>. Изменения фиксируются в журнале до отправки ответа.
+ *
+ * Точки входа:
+ * - POST /api/register {"username", "password"} - регистрация;
+ * - POST /api/login {"username", "password"} - вход, в ответе токен сессии;
+ * - POST /api/logout - завершение сессии;
+ * - POST /api/income, /api/expense {"category", "amount"} - доход и расход;
+ * - POST /api/budget {"category", "amount"} - бюджет категории;
+ * - POST /api/transfer {"recipient", "amount", "key"} - перевод другому пользователю; ключ идемпотентности
+ *   (поле key или заголовок Idempotency-Key) необязателен, повтор запроса с тем же ключом возвращает
+ *   первый перевод и не списывает средства ещё раз;
+ * - GET /api/balance - баланс;
+ * - GET /api/reports/overview, /summary, /budget - текстовые отчеты;
+ * - GET /api/reports/transactions?type=&from=&to=&page=&limit= - список операций
+ *   (type - income или expense, from и to - миллисекунды от начала эпохи);
+ * - GET /api/stats - показатели производительности (только для вошедших пользователей).
+ *
+ * Длительность обработки запросов учитывается в гистограммах api.* реестра Metrics
+ * (например, api.income, api.reports.summary).
+ */
+public class ApiServer implements AutoCloseable {
+    /**
+     * Порт по умолчанию.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final AuthService authService;
+    private final FinanceService financeService;
+    private final SessionStore sessions;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Конструктор для создания сервера. Время жизни неиспользуемой сессии задается
+     * системным свойством finance.api.session.ttl в секундах (по умолчанию 30 минут).
+     * Сервер начинает принимать запросы после вызова start.
+     *
+     * @param authService Сервис пользователей.
+     * @param financeService Сервис финансовых операций.
+     * @param port Порт (0 - любой свободный порт).
+     * @throws IOException Исключение, если не удалось открыть порт.
+     */
+    public ApiServer(AuthService authService, FinanceService financeService, int port) throws IOException {
+        this.authService = authService;
+        this.financeService = financeService;
+        this.sessions = new SessionStore(Long.getLong("finance.api.session.ttl", 30 * 60));
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/", this::handle);
+    }
+
+    /**
+     * Запускает прием запросов.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Геттер для получения порта, на котором сервер принимает запросы.
+     *
+     * @return Номер порта.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер, дожидаясь завершения начатых запросов.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Обрабатывает запрос и отправляет ответ, замеряя длительность обработки.
+     * Ошибки проверки данных возвращаются с кодом 400, остальные ошибки - с кодом 500.
+     *
+     * @param exchange Запрос и ответ.
+     */
+    private void handle(HttpExchange exchange) {
+        long started = System.nanoTime();
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.substring("/api/".length());
+        Response response;
+        try {
+            response = route(exchange, endpoint);
+        } catch (ApiException e) {
+            response = Response.error(e.status, e.getMessage());
+        } catch (NumberFormatException e) {
+            response = Response.error(400, "Неверный формат суммы или числа. Укажите число, например: 150.00");
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (Exception e) {
+            response = Response.error(500, "Внутренняя ошибка сервера: " + e.getMessage());
+        }
+
+        try {
+            send(exchange, response);
+        } catch (IOException e) {
+            // Клиент закрыл соединение, не дождавшись ответа
+        } finally {
+            exchange.close();
+        }
+        Metrics.timer("api." + (response.unknown ? "unknown" : endpoint.replace('/', '.'))).recordSince(started);
+    }
+
+    /**
+     * Выбирает обработчик по пути и методу запроса.
+     *
+     * @param exchange Запрос.
+     * @param endpoint Путь после /api/.
+     * @return Ответ.
+     * @throws IOException Исключение, если не удалось прочитать тело запроса.
+     */
+    private Response route(HttpExchange exchange, String endpoint) throws IOException {
+        String method = exchange.getRequestMethod();
+        switch (endpoint) {
+            case "register": {
+                Map<String, String> body = body(exchange, "POST");
+                String username = required(body, "username");
+                String password = required(body, "password");
+                if (username.chars().anyMatch(Character::isWhitespace)) {
+                    throw new IllegalArgumentException("Имя пользователя не должно содержать пробелов.");
+                }
+                if (!authService.register(username, password)) {
+                    throw new ApiException(409, "Пользователь с таким именем уже существует.");
+                }
+                authService.commit();
+                return new Response(201, Json.object("username", username));
+            }
+
+            case "login": {
+                Map<String, String> body = body(exchange, "POST");
+                User user = authService.login(required(body, "username"), required(body, "password"));
+                if (user == null) {
+                    throw new ApiException(401, "Неверные учетные данные.");
+                }
+                return Response.ok(Json.object("username", user.getUsername(), "token", sessions.create(user.getUsername())));
+            }
+
+            case "logout": {
+                requireMethod(exchange, "POST");
+                authenticate(exchange);
+                sessions.remove(token(exchange));
+                return Response.ok(Json.object("message", "Вы вышли из системы."));
+            }
+
+            case "income":
+            case "expense":
+            case "budget": {
+                Map<String, String> body = body(exchange, "POST");
+                User user = authenticate(exchange);
+                String category = required(body, "category");
+                Money amount = Money.parse(required(body, "amount"));
+                switch (endpoint) {
+                    case "income" -> financeService.addIncome(user, category, amount);
+                    case "expense" -> financeService.addExpense(user, category, amount);
+                    default -> financeService.setBudget(user, category, amount);
+                }
+                authService.commit();
+                return Response.ok(Json.object("category", category, "amount", amount.toBigDecimal(),
+                        "balance", user.getWallet().getBalance().toBigDecimal()));
+            }
+
+            case "transfer": {
+                Map<String, String> body = body(exchange, "POST");
+                User user = authenticate(exchange);
+                String recipient = required(body, "recipient");
+                Money amount = Money.parse(required(body, "amount"));
+                String key = body.containsKey("key") ? body.get("key") : exchange.getRequestHeaders().getFirst("Idempotency-Key");
+                Transfer transfer;
+                try {
+                    transfer = financeService.transfer(user, recipient, amount, key, authService);
+                } catch (TransferException e) {
+                    int status = e.getReason() == TransferException.Reason.RECIPIENT_NOT_FOUND ? 404 : 409;
+                    throw new ApiException(status, e.getMessage());
+                }
+                authService.commit();
+                return Response.ok(Json.object("recipient", recipient, "amount", amount.toBigDecimal(),
+                        "key", transfer.getKey(), "timestamp", transfer.getTimestamp(),
+                        "balance", user.getWallet().getBalance().toBigDecimal()));
+            }
+
+            case "balance": {
+                requireMethod(exchange, "GET");
+                User user = authenticate(exchange);
+                return Response.ok(Json.object("balance", user.getWallet().getBalance().toBigDecimal()));
+            }
+
+            case "reports/overview":
+            case "reports/summary":
+            case "reports/budget":
+            case "reports/transactions": {
+                requireMethod(exchange, "GET");
+                User user = authenticate(exchange);
+                String report = switch (endpoint) {
+                    case "reports/overview" -> financeService.getOverview(user);
+                    case "reports/summary" -> financeService.getSummary(user);
+                    case "reports/budget" -> financeService.getBudget(user);
+                    default -> transactions(user, query(exchange));
+                };
+                return Response.ok(Json.object("report", report));
+            }
+
+            case "stats": {
+                requireMethod(exchange, "GET");
+                // Показатели раскрывают нагрузку и состав операций, поэтому доступны только после входа
+                authenticate(exchange);
+                StringWriter json = new StringWriter();
+                Metrics.writeJson(json);
+                return Response.ok(json.toString());
+            }
+
+            default:
+                Response response = Response.error(404, "Неизвестный запрос " + method + " /api/" + endpoint + ".");
+                response.unknown = true;
+                return response;
+        }
+    }
+
+    /**
+     * Формирует список операций пользователя по параметрам запроса.
+     *
+     * @param user Пользователь.
+     * @param query Параметры запроса: type, from, to, page, limit.
+     * @return Текст списка операций.
+     */
+    private String transactions(User user, Map<String, String> query) {
+        String typeName = query.get("type");
+        TransactionType type = null;
+        if (typeName != null) {
+            type = switch (typeName) {
+                case "income" -> TransactionType.INCOME;
+                case "expense" -> TransactionType.EXPENSE;
+                default -> throw new IllegalArgumentException("Неизвестный тип операций \"" + typeName + "\". Используйте income или expense.");
+            };
+        }
+        long from = query.containsKey("from") ? Long.parseLong(query.get("from")) : Long.MIN_VALUE;
+        long to = query.containsKey("to") ? Long.parseLong(query.get("to")) : Long.MAX_VALUE;
+        int page = query.containsKey("page") ? Integer.parseInt(query.get("page")) : 1;
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 0;
+
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        financeService.writeTransactions(user, type, from, to, page, limit, out);
+        out.flush();
+        return text.toString();
+    }
+
+    /**
+     * Находит пользователя по токену сессии из заголовка Authorization.
+     *
+     * @param exchange Запрос.
+     * @return Пользователь сессии.
+     * @throws ApiException С кодом 401, если токен не указан или сессия не найдена.
+     */
+    private User authenticate(HttpExchange exchange) {
+        String token = token(exchange);
+        String username = token != null ? sessions.find(token) : null;
+        User user = username != null ? authService.getUser(username) : null;
+        if (user == null) {
+            throw new ApiException(401, "Требуется вход: укажите токен сессии в заголовке Authorization: Bearer <token>.");
+        }
+        return user;
+    }
+
+    /**
+     * Возвращает токен сессии из заголовка Authorization.
+     *
+     * @param exchange Запрос.
+     * @return Токен или null, если заголовок не указан.
+     */
+    private static String token(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return null;
+        }
+        return authorization.substring("Bearer ".length()).trim();
+    }
+
+    /**
+     * Проверяет метод запроса.
+     *
+     * @param exchange Запрос.
+     * @param method Ожидаемый метод.
+     * @throws ApiException С кодом 405, если метод другой.
+     */
+    private static void requireMethod(HttpExchange exchange, String method) {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new ApiException(405, "Используйте метод " + method + ".");
+        }
+    }
+
+    /**
+     * Проверяет метод и читает тело запроса как JSON-объект.
+     *
+     * @param exchange Запрос.
+     * @param method Ожидаемый метод.
+     * @return Поля объекта.
+     * @throws IOException Исключение, если не удалось прочитать тело запроса.
+     * @throws ApiException С кодом 413, если тело запроса слишком велико.
+     */
+    private static Map<String, String> body(HttpExchange exchange, String method) throws IOException {
+        requireMethod(exchange, method);
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Тело запроса превышает " + MAX_BODY_BYTES + " байт.");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Возвращает обязательное непустое поле запроса.
+     *
+     * @param body Поля запроса.
+     * @param name Название поля.
+     * @return Значение поля.
+     * @throws IllegalArgumentException Если поле не указано или пусто.
+     */
+    private static String required(Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Не указано поле \"" + name + "\".");
+        }
+        return value;
+    }
+
+    /**
+     * Разбирает параметры строки запроса.
+     *
+     * @param exchange Запрос.
+     * @return Значения параметров по именам.
+     */
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) {
+            return query;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    /**
+     * Отправляет ответ в формате JSON.
+     *
+     * @param exchange Запрос и ответ.
+     * @param response Ответ.
+     * @throws IOException Исключение, если не удалось отправить ответ.
+     */
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Ответ: код состояния HTTP и тело в формате JSON.
+     */
+    private static class Response {
+        private final int status;
+        private final String body;
+        // true для запросов к неизвестному пути: они учитываются под общим именем api.unknown
+        private boolean unknown;
+
+        /**
+         * Конструктор для создания ответа.
+         *
+         * @param status Код состояния HTTP.
+         * @param body Тело ответа.
+         */
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        /**
+         * Создает успешный ответ.
+         *
+         * @param body Тело ответа.
+         * @return Ответ с кодом 200.
+         */
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+
+        /**
+         * Создает ответ с ошибкой.
+         *
+         * @param status Код состояния HTTP.
+         * @param message Описание ошибки.
+         * @return Ответ с полем error.
+         */
+        static Response error(int status, String message) {
+            return new Response(status, Json.object("error", message));
+        }
+    }
+
+    /**
+     * Ошибка обработки запроса с кодом состояния HTTP.
+     */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        /**
+         * Конструктор для создания ошибки.
+         *
+         * @param status Код состояния HTTP.
+         * @param message Описание ошибки.
+         */
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
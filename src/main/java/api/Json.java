@@ -0,0 +1,257 @@
+package api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Минимальная поддержка JSON для HTTP API без сторонних библиотек.
+ * Тело запроса - плоский объект, значения которого строки, числа, логические значения или null;
+ * числа и логические значения возвращаются текстом, как они записаны в запросе.
+ * Ответ собирается из пар "ключ - значение".
+ */
+final class Json {
+    private Json() {
+    }
+
+    /**
+     * Разбирает плоский JSON-объект.
+     *
+     * @param text Текст объекта.
+     * @return Значения полей по именам (null для значения null).
+     * @throws IllegalArgumentException Если текст не является плоским JSON-объектом.
+     */
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = parser.object();
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw parser.error("после объекта есть лишние символы");
+        }
+        return fields;
+    }
+
+    /**
+     * Формирует JSON-объект из пар "ключ - значение".
+     * Числа и логические значения записываются как есть, null - как null, остальные значения - строками.
+     *
+     * @param pairs Ключи и значения вперемешку: ключ, значение, ключ, значение...
+     * @return Текст объекта.
+     */
+    static String object(Object... pairs) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            if (i > 0) {
+                json.append(',');
+            }
+            quote(json, String.valueOf(pairs[i]));
+            json.append(':');
+            Object value = pairs[i + 1];
+            if (value == null || value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                quote(json, value.toString());
+            }
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Записывает строку в кавычках с экранированием специальных символов.
+     *
+     * @param json Буфер вывода.
+     * @param value Строка.
+     */
+    static void quote(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Разбор плоского объекта посимвольно.
+     */
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        /**
+         * Конструктор для создания разбора текста.
+         *
+         * @param text Текст объекта.
+         */
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Разбирает объект.
+         *
+         * @return Значения полей по именам.
+         */
+        Map<String, String> object() {
+            Map<String, String> fields = new LinkedHashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                fields.put(name, value());
+                skipWhitespace();
+                char next = next();
+                if (next == '}') {
+                    return fields;
+                }
+                if (next != ',') {
+                    throw error("ожидается ',' или '}'");
+                }
+            }
+        }
+
+        /**
+         * Разбирает значение поля.
+         *
+         * @return Строка, текст числа или логического значения, либо null.
+         */
+        private String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw error("вложенные объекты и массивы не поддерживаются");
+            }
+            int start = position;
+            while (position < text.length() && ",} \t\r\n".indexOf(text.charAt(position)) < 0) {
+                position++;
+            }
+            String token = text.substring(start, position);
+            if (token.isEmpty()) {
+                throw error("ожидается значение");
+            }
+            if (token.equals("null")) {
+                return null;
+            }
+            if (!token.equals("true") && !token.equals("false") && !token.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                throw error("неверное значение " + token);
+            }
+            return token;
+        }
+
+        /**
+         * Разбирает строку в кавычках.
+         *
+         * @return Строка без кавычек и экранирования.
+         */
+        private String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw error("неполная escape-последовательность");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("неверная escape-последовательность");
+                        }
+                        position += 4;
+                    }
+                    default -> throw error("неверная escape-последовательность");
+                }
+            }
+        }
+
+        /**
+         * Пропускает пробельные символы.
+         */
+        void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * Проверяет и пропускает ожидаемый символ.
+         *
+         * @param expected Ожидаемый символ.
+         */
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("ожидается '" + expected + "'");
+            }
+        }
+
+        /**
+         * Возвращает текущий символ, не продвигаясь.
+         *
+         * @return Текущий символ.
+         */
+        private char peek() {
+            if (position >= text.length()) {
+                throw error("неожиданный конец текста");
+            }
+            return text.charAt(position);
+        }
+
+        /**
+         * Возвращает текущий символ и продвигается к следующему.
+         *
+         * @return Текущий символ.
+         */
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        /**
+         * Создает исключение с описанием ошибки и позицией в тексте.
+         *
+         * @param message Описание ошибки.
+         * @return Исключение.
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Неверный формат JSON (позиция " + position + "): " + message + ".");
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package api;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import models.Transfer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный клиент HTTP API.
+ * Каждая сессия выполняется в собственном виртуальном потоке: регистрирует пользователя, входит,
+ * устанавливает бюджеты и зачисляет начальный доход, после чего все сессии одновременно
+ * в течение заданного времени выполняют случайные запросы:
+ * расход (30%), доход (15%), баланс (30%), отчет summary (15%) и перевод следующей сессии (10%).
+ * Получатель переводов выбирается среди успешно подготовленных сессий: сессия, которую не удалось
+ * подготовить, пропускается, а если других сессий нет, переводы не выполняются и учитываются отдельно.
+ * Бюджеты покрывают расходы и переводы, поэтому сервер не выводит предупреждений о превышении лимита.
+ *
+ * Длительность запросов учитывается в гистограммах load.* реестра Metrics (запросы подготовки -
+ * в load.prepare); по итогам выводятся количество запросов в секунду и перцентили длительности
+ * по каждому виду запросов.
+ * Клиент рассчитан на один запуск в процессе: гистограммы реестра накапливаются между запусками.
+ */
+public class LoadTest {
+    private static final String PASSWORD = "password";
+    private static final String EXPENSE_CATEGORY = "Продукты";
+    private static final String INCOME_CATEGORY = "Зарплата";
+    private static final List<String> OPERATIONS = List.of("expense", "income", "balance", "summary", "transfer");
+
+    private final URI base;
+    private final int sessions;
+    private final int seconds;
+    private final LongAdder errors;
+    private final LongAdder skippedTransfers;
+    private final AtomicReference<String> firstError;
+    private final AtomicReference<String> firstPrepareError;
+
+    /**
+     * Конструктор для создания нагрузочного клиента.
+     *
+     * @param base Адрес сервера, например http://localhost:8080.
+     * @param sessions Количество одновременных сессий.
+     * @param seconds Длительность нагрузки в секундах.
+     * @throws IllegalArgumentException Если количество сессий или длительность не положительны.
+     */
+    public LoadTest(URI base, int sessions, int seconds) {
+        if (sessions < 1 || seconds < 1) {
+            throw new IllegalArgumentException("Количество сессий и длительность должны быть положительными числами.");
+        }
+        this.base = base;
+        this.sessions = sessions;
+        this.seconds = seconds;
+        this.errors = new LongAdder();
+        this.skippedTransfers = new LongAdder();
+        this.firstError = new AtomicReference<>();
+        this.firstPrepareError = new AtomicReference<>();
+    }
+
+    /**
+     * Выполняет нагрузочный тест.
+     *
+     * @return Текст отчета: запросы в секунду и перцентили длительности по видам запросов.
+     * @throws InterruptedException Исключение, если ожидание сессий было прервано.
+     */
+    public String run() throws InterruptedException {
+        String prefix = "load-" + Long.toString(System.currentTimeMillis(), 36) + "-";
+        CountDownLatch prepared = new CountDownLatch(sessions);
+        CountDownLatch assigned = new CountDownLatch(1);
+        CountDownLatch ready = new CountDownLatch(sessions);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] window = new long[2];
+        // Токены подготовленных сессий (null - сессию не удалось подготовить) и назначенные получатели переводов
+        String[] tokens = new String[sessions];
+        String[] peers = new String[sessions];
+        LongAdder failedSessions = new LongAdder();
+
+        long prepareStarted = System.nanoTime();
+        // Сессии закрываются первыми: клиент закрывается только после завершения всех сессий
+        try (HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                int session = i;
+                String username = prefix + i;
+                executor.execute(() -> {
+                    try {
+                        try {
+                            tokens[session] = prepare(client, username);
+                        } catch (Exception e) {
+                            failedSessions.increment();
+                            firstPrepareError.compareAndSet(null, e.getMessage());
+                            return;
+                        } finally {
+                            prepared.countDown();
+                        }
+
+                        assigned.await();
+                        String peer = peers[session];
+                        try {
+                            if (peer != null) {
+                                send(client, post("budget", tokens[session],
+                                        Json.object("category", Transfer.DEBIT_PREFIX + peer, "amount", "1000000")), "prepare");
+                            }
+                        } catch (IOException e) {
+                            failedSessions.increment();
+                            firstPrepareError.compareAndSet(null, e.getMessage());
+                            return;
+                        } finally {
+                            ready.countDown();
+                        }
+
+                        start.await();
+                        load(client, tokens[session], peer, window[1]);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+
+            prepared.await();
+            assignPeers(prefix, tokens, peers);
+            assigned.countDown();
+            // Сессии, которые не удалось подготовить, не ждут назначения получателей
+            for (String token : tokens) {
+                if (token == null) {
+                    ready.countDown();
+                }
+            }
+            ready.await();
+            window[0] = System.nanoTime();
+            window[1] = window[0] + seconds * 1_000_000_000L;
+            start.countDown();
+        }
+        double prepareSeconds = (window[0] - prepareStarted) / 1e9;
+        double elapsed = (System.nanoTime() - window[0]) / 1e9;
+        return report(prepareSeconds, failedSessions.sum(), elapsed);
+    }
+
+    /**
+     * Подготавливает сессию: регистрация, вход, бюджет расходов и начальный доход.
+     * Бюджет переводов устанавливается позже, когда известен получатель.
+     *
+     * @param client HTTP-клиент.
+     * @param username Логин пользователя сессии.
+     * @return Токен сессии.
+     * @throws IOException Исключение, если запрос завершился ошибкой.
+     * @throws InterruptedException Исключение, если ожидание ответа было прервано.
+     */
+    private String prepare(HttpClient client, String username) throws IOException, InterruptedException {
+        String credentials = Json.object("username", username, "password", PASSWORD);
+        send(client, post("register", null, credentials), "prepare");
+        String token = Json.parseObject(send(client, post("login", null, credentials), "prepare")).get("token");
+        send(client, post("budget", token, Json.object("category", EXPENSE_CATEGORY, "amount", "1000000")), "prepare");
+        send(client, post("income", token, Json.object("category", INCOME_CATEGORY, "amount", "100000")), "prepare");
+        return token;
+    }
+
+    /**
+     * Назначает каждой подготовленной сессии получателя переводов - следующую по кругу подготовленную сессию.
+     * Сессии, которые не удалось подготовить, пропускаются; если подготовлена только одна сессия,
+     * получатель ей не назначается.
+     *
+     * @param prefix Префикс логинов сессий.
+     * @param tokens Токены сессий (null - сессию не удалось подготовить).
+     * @param peers Массив для назначенных получателей (null - получателя нет).
+     */
+    private static void assignPeers(String prefix, String[] tokens, String[] peers) {
+        int count = tokens.length;
+        for (int i = 0; i < count; i++) {
+            if (tokens[i] == null) {
+                continue;
+            }
+            for (int step = 1; step < count; step++) {
+                int candidate = (i + step) % count;
+                if (tokens[candidate] != null) {
+                    peers[i] = prefix + candidate;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Выполняет случайные запросы сессии до окончания нагрузки.
+     * Ошибки запросов учитываются и не прерывают сессию.
+     *
+     * @param client HTTP-клиент.
+     * @param token Токен сессии.
+     * @param peer Логин получателя переводов или null, если получателя нет (переводы пропускаются).
+     * @param deadline Момент окончания нагрузки (System.nanoTime()).
+     * @throws InterruptedException Исключение, если ожидание ответа было прервано.
+     */
+    private void load(HttpClient client, String token, String peer, long deadline) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int choice = random.nextInt(100);
+            String operation;
+            HttpRequest request;
+            if (choice < 30) {
+                operation = "expense";
+                String amount = (1 + random.nextInt(9)) + "." + random.nextInt(10) + random.nextInt(10);
+                request = post("expense", token, Json.object("category", EXPENSE_CATEGORY, "amount", amount));
+            } else if (choice < 45) {
+                operation = "income";
+                request = post("income", token, Json.object("category", INCOME_CATEGORY, "amount", "10.00"));
+            } else if (choice < 75) {
+                operation = "balance";
+                request = get("balance", token);
+            } else if (choice < 90) {
+                operation = "summary";
+                request = get("reports/summary", token);
+            } else if (peer != null) {
+                operation = "transfer";
+                request = post("transfer", token, Json.object("recipient", peer, "amount", "1.00"));
+            } else {
+                skippedTransfers.increment();
+                continue;
+            }
+
+            try {
+                send(client, request, operation);
+            } catch (IOException e) {
+                recordError(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Отправляет запрос и учитывает его длительность.
+     *
+     * @param client HTTP-клиент.
+     * @param request Запрос.
+     * @param operation Вид запроса (название гистограммы load.*).
+     * @return Тело ответа.
+     * @throws IOException Исключение, если запрос не выполнен или сервер вернул ошибку.
+     * @throws InterruptedException Исключение, если ожидание ответа было прервано.
+     */
+    private String send(HttpClient client, HttpRequest request, String operation) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Metrics.timer("load." + operation).recordSince(started);
+        if (response.statusCode() >= 400) {
+            throw new IOException(request.method() + " " + request.uri().getPath() + ": " + response.statusCode() + " " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * Создает POST-запрос с телом JSON.
+     *
+     * @param endpoint Путь после /api/.
+     * @param token Токен сессии или null.
+     * @param json Тело запроса.
+     * @return Запрос.
+     */
+    private HttpRequest post(String endpoint, String token, String json) {
+        return request(endpoint, token).POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    /**
+     * Создает GET-запрос.
+     *
+     * @param endpoint Путь после /api/.
+     * @param token Токен сессии.
+     * @return Запрос.
+     */
+    private HttpRequest get(String endpoint, String token) {
+        return request(endpoint, token).GET().build();
+    }
+
+    /**
+     * Создает заготовку запроса с заголовками.
+     *
+     * @param endpoint Путь после /api/.
+     * @param token Токен сессии или null.
+     * @return Заготовка запроса.
+     */
+    private HttpRequest.Builder request(String endpoint, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(base.resolve("/api/" + endpoint))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json; charset=utf-8");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    /**
+     * Учитывает ошибку запроса, запоминая первую для отчета.
+     *
+     * @param message Описание ошибки.
+     */
+    private void recordError(String message) {
+        errors.increment();
+        firstError.compareAndSet(null, message);
+    }
+
+    /**
+     * Формирует отчет о нагрузке.
+     *
+     * @param prepareSeconds Длительность подготовки сессий в секундах.
+     * @param failedSessions Количество сессий, которые не удалось подготовить.
+     * @param elapsed Длительность нагрузки в секундах.
+     * @return Текст отчета.
+     */
+    private String report(double prepareSeconds, long failedSessions, double elapsed) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Нагрузочный тест: %d сессий, %d с, сервер %s\n", sessions, seconds, base));
+        LatencyHistogram prepare = Metrics.timer("load.prepare");
+        text.append(String.format("Подготовка сессий: %.1f с, запросов: %d, p99: %.2f мс (не удалось подготовить сессий: %d)\n",
+                prepareSeconds, prepare.getCount(), prepare.getPercentileNanos(99) / 1e6, failedSessions));
+        if (firstPrepareError.get() != null) {
+            text.append("Первая ошибка подготовки: ").append(firstPrepareError.get()).append('\n');
+        }
+        text.append(String.format("\n%-10s %10s %12s %10s %10s %10s %10s\n",
+                "Запрос", "Количество", "Запросов/с", "p50, мс", "p99, мс", "p99.9, мс", "max, мс"));
+        long total = 0;
+        for (String operation : OPERATIONS) {
+            LatencyHistogram timer = Metrics.timer("load." + operation);
+            long count = timer.getCount();
+            total += count;
+            text.append(String.format("%-10s %10d %12.0f %10.2f %10.2f %10.2f %10.2f\n", operation, count, count / elapsed,
+                    timer.getPercentileNanos(50) / 1e6, timer.getPercentileNanos(99) / 1e6,
+                    timer.getPercentileNanos(99.9) / 1e6, timer.getMaxNanos() / 1e6));
+        }
+        text.append(String.format("\nВсего: %d запросов за %.1f с (%.0f запросов/с), ошибок: %d", total, elapsed, total / elapsed, errors.sum()));
+        if (skippedTransfers.sum() > 0) {
+            text.append(String.format("\nПропущено переводов (нет подготовленного получателя): %d", skippedTransfers.sum()));
+        }
+        if (firstError.get() != null) {
+            text.append("\nПервая ошибка: ").append(firstError.get());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package api;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сессии HTTP API: случайный токен, выданный при входе, связывается с логином пользователя.
+ * Сессия истекает, если ею не пользовались дольше заданного времени. Истекшие сессии удаляются
+ * при обращении к ним и периодически при создании новых, поэтому число сессий не растет неограниченно.
+ * Хранилище сессий потокобезопасно и не блокирует обращения к разным сессиям.
+ */
+final class SessionStore {
+    private static final int TOKEN_BYTES = 24;
+    // Через сколько созданных сессий проверяются истекшие
+    private static final int SWEEP_EVERY = 1024;
+
+    private final Map<String, Session> sessions;
+    private final SecureRandom random;
+    private final long ttlNanos;
+    private final AtomicLong created;
+
+    /**
+     * Конструктор для создания хранилища сессий.
+     *
+     * @param ttlSeconds Время жизни неиспользуемой сессии в секундах.
+     */
+    SessionStore(long ttlSeconds) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.created = new AtomicLong();
+    }
+
+    /**
+     * Создает сессию пользователя.
+     *
+     * @param username Логин пользователя.
+     * @return Токен сессии.
+     */
+    String create(String username) {
+        if (created.incrementAndGet() % SWEEP_EVERY == 0) {
+            long now = System.nanoTime();
+            sessions.values().removeIf(session -> session.isExpired(now, ttlNanos));
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        sessions.put(token, new Session(username));
+        return token;
+    }
+
+    /**
+     * Находит пользователя по токену и продлевает сессию.
+     *
+     * @param token Токен сессии.
+     * @return Логин пользователя или null, если сессия не найдена или истекла.
+     */
+    String find(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (session.isExpired(now, ttlNanos)) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.lastAccess = now;
+        return session.username;
+    }
+
+    /**
+     * Завершает сессию.
+     *
+     * @param token Токен сессии.
+     * @return true, если сессия существовала.
+     */
+    boolean remove(String token) {
+        return sessions.remove(token) != null;
+    }
+
+    /**
+     * Возвращает количество сессий (включая истекшие, которые ещё не удалены).
+     *
+     * @return Количество сессий.
+     */
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Сессия: логин пользователя и время последнего обращения.
+     */
+    private static final class Session {
+        private final String username;
+        private volatile long lastAccess;
+
+        /**
+         * Конструктор для создания сессии.
+         *
+         * @param username Логин пользователя.
+         */
+        Session(String username) {
+            this.username = username;
+            this.lastAccess = System.nanoTime();
+        }
+
+        /**
+         * Проверяет, истекла ли сессия.
+         *
+         * @param now Текущее значение System.nanoTime().
+         * @param ttlNanos Время жизни неиспользуемой сессии.
+         * @return true, если сессия истекла.
+         */
+        boolean isExpired(long now, long ttlNanos) {
+            return now - lastAccess > ttlNanos;
+        }
+    }
+}
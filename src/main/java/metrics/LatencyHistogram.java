@@ -0,0 +1,160 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей с логарифмическими интервалами.
+ * Каждый интервал степени двойки делится на 32 равных части, поэтому перцентили определяются
+ * с относительной погрешностью не более 1/32 (около 3%), а гистограмма занимает фиксированные ~10 КБ
+ * независимо от количества замеров. Запись замера - несколько арифметических операций и атомарных
+ * инкрементов без блокировок, поэтому гистограмму можно держать включённой постоянно.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Замеры длиннее 2^40 нс (около 18 минут) учитываются в последнем интервале
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+    private final String name;
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Конструктор для создания пустой гистограммы.
+     *
+     * @param name Название замеряемой операции.
+     */
+    LatencyHistogram(String name) {
+        this.name = name;
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Учитывает один замер.
+     *
+     * @param nanos Длительность в наносекундах (отрицательные значения считаются нулём).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Учитывает длительность операции, начатой в указанный момент.
+     *
+     * @param startedNanos Значение System.nanoTime() в начале операции.
+     */
+    public void recordSince(long startedNanos) {
+        record(System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * Геттер для получения названия замеряемой операции.
+     *
+     * @return Название операции.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Геттер для получения количества замеров.
+     *
+     * @return Количество замеров.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Геттер для получения суммарной длительности всех замеров.
+     *
+     * @return Суммарная длительность в наносекундах.
+     */
+    public long getTotalNanos() {
+        return total.get();
+    }
+
+    /**
+     * Геттер для получения наибольшей длительности.
+     *
+     * @return Наибольшая длительность в наносекундах.
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Возвращает перцентиль длительности: верхнюю границу интервала, в который попадает
+     * замер с указанным рангом (но не больше наибольшей длительности).
+     *
+     * @param percentile Перцентиль от 0 до 100.
+     * @return Длительность в наносекундах (0, если замеров не было).
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            recorded += snapshot[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Возвращает номер интервала для длительности.
+     * Значения меньше 32 попадают в отдельные интервалы, большие - в одну из 32 частей своей степени двойки.
+     *
+     * @param value Длительность в наносекундах.
+     * @return Номер интервала.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int shift = exponent - SUB_BITS;
+        int mantissa = (int) Math.min((value >>> shift) - SUB_COUNT, SUB_COUNT - 1);
+        return ((shift + 1) << SUB_BITS) + mantissa;
+    }
+
+    /**
+     * Возвращает наибольшую длительность, попадающую в интервал.
+     *
+     * @param bucket Номер интервала.
+     * @return Длительность в наносекундах.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long mantissa = bucket & (SUB_COUNT - 1);
+        return ((SUB_COUNT + mantissa + 1) << shift) - 1;
+    }
+}
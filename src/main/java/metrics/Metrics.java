@@ -0,0 +1,177 @@
+package metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общий реестр показателей приложения: гистограммы длительностей операций и счетчики.
+ * Показатели регистрируются по имени при первом обращении и накапливаются с момента запуска.
+ * Часто вызываемый код получает гистограмму один раз (например, в статическое поле),
+ * чтобы запись замера не требовала поиска по имени.
+ *
+ * Принятые имена:
+ * - command.<команда>: Выполнение команды консольного интерфейса.
+ * - report.<отчет>: Формирование отчета (без учёта отчетов, выданных из кэша).
+ * - storage.<операция>: Операции с файлами данных.
+ * - import.*: Применение пакетов импорта выписки и счетчики принятых и отклонённых строк.
+ * - export.*: Выгрузка истории операций пользователя и счетчики выгруженных операций и байтов.
+ * - storage.*.bytes: Счетчики прочитанных и записанных байтов.
+ * - api.*: Обработка запросов HTTP API; load.*: Запросы нагрузочного клиента HTTP API.
+ * - workload.*: Операции синтетической нагрузки.
+ */
+public final class Metrics {
+    private static final Map<String, LatencyHistogram> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final long STARTED = System.nanoTime();
+
+    private Metrics() {
+    }
+
+    /**
+     * Возвращает гистограмму длительностей операции, создавая её при первом обращении.
+     *
+     * @param name Название операции.
+     * @return Гистограмма длительностей.
+     */
+    public static LatencyHistogram timer(String name) {
+        LatencyHistogram timer = TIMERS.get(name);
+        return timer != null ? timer : TIMERS.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    /**
+     * Возвращает счетчик, создавая его при первом обращении.
+     *
+     * @param name Название счетчика.
+     * @return Счетчик.
+     */
+    public static LongAdder counter(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        return counter != null ? counter : COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * Возвращает время работы приложения с момента первого обращения к реестру.
+     *
+     * @return Время работы в наносекундах.
+     */
+    public static long getUptimeNanos() {
+        return System.nanoTime() - STARTED;
+    }
+
+    /**
+     * Формирует текстовую таблицу показателей, упорядоченных по имени.
+     * Операции, которые ещё не выполнялись, не выводятся.
+     *
+     * @return Строка с показателями.
+     */
+    public static String render() {
+        StringBuilder text = new StringBuilder();
+        double uptime = getUptimeNanos() / 1e9;
+        long commands = 0;
+        for (LatencyHistogram timer : TIMERS.values()) {
+            if (timer.getName().startsWith("command.")) {
+                commands += timer.getCount();
+            }
+        }
+        text.append(String.format("Время работы: %.1f с, выполнено команд: %d (%.1f команд/с)\n",
+                uptime, commands, uptime > 0 ? commands / uptime : 0));
+
+        text.append(String.format("\n%-36s %10s %12s %12s %12s %12s\n", "Операция", "Количество", "Среднее, мс", "p50, мс", "p99, мс", "max, мс"));
+        for (LatencyHistogram timer : new TreeMap<>(TIMERS).values()) {
+            long count = timer.getCount();
+            if (count == 0) {
+                continue;
+            }
+            text.append(String.format("%-36s %10d %12.3f %12.3f %12.3f %12.3f\n", timer.getName(), count,
+                    timer.getTotalNanos() / 1e6 / count,
+                    timer.getPercentileNanos(50) / 1e6, timer.getPercentileNanos(99) / 1e6, timer.getMaxNanos() / 1e6));
+        }
+
+        if (!COUNTERS.isEmpty()) {
+            text.append(String.format("\n%-36s %16s\n", "Счетчик", "Значение"));
+            for (Map.Entry<String, LongAdder> counter : new TreeMap<>(COUNTERS).entrySet()) {
+                text.append(String.format("%-36s %16d\n", counter.getKey(), counter.getValue().sum()));
+            }
+        }
+        text.setLength(text.length() - 1);
+        return text.toString();
+    }
+
+    /**
+     * Записывает показатели в формате JSON.
+     * Длительности указываются в наносекундах; операции без замеров не выводятся.
+     *
+     * @param out Поток вывода.
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    public static void writeJson(Writer out) throws IOException {
+        out.write("{\"uptimeNanos\":" + getUptimeNanos() + ",\"timers\":{");
+        boolean first = true;
+        for (LatencyHistogram timer : new TreeMap<>(TIMERS).values()) {
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            out.write((first ? "" : ",") + quote(timer.getName())
+                    + ":{\"count\":" + timer.getCount()
+                    + ",\"totalNanos\":" + timer.getTotalNanos()
+                    + ",\"p50Nanos\":" + timer.getPercentileNanos(50)
+                    + ",\"p99Nanos\":" + timer.getPercentileNanos(99)
+                    + ",\"maxNanos\":" + timer.getMaxNanos() + "}");
+            first = false;
+        }
+        out.write("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(COUNTERS).entrySet()) {
+            out.write((first ? "" : ",") + quote(counter.getKey()) + ":" + counter.getValue().sum());
+            first = false;
+        }
+        out.write("}}\n");
+    }
+
+    /**
+     * Сохраняет показатели в формате JSON в файл.
+     * Файл записывается целиком через временный файл.
+     *
+     * @param file Путь к файлу.
+     * @throws IOException Исключение, если не удалось записать файл.
+     */
+    public static void saveJson(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writeJson(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Записывает строку в кавычках JSON, экранируя служебные символы.
+     *
+     * @param value Строка.
+     * @return Строка JSON.
+     */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -0,0 +1,179 @@
+package models;
+
+import java.util.*;
+
+/**
+ * Результат группировки транзакций по категориям: суммы и количество доходов и расходов
+ * по каждой категории, а также итоги по всему набору.
+ * Строится за один проход по транзакциям или копированием индекса категорий кошелька.
+ * Агрегаты нескольких наборов (например, разных кошельков) объединяются методом merge.
+ */
+public class CategoryAggregate {
+    private final Map<String, CategoryStats> categories;
+    // Те же группы, доступные по коду категории: при проходе по транзакциям строки не сравниваются
+    private CategoryStats[] byId;
+    private long incomeCount;
+    private long expenseCount;
+    private long incomeTotal;
+    private long expenseTotal;
+
+    /**
+     * Конструктор для создания пустого агрегата.
+     */
+    public CategoryAggregate() {
+        this.categories = new HashMap<>();
+        this.byId = new CategoryStats[16];
+    }
+
+    /**
+     * Группирует транзакции по категориям за один проход.
+     *
+     * @param transactions Транзакции.
+     * @return Агрегат по категориям.
+     */
+    public static CategoryAggregate of(Iterable<Transaction> transactions) {
+        CategoryAggregate aggregate = new CategoryAggregate();
+        if (transactions instanceof TransactionLog.View view) {
+            // Снимок истории кошелька обходит свое хранилище сам, не создавая объектов транзакций
+            view.aggregateInto(aggregate);
+            return aggregate;
+        }
+        for (Transaction transaction : transactions) {
+            aggregate.add(transaction);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Учитывает одну транзакцию в агрегате.
+     *
+     * @param transaction Транзакция.
+     */
+    public void add(Transaction transaction) {
+        int id = transaction.getCategoryId();
+        CategoryStats stats = id < byId.length ? byId[id] : null;
+        if (stats == null) {
+            stats = new CategoryStats(transaction.getType());
+            put(transaction.getCategory(), stats);
+        }
+        stats.record(transaction);
+        if (transaction.getType() == TransactionType.INCOME) {
+            incomeCount++;
+            incomeTotal = Money.addMinor(incomeTotal, transaction.getAmountMinor());
+        } else {
+            expenseCount++;
+            expenseTotal = Money.addMinor(expenseTotal, transaction.getAmountMinor());
+        }
+    }
+
+    /**
+     * Добавляет в агрегат копию статистики категории (используется при копировании индекса кошелька).
+     *
+     * @param category Название категории.
+     * @param stats Статистика категории.
+     */
+    void addCategory(String category, CategoryStats stats) {
+        CategoryStats existing = categories.get(category);
+        if (existing == null) {
+            put(category, stats.copy());
+        } else {
+            existing.merge(stats);
+        }
+        incomeCount += stats.getCount(TransactionType.INCOME);
+        expenseCount += stats.getCount(TransactionType.EXPENSE);
+        incomeTotal = Money.addMinor(incomeTotal, stats.getTotalMinor(TransactionType.INCOME));
+        expenseTotal = Money.addMinor(expenseTotal, stats.getTotalMinor(TransactionType.EXPENSE));
+    }
+
+    /**
+     * Добавляет новую группу, делая её доступной и по названию, и по коду категории.
+     *
+     * @param category Название категории.
+     * @param stats Статистика категории.
+     */
+    private void put(String category, CategoryStats stats) {
+        categories.put(category, stats);
+        int id = CategoryDictionary.idOf(category);
+        if (id >= byId.length) {
+            byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+        }
+        byId[id] = stats;
+    }
+
+    /**
+     * Объединяет с агрегатом другого набора транзакций.
+     * Категории с одинаковым названием складываются.
+     *
+     * @param other Другой агрегат.
+     */
+    public void merge(CategoryAggregate other) {
+        for (Map.Entry<String, CategoryStats> entry : other.categories.entrySet()) {
+            CategoryStats existing = categories.get(entry.getKey());
+            if (existing == null) {
+                put(entry.getKey(), entry.getValue().copy());
+            } else {
+                existing.merge(entry.getValue());
+            }
+        }
+        incomeCount += other.incomeCount;
+        expenseCount += other.expenseCount;
+        incomeTotal = Money.addMinor(incomeTotal, other.incomeTotal);
+        expenseTotal = Money.addMinor(expenseTotal, other.expenseTotal);
+    }
+
+    /**
+     * Возвращает статистику категории.
+     *
+     * @param category Название категории.
+     * @return Статистика категории или null, если категории нет в агрегате.
+     */
+    public CategoryStats get(String category) {
+        return categories.get(category);
+    }
+
+    /**
+     * Возвращает названия всех категорий агрегата.
+     *
+     * @return Множество названий категорий.
+     */
+    public Set<String> getCategories() {
+        return Collections.unmodifiableSet(categories.keySet());
+    }
+
+    /**
+     * Возвращает отсортированные по алфавиту категории, в которых есть транзакции указанного типа.
+     *
+     * @param type Тип транзакций.
+     * @return Список категорий.
+     */
+    public List<String> getCategories(TransactionType type) {
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, CategoryStats> entry : categories.entrySet()) {
+            if (entry.getValue().getCount(type) > 0) {
+                result.add(entry.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Возвращает общую сумму транзакций указанного типа.
+     *
+     * @param type Тип транзакций.
+     * @return Сумма (Money).
+     */
+    public Money getTotal(TransactionType type) {
+        return Money.ofMinor(type == TransactionType.INCOME ? incomeTotal : expenseTotal);
+    }
+
+    /**
+     * Возвращает количество транзакций указанного типа.
+     *
+     * @param type Тип транзакций.
+     * @return Количество транзакций.
+     */
+    public long getCount(TransactionType type) {
+        return type == TransactionType.INCOME ? incomeCount : expenseCount;
+    }
+}
@@ -0,0 +1,78 @@
+package models;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Общий словарь категорий: каждому названию категории сопоставляется компактный целочисленный код.
+ * Транзакции хранят код вместо строки, поэтому название каждой категории хранится в памяти один раз,
+ * а выборки по категории сравнивают числа, а не строки.
+ * Коды не сохраняются на диск: при загрузке названия кодируются заново, поэтому коды
+ * действительны только в пределах одного запуска приложения.
+ */
+public final class CategoryDictionary {
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[64];
+    private static int size;
+
+    private CategoryDictionary() {
+    }
+
+    /**
+     * Возвращает код категории, регистрируя новую категорию при первом обращении.
+     *
+     * @param category Название категории.
+     * @return Код категории.
+     */
+    public static int idOf(String category) {
+        Integer id = IDS.get(category);
+        return id != null ? id : register(category);
+    }
+
+    /**
+     * Возвращает код категории, не регистрируя новую категорию.
+     * Используется в выборках, чтобы запросы по несуществующим категориям не пополняли словарь.
+     *
+     * @param category Название категории.
+     * @return Код категории или -1, если категория не встречалась.
+     */
+    public static int find(String category) {
+        Integer id = IDS.get(category);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Возвращает название категории по коду.
+     * Для одного кода всегда возвращается один и тот же экземпляр строки.
+     *
+     * @param id Код категории.
+     * @return Название категории.
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * Регистрирует новую категорию.
+     * Название записывается в массив до публикации кода, поэтому поток, получивший код,
+     * всегда видит и название.
+     *
+     * @param category Название категории.
+     * @return Код категории.
+     */
+    private static synchronized int register(String category) {
+        Integer existing = IDS.get(category);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = category;
+        names = current;
+        IDS.put(category, size);
+        return size++;
+    }
+}
@@ -0,0 +1,178 @@
+package models;
+
+/**
+ * Агрегированные данные по одной категории кошелька.
+ * Хранит тип категории, количество транзакций и накопленные суммы доходов и расходов.
+ * Обновляется кошельком при каждом добавлении транзакции, поэтому проверки категорий
+ * и расчёт остатка бюджета не требуют обхода всей истории операций.
+ * Также служит значением группы в CategoryAggregate.
+ */
+public class CategoryStats {
+    private TransactionType type;
+    private long incomeCount;
+    private long expenseCount;
+    private long incomeTotal;
+    private long spentTotal;
+
+    /**
+     * Конструктор для создания пустой статистики категории.
+     *
+     * @param type Начальный тип категории (EXPENSE для категорий, созданных через бюджет).
+     */
+    CategoryStats(TransactionType type) {
+        this.type = type;
+        this.incomeCount = 0;
+        this.expenseCount = 0;
+        this.incomeTotal = 0;
+        this.spentTotal = 0;
+    }
+
+    /**
+     * Конструктор для создания статистики категории из готовых сумм
+     * (используется при обходе столбцов истории).
+     * Категория считается доходной, если в ней есть хотя бы один доход.
+     *
+     * @param incomeCount Количество доходов.
+     * @param incomeTotal Сумма доходов в копейках.
+     * @param expenseCount Количество расходов.
+     * @param spentTotal Сумма расходов в копейках.
+     */
+    CategoryStats(long incomeCount, long incomeTotal, long expenseCount, long spentTotal) {
+        this.type = incomeCount > 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+        this.incomeCount = incomeCount;
+        this.expenseCount = expenseCount;
+        this.incomeTotal = incomeTotal;
+        this.spentTotal = spentTotal;
+    }
+
+    /**
+     * Считает количество и сумму транзакций указанного типа в категории или во всех категориях.
+     * Снимок истории кошелька суммирует свое хранилище сам: столбцовое хранилище - без создания
+     * объектов транзакций и векторными инструкциями, если они доступны (SumKernel).
+     *
+     * @param transactions Транзакции (например, снимок истории за период).
+     * @param type Тип транзакций.
+     * @param category Название категории или null для всех категорий.
+     * @return Статистика, в которой заполнены количество и сумма транзакций указанного типа.
+     * @throws ArithmeticException Если сумма выходит за пределы long.
+     */
+    public static CategoryStats total(Iterable<Transaction> transactions, TransactionType type, String category) {
+        int categoryId = category == null ? -1 : CategoryDictionary.find(category);
+        long[] result = new long[2];
+        // Категории, которая ни разу не встречалась, нет в словаре, и транзакций в ней нет
+        if (category == null || categoryId >= 0) {
+            if (transactions instanceof TransactionLog.View view) {
+                view.sumInto(type, categoryId, result);
+            } else {
+                for (Transaction transaction : transactions) {
+                    if (transaction.getType() == type && (categoryId < 0 || transaction.getCategoryId() == categoryId)) {
+                        result[0]++;
+                        result[1] = Money.addMinor(result[1], transaction.getAmountMinor());
+                    }
+                }
+            }
+        }
+        return type == TransactionType.INCOME
+                ? new CategoryStats(result[0], result[1], 0, 0)
+                : new CategoryStats(0, 0, result[0], result[1]);
+    }
+
+    /**
+     * Учитывает транзакцию в агрегатах категории.
+     * Категория считается доходной, если в ней есть хотя бы один доход.
+     *
+     * @param transaction Добавленная транзакция.
+     */
+    void record(Transaction transaction) {
+        if (transaction.getType() == TransactionType.INCOME) {
+            type = TransactionType.INCOME;
+            incomeCount++;
+            incomeTotal = Money.addMinor(incomeTotal, transaction.getAmountMinor());
+        } else {
+            expenseCount++;
+            spentTotal = Money.addMinor(spentTotal, transaction.getAmountMinor());
+        }
+    }
+
+    /**
+     * Добавляет к агрегатам категории агрегаты той же категории из другого набора транзакций.
+     *
+     * @param other Статистика той же категории.
+     */
+    void merge(CategoryStats other) {
+        if (other.type == TransactionType.INCOME) {
+            type = TransactionType.INCOME;
+        }
+        incomeCount += other.incomeCount;
+        expenseCount += other.expenseCount;
+        incomeTotal = Money.addMinor(incomeTotal, other.incomeTotal);
+        spentTotal = Money.addMinor(spentTotal, other.spentTotal);
+    }
+
+    /**
+     * Создает независимую копию статистики.
+     *
+     * @return Копия статистики категории.
+     */
+    CategoryStats copy() {
+        CategoryStats copy = new CategoryStats(type);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Геттер для получения типа категории.
+     *
+     * @return Тип категории (TransactionType).
+     */
+    public TransactionType getType() {
+        return type;
+    }
+
+    /**
+     * Геттер для получения количества транзакций в категории.
+     *
+     * @return Количество транзакций.
+     */
+    public long getTransactionCount() {
+        return incomeCount + expenseCount;
+    }
+
+    /**
+     * Геттер для получения количества транзакций указанного типа в категории.
+     *
+     * @param type Тип транзакций.
+     * @return Количество транзакций.
+     */
+    public long getCount(TransactionType type) {
+        return type == TransactionType.INCOME ? incomeCount : expenseCount;
+    }
+
+    /**
+     * Геттер для получения суммы доходов по категории.
+     *
+     * @return Сумма доходов (Money).
+     */
+    public Money getIncomeTotal() {
+        return Money.ofMinor(incomeTotal);
+    }
+
+    /**
+     * Геттер для получения суммы расходов по категории.
+     *
+     * @return Сумма расходов (Money).
+     */
+    public Money getSpentTotal() {
+        return Money.ofMinor(spentTotal);
+    }
+
+    /**
+     * Геттер для получения суммы транзакций указанного типа в копейках.
+     *
+     * @param type Тип транзакций.
+     * @return Сумма в копейках.
+     */
+    public long getTotalMinor(TransactionType type) {
+        return type == TransactionType.INCOME ? incomeTotal : spentTotal;
+    }
+}
@@ -0,0 +1,433 @@
+package models;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.Cleaner;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * История транзакций в столбцах вне кучи (Foreign Memory API).
+ *
+ * Поля транзакций хранятся раздельно: суммы в копейках (long), время (long), номера переводов (long, 0 - не перевод),
+ * ключи (int) - код категории, сдвинутый на один бит, с порядковым номером типа в младшем бите, и номера ключей
+ * идемпотентности (int, 0 - ключа нет). Всего 32 байта на транзакцию без заголовков объектов и ссылок. Сами ключи
+ * идемпотентности есть лишь у части переводов и хранятся в таблице истории (KeyTable) по номеру из столбца.
+ * Сборщик мусора не обходит историю, а агрегация по категориям и суммирование по типу
+ * или категории (SumKernel) читают столбцы подряд, не создавая объектов транзакций.
+ * Объект Transaction создается только при чтении отдельной транзакции.
+ *
+ * Столбцы одного хранилища - части одного блока памяти. Блок выделяется в автоматической области
+ * (Arena.ofAuto) и освобождается сборщиком мусора, когда на него не ссылаются ни история, ни снимки,
+ * поэтому копирование при записи работает так же, как с массивом в куче.
+ * Если задан каталог, блок отображается в память из временного файла этого каталога, и страницы
+ * истории может вытеснять операционная система. Файл удаляется сразу после открытия и служит
+ * только памятью: история по-прежнему сохраняется в файл пользователя и журнал изменений.
+ * Файл один на историю: если снимков текущего блока нет, при росте блок расширяется в файле на месте,
+ * иначе новый блок отображается в конце того же файла. Новый файл открывается, только когда место
+ * прежних блоков в файле больше нового блока; прежний файл освобождается вместе с последним снимком.
+ * Поэтому каждая отображаемая история держит открытым один дескриптор файла.
+ */
+final class ColumnarTransactionLog extends TransactionLog {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Columns EMPTY = new Columns(MemorySegment.NULL, 0, new KeyTable());
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Path directory;
+    // Таблица ключей общая для всех хранилищ и снимков истории: номер ключа переносится вместе со строкой
+    private final KeyTable transferKeys;
+    private Columns columns;
+    // Отображаемый файл истории, смещение и размер текущего блока в нем (только если задан каталог)
+    private FileChannel channel;
+    private Cleaner.Cleanable closer;
+    private long blockOffset;
+    private long blockBytes;
+
+    /**
+     * Конструктор для создания пустой истории.
+     *
+     * @param directory Каталог временных файлов для отображения в память или null для памяти процесса.
+     */
+    ColumnarTransactionLog(String directory) {
+        this.directory = directory == null ? null : Path.of(directory);
+        this.transferKeys = new KeyTable();
+        this.columns = EMPTY;
+    }
+
+    @Override
+    int capacity() {
+        return columns.capacity;
+    }
+
+    @Override
+    void reallocate(int capacity) {
+        long bytes = (long) capacity * Columns.ROW_BYTES;
+        if (channel != null && !isShared()) {
+            // Снимков текущего блока нет: блок расширяется на месте, и столбцы сдвигаются к новым границам
+            MemorySegment block = map(blockOffset, bytes);
+            Columns target = new Columns(block, capacity, transferKeys);
+            new Columns(block, columns.capacity, transferKeys).copyTo(target, size);
+            blockBytes = bytes;
+            columns = target;
+            return;
+        }
+        Columns target = new Columns(allocate(bytes), capacity, transferKeys);
+        columns.copyTo(target, size);
+        columns = target;
+    }
+
+    @Override
+    Transaction read(int index) {
+        return columns.read(index);
+    }
+
+    @Override
+    long timestampAt(int index) {
+        return columns.timestamps.getAtIndex(ValueLayout.JAVA_LONG, index);
+    }
+
+    @Override
+    void write(int index, Transaction transaction) {
+        int keyId = transaction.getTransferKey() == null ? 0 : transferKeys.add(transaction.getTransferKey());
+        columns.write(index, transaction.getAmountMinor(), transaction.getTimestamp(), transaction.getTransferId(),
+                key(transaction.getCategoryId(), transaction.getType()), keyId);
+    }
+
+    @Override
+    void move(int from, int to) {
+        Columns c = columns;
+        c.write(to,
+                c.amounts.getAtIndex(ValueLayout.JAVA_LONG, from),
+                c.timestamps.getAtIndex(ValueLayout.JAVA_LONG, from),
+                c.transferIds.getAtIndex(ValueLayout.JAVA_LONG, from),
+                c.keys.getAtIndex(ValueLayout.JAVA_INT, from),
+                c.keyIds.getAtIndex(ValueLayout.JAVA_INT, from));
+    }
+
+    @Override
+    void shiftRight(int index) {
+        int count = size - index;
+        Columns c = columns;
+        // copy корректно обрабатывает пересекающиеся области одного сегмента
+        MemorySegment.copy(c.amounts, (long) index * Long.BYTES, c.amounts, (long) (index + 1) * Long.BYTES, (long) count * Long.BYTES);
+        MemorySegment.copy(c.timestamps, (long) index * Long.BYTES, c.timestamps, (long) (index + 1) * Long.BYTES, (long) count * Long.BYTES);
+        MemorySegment.copy(c.transferIds, (long) index * Long.BYTES, c.transferIds, (long) (index + 1) * Long.BYTES, (long) count * Long.BYTES);
+        MemorySegment.copy(c.keys, (long) index * Integer.BYTES, c.keys, (long) (index + 1) * Integer.BYTES, (long) count * Integer.BYTES);
+        MemorySegment.copy(c.keyIds, (long) index * Integer.BYTES, c.keyIds, (long) (index + 1) * Integer.BYTES, (long) count * Integer.BYTES);
+    }
+
+    @Override
+    View view(int from, int to) {
+        return new ColumnView(columns, from, to);
+    }
+
+    /**
+     * Составляет ключ строки из кода категории и типа транзакции.
+     *
+     * @param categoryId Код категории.
+     * @param type Тип транзакции.
+     * @return Ключ строки.
+     */
+    private static int key(int categoryId, TransactionType type) {
+        return categoryId << 1 | type.ordinal();
+    }
+
+    /**
+     * Выделяет блок памяти под столбцы: в памяти процесса или отображением части временного файла истории.
+     * Блок в файле располагается за текущим блоком; если место прежних блоков больше нового блока,
+     * открывается новый файл.
+     *
+     * @param bytes Размер блока в байтах.
+     * @return Блок памяти, выровненный по 8 байтам.
+     * @throws UncheckedIOException Если не удалось создать или отобразить временный файл.
+     */
+    private MemorySegment allocate(long bytes) {
+        if (directory == null) {
+            return Arena.ofAuto().allocate(bytes, Long.BYTES);
+        }
+        long offset = blockOffset + blockBytes;
+        if (channel == null || offset > bytes) {
+            openFile();
+            offset = 0;
+        }
+        MemorySegment block = map(offset, bytes);
+        blockOffset = offset;
+        blockBytes = bytes;
+        return block;
+    }
+
+    /**
+     * Отображает в память часть файла истории; файл при необходимости увеличивается.
+     * Смещение кратно размеру строки, поэтому блок выровнен по 8 байтам.
+     *
+     * @param offset Смещение блока в файле.
+     * @param bytes Размер блока в байтах.
+     * @return Блок памяти.
+     * @throws UncheckedIOException Если не удалось отобразить файл.
+     */
+    private MemorySegment map(long offset, long bytes) {
+        try {
+            // Отображение остается действительным после закрытия канала
+            return channel.map(FileChannel.MapMode.READ_WRITE, offset, bytes, Arena.ofAuto());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось отобразить историю транзакций в память: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Открывает новый временный файл истории и закрывает прежний.
+     * Файл удаляется сразу после открытия; открытый канал закрывается, когда история становится недостижимой.
+     *
+     * @throws UncheckedIOException Если не удалось создать или открыть временный файл.
+     */
+    private void openFile() {
+        Path file = null;
+        FileChannel opened;
+        try {
+            file = Files.createTempFile(directory, "history", ".columns");
+            opened = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось отобразить историю транзакций в память: " + e.getMessage(), e);
+        } finally {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+        }
+        if (closer != null) {
+            closer.clean();
+        }
+        channel = opened;
+        closer = CLEANER.register(this, closeAction(opened));
+        blockOffset = 0;
+        blockBytes = 0;
+    }
+
+    /**
+     * Создает действие, закрывающее канал файла истории.
+     * Действие не ссылается на историю, иначе она никогда не стала бы недостижимой.
+     *
+     * @param channel Канал файла истории.
+     * @return Действие для Cleaner.
+     */
+    private static Runnable closeAction(FileChannel channel) {
+        return () -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Файл уже удален, а отображения от закрытия канала не зависят
+            }
+        };
+    }
+
+    /**
+     * Таблица ключей идемпотентности переводов истории. Номер ключа (с 1) хранится в столбце транзакции,
+     * как код категории в словаре категорий. Таблица только дополняется: каждая строка принадлежит одной
+     * транзакции, а транзакции из истории не удаляются и при вставке сдвигаются вместе с номером ключа.
+     * Поэтому таблица не больше числа переводов с ключом в истории и освобождается вместе с историей и её снимками.
+     */
+    private static final class KeyTable {
+        // Снимки читают таблицу без блокировки: увеличенный массив публикуется после заполнения
+        private volatile String[] keys = new String[0];
+        private int count;
+
+        /**
+         * Добавляет ключ в таблицу.
+         *
+         * @param key Ключ идемпотентности.
+         * @return Номер ключа, начиная с 1.
+         */
+        int add(String key) {
+            String[] current = keys;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, Math.max(8, count + (count >> 1)));
+                current[count] = key;
+                keys = current;
+            } else {
+                current[count] = key;
+            }
+            return ++count;
+        }
+
+        /**
+         * Возвращает ключ по номеру.
+         *
+         * @param id Номер ключа, начиная с 1.
+         * @return Ключ идемпотентности.
+         */
+        String get(int id) {
+            return keys[id - 1];
+        }
+    }
+
+    /**
+     * Столбцы одного блока памяти: суммы, время, номера переводов, ключи транзакций и номера ключей идемпотентности.
+     * Выровненные по 8 байтам столбцы long идут первыми, затем столбцы int.
+     */
+    private static final class Columns {
+        static final int ROW_BYTES = Long.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+        final int capacity;
+        final MemorySegment amounts;
+        final MemorySegment timestamps;
+        final MemorySegment transferIds;
+        final MemorySegment keys;
+        final MemorySegment keyIds;
+        final KeyTable transferKeys;
+
+        /**
+         * Конструктор для разметки блока памяти на столбцы.
+         *
+         * @param block Блок памяти размером не меньше capacity * ROW_BYTES.
+         * @param capacity Количество транзакций в блоке.
+         * @param transferKeys Таблица ключей идемпотентности истории.
+         */
+        Columns(MemorySegment block, int capacity, KeyTable transferKeys) {
+            long rows = capacity;
+            this.capacity = capacity;
+            this.amounts = block.asSlice(0, rows * Long.BYTES);
+            this.timestamps = block.asSlice(rows * Long.BYTES, rows * Long.BYTES);
+            this.transferIds = block.asSlice(rows * 2 * Long.BYTES, rows * Long.BYTES);
+            this.keys = block.asSlice(rows * 3 * Long.BYTES, rows * Integer.BYTES);
+            this.keyIds = block.asSlice(rows * 3 * Long.BYTES + rows * Integer.BYTES, rows * Integer.BYTES);
+            this.transferKeys = transferKeys;
+        }
+
+        /**
+         * Копирует первые строки столбцов в другие столбцы.
+         * Столбцы копируются начиная с последнего, поэтому копирование верно и внутри одного блока при увеличении
+         * вместимости: новое место столбца не пересекается с местом ещё не скопированных столбцов.
+         *
+         * @param target Столбцы того же или нового блока.
+         * @param rows Количество копируемых транзакций.
+         */
+        void copyTo(Columns target, int rows) {
+            MemorySegment.copy(keyIds, 0, target.keyIds, 0, (long) rows * Integer.BYTES);
+            MemorySegment.copy(keys, 0, target.keys, 0, (long) rows * Integer.BYTES);
+            MemorySegment.copy(transferIds, 0, target.transferIds, 0, (long) rows * Long.BYTES);
+            MemorySegment.copy(timestamps, 0, target.timestamps, 0, (long) rows * Long.BYTES);
+            MemorySegment.copy(amounts, 0, target.amounts, 0, (long) rows * Long.BYTES);
+        }
+
+        /**
+         * Создает объект транзакции из строки столбцов.
+         *
+         * @param index Индекс строки.
+         * @return Транзакция.
+         */
+        Transaction read(int index) {
+            int key = keys.getAtIndex(ValueLayout.JAVA_INT, index);
+            int keyId = keyIds.getAtIndex(ValueLayout.JAVA_INT, index);
+            return new Transaction(
+                    amounts.getAtIndex(ValueLayout.JAVA_LONG, index),
+                    timestamps.getAtIndex(ValueLayout.JAVA_LONG, index),
+                    TYPES[key & 1],
+                    key >>> 1,
+                    transferIds.getAtIndex(ValueLayout.JAVA_LONG, index),
+                    keyId == 0 ? null : transferKeys.get(keyId));
+        }
+
+        /**
+         * Записывает строку столбцов.
+         *
+         * @param index Индекс строки.
+         * @param amountMinor Сумма в копейках.
+         * @param timestamp Время в миллисекундах от начала эпохи.
+         * @param transferId Номер перевода или 0.
+         * @param key Ключ: код категории и тип транзакции.
+         * @param keyId Номер ключа идемпотентности в таблице истории или 0.
+         */
+        void write(int index, long amountMinor, long timestamp, long transferId, int key, int keyId) {
+            amounts.setAtIndex(ValueLayout.JAVA_LONG, index, amountMinor);
+            timestamps.setAtIndex(ValueLayout.JAVA_LONG, index, timestamp);
+            transferIds.setAtIndex(ValueLayout.JAVA_LONG, index, transferId);
+            keys.setAtIndex(ValueLayout.JAVA_INT, index, key);
+            keyIds.setAtIndex(ValueLayout.JAVA_INT, index, keyId);
+        }
+    }
+
+    /**
+     * Неизменяемый снимок части столбцов истории.
+     */
+    private static final class ColumnView extends View {
+        private final Columns columns;
+
+        /**
+         * Конструктор для создания снимка.
+         *
+         * @param columns Столбцы истории.
+         * @param from Индекс первой транзакции включительно.
+         * @param to Индекс последней транзакции не включительно.
+         */
+        ColumnView(Columns columns, int from, int to) {
+            super(from, to);
+            this.columns = columns;
+        }
+
+        @Override
+        Transaction read(int index) {
+            return columns.read(index);
+        }
+
+        @Override
+        View slice(int from, int to) {
+            return new ColumnView(columns, from, to);
+        }
+
+        @Override
+        void sumInto(TransactionType type, int categoryId, long[] result) {
+            if (categoryId < 0) {
+                SumKernel.INSTANCE.sum(columns.amounts, columns.keys, from, to, type.ordinal(), 1, result);
+            } else {
+                SumKernel.INSTANCE.sum(columns.amounts, columns.keys, from, to, key(categoryId, type), -1, result);
+            }
+        }
+
+        @Override
+        int indexOfType(TransactionType type, long rank) {
+            // Тип хранится в младшем бите ключа: транзакции пропускаются без чтения остальных столбцов
+            MemorySegment keys = columns.keys;
+            int ordinal = type.ordinal();
+            for (int i = from; i < to; i++) {
+                if ((keys.getAtIndex(ValueLayout.JAVA_INT, i) & 1) == ordinal && rank-- == 0) {
+                    return i - from;
+                }
+            }
+            return to - from;
+        }
+
+        @Override
+        void aggregateInto(CategoryAggregate aggregate) {
+            // Количество и сумма по ключу (категория и тип) копятся в одном массиве (по 4 числа на категорию)
+            // и переносятся в агрегат один раз на категорию
+            long[] sums = new long[64];
+            MemorySegment amounts = columns.amounts;
+            MemorySegment keys = columns.keys;
+            for (int i = from; i < to; i++) {
+                int offset = keys.getAtIndex(ValueLayout.JAVA_INT, i) << 1;
+                if (offset >= sums.length) {
+                    sums = Arrays.copyOf(sums, Math.max((offset | 3) + 1, sums.length * 2));
+                }
+                sums[offset]++;
+                sums[offset + 1] = Money.addMinor(sums[offset + 1], amounts.getAtIndex(ValueLayout.JAVA_LONG, i));
+            }
+            int income = TransactionType.INCOME.ordinal() << 1;
+            int expense = TransactionType.EXPENSE.ordinal() << 1;
+            for (int slot = 0; slot < sums.length; slot += 4) {
+                if (sums[slot + income] > 0 || sums[slot + expense] > 0) {
+                    aggregate.addCategory(CategoryDictionary.name(slot >> 2), new CategoryStats(
+                            sums[slot + income], sums[slot + income + 1], sums[slot + expense], sums[slot + expense + 1]));
+                }
+            }
+        }
+    }
+}
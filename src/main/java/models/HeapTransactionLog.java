@@ -0,0 +1,95 @@
+package models;
+
+import java.util.Arrays;
+
+/**
+ * История транзакций в массиве объектов Transaction в куче.
+ * Способ хранения по умолчанию: чтение транзакции не создает объектов,
+ * а снимки и копии ссылаются на те же экземпляры транзакций.
+ */
+final class HeapTransactionLog extends TransactionLog {
+    private static final Transaction[] EMPTY = new Transaction[0];
+
+    private Transaction[] items;
+
+    /**
+     * Конструктор для создания пустой истории.
+     */
+    HeapTransactionLog() {
+        this.items = EMPTY;
+    }
+
+    @Override
+    int capacity() {
+        return items.length;
+    }
+
+    @Override
+    void reallocate(int capacity) {
+        items = Arrays.copyOf(items, capacity);
+    }
+
+    @Override
+    Transaction read(int index) {
+        return items[index];
+    }
+
+    @Override
+    long timestampAt(int index) {
+        return items[index].getTimestamp();
+    }
+
+    @Override
+    void write(int index, Transaction transaction) {
+        items[index] = transaction;
+    }
+
+    @Override
+    void move(int from, int to) {
+        items[to] = items[from];
+    }
+
+    @Override
+    void shiftRight(int index) {
+        System.arraycopy(items, index, items, index + 1, size - index);
+    }
+
+    @Override
+    View view(int from, int to) {
+        return new ArrayView(items, from, to);
+    }
+
+    /**
+     * Неизменяемый снимок части массива истории.
+     */
+    private static final class ArrayView extends View {
+        private final Transaction[] items;
+
+        /**
+         * Конструктор для создания снимка.
+         *
+         * @param items Массив истории.
+         * @param from Индекс первой транзакции включительно.
+         * @param to Индекс последней транзакции не включительно.
+         */
+        ArrayView(Transaction[] items, int from, int to) {
+            super(from, to);
+            this.items = items;
+        }
+
+        @Override
+        Transaction read(int index) {
+            return items[index];
+        }
+
+        @Override
+        View slice(int from, int to) {
+            return new ArrayView(items, from, to);
+        }
+
+        @Override
+        public Object[] toArray() {
+            return Arrays.copyOfRange(items, from, to, Object[].class);
+        }
+    }
+}
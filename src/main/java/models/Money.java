@@ -0,0 +1,178 @@
+package models;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Класс, представляющий денежную сумму с фиксированной точкой.
+ * Сумма хранится в виде целого числа минимальных единиц (копеек) в примитиве long,
+ * поэтому сложение и сравнение не создают промежуточных объектов.
+ * BigDecimal используется только при разборе ввода и форматировании вывода.
+ */
+public final class Money implements Serializable, Comparable<Money> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Количество знаков после запятой (копейки).
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * Нулевая сумма.
+     */
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    /**
+     * Создает сумму из количества минимальных единиц.
+     *
+     * @param minorUnits Сумма в копейках.
+     * @return Денежная сумма.
+     */
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    /**
+     * Создает сумму из десятичного значения.
+     *
+     * @param amount Десятичное значение суммы.
+     * @return Денежная сумма.
+     * @throws IllegalArgumentException Если сумма содержит больше двух знаков после запятой или слишком велика.
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount.stripTrailingZeros().scale() > SCALE) {
+            throw new IllegalArgumentException("Сумма должна содержать не более " + SCALE + " знаков после запятой.");
+        }
+        try {
+            return ofMinor(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Сумма слишком велика.");
+        }
+    }
+
+    /**
+     * Разбирает сумму из текстового представления (например, "150.00").
+     *
+     * @param text Текст суммы.
+     * @return Денежная сумма.
+     * @throws NumberFormatException Если текст не является числом.
+     * @throws IllegalArgumentException Если сумма содержит больше двух знаков после запятой или слишком велика.
+     */
+    public static Money parse(String text) {
+        return of(new BigDecimal(text));
+    }
+
+    /**
+     * Складывает две суммы в минимальных единицах с проверкой переполнения.
+     * Используется в циклах агрегации, чтобы не создавать объекты Money на каждом шаге.
+     *
+     * @param a Первое слагаемое в копейках.
+     * @param b Второе слагаемое в копейках.
+     * @return Сумма в копейках.
+     * @throws ArithmeticException Если результат выходит за пределы long.
+     */
+    public static long addMinor(long a, long b) {
+        long result = a + b;
+        // Переполнение возможно, только если знак результата отличается от знаков обоих слагаемых
+        if (((a ^ result) & (b ^ result)) < 0) {
+            throw new ArithmeticException("Переполнение денежной суммы.");
+        }
+        return result;
+    }
+
+    /**
+     * Вычитает одну сумму в минимальных единицах из другой с проверкой переполнения.
+     *
+     * @param a Уменьшаемое в копейках.
+     * @param b Вычитаемое в копейках.
+     * @return Разность в копейках.
+     * @throws ArithmeticException Если результат выходит за пределы long.
+     */
+    public static long subtractMinor(long a, long b) {
+        long result = a - b;
+        if (((a ^ b) & (a ^ result)) < 0) {
+            throw new ArithmeticException("Переполнение денежной суммы.");
+        }
+        return result;
+    }
+
+    /**
+     * Геттер для получения суммы в минимальных единицах.
+     *
+     * @return Сумма в копейках.
+     */
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    /**
+     * Возвращает сумму двух значений.
+     *
+     * @param other Слагаемое.
+     * @return Новая денежная сумма.
+     * @throws ArithmeticException Если результат выходит за пределы допустимого диапазона.
+     */
+    public Money plus(Money other) {
+        return ofMinor(addMinor(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Возвращает разность двух значений.
+     *
+     * @param other Вычитаемое.
+     * @return Новая денежная сумма.
+     * @throws ArithmeticException Если результат выходит за пределы допустимого диапазона.
+     */
+    public Money minus(Money other) {
+        return ofMinor(subtractMinor(minorUnits, other.minorUnits));
+    }
+
+    /**
+     * Проверяет, является ли сумма положительной.
+     *
+     * @return true, если сумма больше нуля.
+     */
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    /**
+     * Преобразует сумму в десятичное значение с двумя знаками после запятой.
+     *
+     * @return Сумма (BigDecimal).
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money money && money.minorUnits == minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    /**
+     * Возвращает сумму в текстовом виде с двумя знаками после запятой (например, "150.00").
+     *
+     * @return Текстовое представление суммы.
+     */
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
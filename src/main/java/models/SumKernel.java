@@ -0,0 +1,73 @@
+package models;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Ядро суммирования столбца сумм истории с отбором строк по столбцу ключей.
+ * Ключ строки - код категории, сдвинутый на один бит, и порядковый номер типа транзакции в младшем бите,
+ * поэтому отбор по типу и отбор по категории и типу - одно сравнение ключа под маской.
+ *
+ * Этот класс суммирует по одной строке. Если модуль jdk.incubator.vector подключен
+ * (java --add-modules jdk.incubator.vector) и системное свойство finance.history.simd
+ * не равно false, используется векторная реализация VectorSumKernel.
+ */
+class SumKernel {
+    /**
+     * Ядро, выбранное при запуске.
+     */
+    static final SumKernel INSTANCE = create();
+
+    /**
+     * Возвращает название реализации для отчетов и бенчмарков.
+     *
+     * @return Название реализации.
+     */
+    String name() {
+        return "scalar";
+    }
+
+    /**
+     * Добавляет к результату количество и сумму строк, ключ которых под маской равен заданному.
+     *
+     * @param amounts Столбец сумм в копейках (long).
+     * @param keys Столбец ключей (int).
+     * @param from Индекс первой строки включительно.
+     * @param to Индекс последней строки не включительно.
+     * @param key Искомый ключ.
+     * @param keyMask Маска значимых битов ключа (1 - только тип, -1 - категория и тип).
+     * @param result Количество строк (result[0]) и сумма в копейках (result[1]).
+     * @throws ArithmeticException Если сумма выходит за пределы long.
+     */
+    void sum(MemorySegment amounts, MemorySegment keys, int from, int to, int key, int keyMask, long[] result) {
+        long count = 0;
+        long total = result[1];
+        for (int i = from; i < to; i++) {
+            if ((keys.getAtIndex(ValueLayout.JAVA_INT, i) & keyMask) == key) {
+                count++;
+                total = Money.addMinor(total, amounts.getAtIndex(ValueLayout.JAVA_LONG, i));
+            }
+        }
+        result[0] += count;
+        result[1] = total;
+    }
+
+    /**
+     * Выбирает реализацию ядра.
+     * Векторная реализация загружается по имени, чтобы без модуля jdk.incubator.vector
+     * не загружались ссылающиеся на него классы.
+     *
+     * @return Ядро суммирования.
+     */
+    private static SumKernel create() {
+        if (Boolean.parseBoolean(System.getProperty("finance.history.simd", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (SumKernel) Class.forName("models.VectorSumKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Платформа не поддерживает подходящую ширину векторов: используется построчное суммирование
+            }
+        }
+        return new SumKernel();
+    }
+}
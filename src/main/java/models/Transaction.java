@@ -1,52 +1,173 @@
 package models;
 
-import java.io.Serializable;
+import java.io.*;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 
 /**
  * Класс, представляющий финансовую транзакцию.
  * Хранит данные о сумме, дате, типе и категории транзакции.
+ * Сумма хранится в копейках (long), а объект Money создается только по запросу.
+ * Время хранится как метка эпохи в миллисекундах и форматируется только при выводе.
+ * Категория хранится кодом из словаря категорий (CategoryDictionary).
+ * Проводки перевода хранят номер перевода, общий для списания и зачисления, а списание - ещё и ключ
+ * идемпотентности, чтобы повтор перевода распознавался и после перезапуска.
  */
 public class Transaction implements Serializable {
-    private final BigDecimal amount;
-    private final String date;
-    private final TransactionType type;
-    private final String category;
+    private static final long serialVersionUID = 1010098697814194466L;
+
+    /**
+     * Формат, в котором дата транзакции выводится пользователю (и хранилась в прежних версиях).
+     */
+    public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    // Сумма сериализуется в копейках, время — меткой эпохи;
+    // поля amount (BigDecimal) и date (String) прежних версий читаются при загрузке.
+    // Категория сериализуется строкой из словаря: поток записывает одинаковые экземпляры один раз,
+    // поэтому каждое название попадает в файл единожды, а далее заменяется ссылкой на него.
+    // Номер и ключ перевода в файлах прежних версий отсутствуют и читаются как 0 и null
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("amountMinor", long.class),
+            new ObjectStreamField("amount", BigDecimal.class),
+            new ObjectStreamField("timestamp", long.class),
+            new ObjectStreamField("date", String.class),
+            new ObjectStreamField("type", TransactionType.class),
+            new ObjectStreamField("category", String.class),
+            new ObjectStreamField("transferId", long.class),
+            new ObjectStreamField("transferKey", String.class)
+    };
+
+    // Поля не объявлены final только из-за восстановления в readObject; после создания они не изменяются
+    private long amountMinor;
+    private long timestamp;
+    private TransactionType type;
+    private int categoryId;
+    private long transferId;
+    private String transferKey;
 
     /**
      * Конструктор класса для инициализации всех полей.
      * Позволяет создать экземпляр транзакции с заданными параметрами.
      *
-     * @param amount Сумма транзакции (BigDecimal).
-     * @param date Дата транзакции в текстовом формате.
+     * @param amount Сумма транзакции (Money).
+     * @param timestamp Время транзакции в миллисекундах от начала эпохи.
      * @param type Тип транзакции, указывающий на доход или расход (TransactionType).
      * @param category Категория, к которой относится транзакция.
      */
-    public Transaction(BigDecimal amount, String date, TransactionType type, String category) {
-        this.amount = amount;
-        this.date = date;
+    public Transaction(Money amount, long timestamp, TransactionType type, String category) {
+        this(amount.getMinorUnits(), timestamp, type, CategoryDictionary.idOf(category), 0, null);
+    }
+
+    /**
+     * Конструктор для создания проводки перевода.
+     *
+     * @param amount Сумма проводки (Money).
+     * @param timestamp Время перевода в миллисекундах от начала эпохи.
+     * @param type Тип проводки: расход у отправителя, доход у получателя.
+     * @param category Категория проводки.
+     * @param transferId Номер перевода.
+     * @param transferKey Ключ идемпотентности (только для списания) или null.
+     */
+    Transaction(Money amount, long timestamp, TransactionType type, String category, long transferId, String transferKey) {
+        this(amount.getMinorUnits(), timestamp, type, CategoryDictionary.idOf(category), transferId, transferKey);
+    }
+
+    /**
+     * Конструктор для восстановления транзакции из полей столбцового хранилища истории.
+     *
+     * @param amountMinor Сумма в копейках.
+     * @param timestamp Время транзакции в миллисекундах от начала эпохи.
+     * @param type Тип транзакции (TransactionType).
+     * @param categoryId Код категории в словаре категорий.
+     * @param transferId Номер перевода или 0, если транзакция не является проводкой перевода.
+     * @param transferKey Ключ идемпотентности перевода или null.
+     */
+    Transaction(long amountMinor, long timestamp, TransactionType type, int categoryId, long transferId, String transferKey) {
+        this.amountMinor = amountMinor;
+        this.timestamp = timestamp;
         this.type = type;
-        this.category = category;
+        this.categoryId = categoryId;
+        this.transferId = transferId;
+        this.transferKey = transferKey;
     }
 
     /**
      * Геттер для получения суммы транзакции.
      * Возвращает значение суммы, связанное с текущей транзакцией.
      *
-     * @return Сумма транзакции (BigDecimal).
+     * @return Сумма транзакции (Money).
      */
-    public BigDecimal getAmount() {
-        return amount;
+    public Money getAmount() {
+        return Money.ofMinor(amountMinor);
     }
 
     /**
-     * Геттер для получения даты транзакции.
-     * Позволяет узнать, когда была произведена эта транзакция.
+     * Геттер для получения суммы транзакции в копейках.
+     * Используется при агрегации, чтобы не создавать объект суммы для каждой транзакции.
+     *
+     * @return Сумма транзакции в копейках.
+     */
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    /**
+     * Геттер для получения времени транзакции.
+     * Используется для сортировки и выборки транзакций по периоду.
+     *
+     * @return Время транзакции в миллисекундах от начала эпохи.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Геттер для получения даты транзакции в текстовом виде.
+     * Позволяет узнать, когда была произведена эта транзакция; форматирование выполняется при каждом вызове.
      *
      * @return Дата транзакции (String).
      */
     public String getDate() {
-        return date;
+        return DATE_FORMAT.format(Instant.ofEpochMilli(timestamp));
+    }
+
+    /**
+     * Преобразует дату в текстовом формате прежних версий в метку эпохи.
+     *
+     * @param date Дата в формате "yyyy/MM/dd HH:mm:ss" (в часовом поясе системы).
+     * @return Время в миллисекундах от начала эпохи.
+     * @throws DateTimeParseException Если дата не соответствует формату.
+     */
+    public static long parseDate(String date) {
+        return LocalDateTime.parse(date, DATE_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Находит в списке транзакцию указанного типа по её порядковому номеру среди транзакций этого типа.
+     * Снимок истории кошелька ищет в своем хранилище сам, не создавая объектов пропускаемых транзакций.
+     *
+     * @param transactions Транзакции (например, снимок истории за период).
+     * @param type Тип транзакций.
+     * @param rank Порядковый номер среди транзакций типа, начиная с 0.
+     * @return Индекс транзакции в списке или размер списка, если транзакций типа не больше rank.
+     */
+    public static int indexOfType(List<Transaction> transactions, TransactionType type, long rank) {
+        if (transactions instanceof TransactionLog.View view) {
+            return view.indexOfType(type, rank);
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            if (transactions.get(i).getType() == type && rank-- == 0) {
+                return i;
+            }
+        }
+        return transactions.size();
     }
 
     /**
@@ -56,7 +177,17 @@ public class Transaction implements Serializable {
      * @return Категория транзакции (String).
      */
     public String getCategory() {
-        return category;
+        return CategoryDictionary.name(categoryId);
+    }
+
+    /**
+     * Геттер для получения кода категории транзакции в словаре категорий.
+     * Используется в выборках по категории, чтобы сравнивать числа вместо строк.
+     *
+     * @return Код категории.
+     */
+    public int getCategoryId() {
+        return categoryId;
     }
 
     /**
@@ -68,4 +199,68 @@ public class Transaction implements Serializable {
     public TransactionType getType() {
         return type;
     }
+
+    /**
+     * Геттер для получения номера перевода, проводкой которого является транзакция.
+     * Списание у отправителя и зачисление у получателя имеют один номер.
+     *
+     * @return Номер перевода или 0, если транзакция не является проводкой перевода.
+     */
+    public long getTransferId() {
+        return transferId;
+    }
+
+    /**
+     * Геттер для получения ключа идемпотентности перевода.
+     * Ключ хранится только в проводке списания, так как действует в пределах отправителя.
+     *
+     * @return Ключ или null.
+     */
+    public String getTransferKey() {
+        return transferKey;
+    }
+
+    /**
+     * Записывает транзакцию в поток сериализации.
+     *
+     * @param out Поток, в который записывается объект.
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("amountMinor", amountMinor);
+        fields.put("timestamp", timestamp);
+        fields.put("type", type);
+        fields.put("category", getCategory());
+        fields.put("transferId", transferId);
+        fields.put("transferKey", transferKey);
+        out.writeFields();
+    }
+
+    /**
+     * Восстанавливает транзакцию из потока сериализации.
+     * Суммы из файлов прежних версий переводятся в копейки (с округлением до двух знаков),
+     * а текстовые даты — в метки эпохи.
+     *
+     * @param in Поток, из которого читается объект.
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     * @throws ClassNotFoundException Исключение, если не удаётся найти класс для десериализации.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        BigDecimal legacyAmount = (BigDecimal) fields.get("amount", null);
+        amountMinor = legacyAmount != null
+                ? Money.of(legacyAmount.setScale(Money.SCALE, RoundingMode.HALF_UP)).getMinorUnits()
+                : fields.get("amountMinor", 0L);
+        String legacyDate = (String) fields.get("date", null);
+        try {
+            timestamp = legacyDate != null ? parseDate(legacyDate) : fields.get("timestamp", 0L);
+        } catch (DateTimeParseException e) {
+            throw new InvalidObjectException("Некорректная дата транзакции: " + legacyDate);
+        }
+        type = (TransactionType) fields.get("type", null);
+        categoryId = CategoryDictionary.idOf((String) fields.get("category", null));
+        transferId = fields.get("transferId", 0L);
+        transferKey = (String) fields.get("transferKey", null);
+    }
 }
@@ -0,0 +1,415 @@
+package models;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Упорядоченная по времени история транзакций кошелька, выдающая неизменяемые снимки без копирования.
+ *
+ * Транзакции хранятся в хранилище, заполненном до отметки size. Снимок - это ссылка на хранилище и границы
+ * на момент получения. Добавление в конец пишет только за отметкой, поэтому уже выданные снимки
+ * не меняются. Вставка в середину и слияние пакета сдвигают элементы до отметки: если после последнего
+ * такого изменения выдавался снимок, хранилище предварительно копируется (копирование при записи),
+ * иначе изменение выполняется на месте, как в ArrayList.
+ *
+ * Порядок и копирование при записи реализованы здесь, а способ хранения - в подклассах:
+ * массив объектов Transaction в куче (HeapTransactionLog) или столбцы сумм, времени, номеров переводов,
+ * кодов категорий и типов вне кучи (ColumnarTransactionLog). Способ хранения выбирается системным свойством
+ * finance.history.store: heap (по умолчанию), offheap или mapped (столбцы в отображаемом в память
+ * временном файле каталога finance.history.dir).
+ *
+ * Класс не синхронизирован: все обращения выполняются под монитором кошелька. Снимок получен
+ * под тем же монитором, поэтому элементы в его границах видны читающему потоку и далее не изменяются.
+ */
+abstract class TransactionLog {
+    private static final int INITIAL_CAPACITY = 16;
+
+    int size;
+    // true, если текущее хранилище доступно через выданные снимки и не может изменяться до отметки size
+    private boolean shared;
+
+    /**
+     * Создает пустую историю со способом хранения, заданным системным свойством finance.history.store.
+     *
+     * @return История транзакций.
+     * @throws IllegalArgumentException Если способ хранения указан неверно.
+     */
+    static TransactionLog create() {
+        String store = System.getProperty("finance.history.store", "heap");
+        return switch (store) {
+            case "heap" -> new HeapTransactionLog();
+            case "offheap" -> new ColumnarTransactionLog(null);
+            case "mapped" -> new ColumnarTransactionLog(System.getProperty("finance.history.dir", System.getProperty("java.io.tmpdir")));
+            default -> throw new IllegalArgumentException("Неизвестный способ хранения истории \"" + store + "\". Используйте heap, offheap или mapped.");
+        };
+    }
+
+    /**
+     * Создает историю из списка транзакций, упорядоченного по времени.
+     *
+     * @param transactions Транзакции в порядке времени.
+     * @return История транзакций.
+     */
+    static TransactionLog of(List<Transaction> transactions) {
+        TransactionLog log = create();
+        log.ensureCapacity(transactions.size());
+        for (Transaction transaction : transactions) {
+            log.write(log.size++, transaction);
+        }
+        return log;
+    }
+
+    /**
+     * Возвращает вместимость хранилища.
+     *
+     * @return Количество транзакций, которое помещается в хранилище.
+     */
+    abstract int capacity();
+
+    /**
+     * Заменяет хранилище новым указанной вместимости, перенося в него транзакции до отметки size.
+     * Прежнее хранилище остается за выданными снимками без изменений.
+     * Если снимков текущего хранилища нет (isShared() возвращает false), реализация может расширить его на месте.
+     *
+     * @param capacity Вместимость нового хранилища.
+     */
+    abstract void reallocate(int capacity);
+
+    /**
+     * Проверяет, выданы ли снимки текущего хранилища.
+     *
+     * @return true, если хранилище доступно через снимки и не может изменяться до отметки size.
+     */
+    boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Читает транзакцию из хранилища.
+     *
+     * @param index Индекс в хранилище.
+     * @return Транзакция.
+     */
+    abstract Transaction read(int index);
+
+    /**
+     * Читает время транзакции, не создавая объект транзакции.
+     *
+     * @param index Индекс в хранилище.
+     * @return Время в миллисекундах от начала эпохи.
+     */
+    abstract long timestampAt(int index);
+
+    /**
+     * Записывает транзакцию в хранилище.
+     *
+     * @param index Индекс в хранилище.
+     * @param transaction Транзакция.
+     */
+    abstract void write(int index, Transaction transaction);
+
+    /**
+     * Переносит элемент хранилища на другую позицию.
+     *
+     * @param from Исходный индекс.
+     * @param to Новый индекс.
+     */
+    abstract void move(int from, int to);
+
+    /**
+     * Сдвигает элементы хранилища на одну позицию к концу, освобождая место для вставки.
+     *
+     * @param index Индекс первого сдвигаемого элемента.
+     */
+    abstract void shiftRight(int index);
+
+    /**
+     * Создает снимок части хранилища.
+     *
+     * @param from Индекс первой транзакции включительно.
+     * @param to Индекс последней транзакции не включительно.
+     * @return Снимок.
+     */
+    abstract View view(int from, int to);
+
+    /**
+     * Возвращает количество транзакций.
+     *
+     * @return Количество транзакций.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает транзакцию по индексу.
+     *
+     * @param index Индекс транзакции в порядке времени.
+     * @return Транзакция.
+     */
+    Transaction get(int index) {
+        Objects.checkIndex(index, size);
+        return read(index);
+    }
+
+    /**
+     * Возвращает время последней транзакции.
+     *
+     * @return Время в миллисекундах от начала эпохи или Long.MIN_VALUE, если история пуста.
+     */
+    long lastTimestamp() {
+        return size == 0 ? Long.MIN_VALUE : timestampAt(size - 1);
+    }
+
+    /**
+     * Возвращает неизменяемый снимок всей истории.
+     *
+     * @return Снимок истории (List<Transaction>).
+     */
+    List<Transaction> snapshot() {
+        return snapshot(0, size);
+    }
+
+    /**
+     * Возвращает неизменяемый снимок части истории.
+     *
+     * @param from Индекс первой транзакции включительно.
+     * @param to Индекс последней транзакции не включительно.
+     * @return Снимок части истории (List<Transaction>).
+     */
+    List<Transaction> snapshot(int from, int to) {
+        Objects.checkFromToIndex(from, to, size);
+        shared = true;
+        return view(from, to);
+    }
+
+    /**
+     * Находит позицию первой транзакции со временем не меньше указанного.
+     *
+     * @param timestamp Время в миллисекундах от начала эпохи.
+     * @return Индекс в истории (размер истории, если такой транзакции нет).
+     */
+    int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Добавляет транзакцию в конец истории.
+     * Выданные снимки остаются действительными: элементы до отметки size не изменяются.
+     *
+     * @param transaction Транзакция не раньше последней в истории.
+     */
+    void append(Transaction transaction) {
+        ensureCapacity(size + 1);
+        write(size++, transaction);
+    }
+
+    /**
+     * Вставляет транзакцию с сохранением порядка по времени после всех транзакций с тем же временем.
+     * Обычно транзакция просто добавляется в конец истории.
+     *
+     * @param transaction Транзакция.
+     */
+    void insert(Transaction transaction) {
+        if (size == 0 || timestampAt(size - 1) <= transaction.getTimestamp()) {
+            append(transaction);
+            return;
+        }
+        int index = lowerBound(transaction.getTimestamp() + 1);
+        detach(size + 1);
+        shiftRight(index);
+        write(index, transaction);
+        size++;
+    }
+
+    /**
+     * Сливает с историей пакет транзакций, упорядоченный по времени.
+     * Транзакции с одинаковым временем остаются после уже имеющихся.
+     *
+     * @param batch Транзакции в порядке времени.
+     */
+    void merge(List<Transaction> batch) {
+        int count = batch.size();
+        if (count == 0) {
+            return;
+        }
+        if (size == 0 || timestampAt(size - 1) <= batch.get(0).getTimestamp()) {
+            ensureCapacity(size + count);
+            for (Transaction transaction : batch) {
+                write(size++, transaction);
+            }
+            return;
+        }
+
+        // Слияние с конца: часть истории раньше первой транзакции пакета не затрагивается
+        int start = lowerBound(batch.get(0).getTimestamp() + 1);
+        detach(size + count);
+        int i = size - 1;
+        int j = count - 1;
+        int k = size + count - 1;
+        while (j >= 0) {
+            if (i >= start && timestampAt(i) > batch.get(j).getTimestamp()) {
+                move(i--, k--);
+            } else {
+                write(k--, batch.get(j--));
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Обеспечивает место для добавления в конец.
+     * Новое хранилище не видно ни одному снимку, а прежнее остается за выданными снимками без изменений.
+     *
+     * @param minCapacity Требуемая вместимость.
+     */
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > capacity()) {
+            reallocate(newCapacity(minCapacity));
+            shared = false;
+        }
+    }
+
+    /**
+     * Подготавливает хранилище к изменению элементов до отметки size.
+     * Если хранилище доступно через снимки, изменения выполняются в его копии.
+     *
+     * @param minCapacity Требуемая вместимость.
+     */
+    private void detach(int minCapacity) {
+        if (shared) {
+            reallocate(minCapacity > capacity() ? newCapacity(minCapacity) : capacity());
+            shared = false;
+        } else {
+            ensureCapacity(minCapacity);
+        }
+    }
+
+    /**
+     * Вычисляет вместимость нового хранилища: в полтора раза больше текущей, но не меньше требуемой.
+     *
+     * @param minCapacity Требуемая вместимость.
+     * @return Вместимость хранилища.
+     */
+    private int newCapacity(int minCapacity) {
+        int capacity = capacity();
+        int grown = capacity + (capacity >> 1);
+        return Math.max(minCapacity, Math.max(grown, INITIAL_CAPACITY));
+    }
+
+    /**
+     * Неизменяемый снимок части хранилища истории.
+     * Изменяющие методы AbstractList выбрасывают UnsupportedOperationException.
+     * Группировка и суммирование выполняются самим снимком, чтобы хранилище могло обойти
+     * свои данные без создания объектов транзакций.
+     */
+    abstract static class View extends AbstractList<Transaction> implements RandomAccess {
+        final int from;
+        final int to;
+
+        /**
+         * Конструктор для создания снимка.
+         *
+         * @param from Индекс первой транзакции включительно.
+         * @param to Индекс последней транзакции не включительно.
+         */
+        View(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Читает транзакцию из хранилища снимка.
+         *
+         * @param index Индекс в хранилище.
+         * @return Транзакция.
+         */
+        abstract Transaction read(int index);
+
+        /**
+         * Создает снимок части хранилища того же снимка.
+         *
+         * @param from Индекс первой транзакции в хранилище включительно.
+         * @param to Индекс последней транзакции в хранилище не включительно.
+         * @return Снимок.
+         */
+        abstract View slice(int from, int to);
+
+        /**
+         * Учитывает транзакции снимка в агрегате по категориям.
+         *
+         * @param aggregate Агрегат по категориям.
+         */
+        void aggregateInto(CategoryAggregate aggregate) {
+            for (int i = from; i < to; i++) {
+                aggregate.add(read(i));
+            }
+        }
+
+        /**
+         * Добавляет к результату количество и сумму транзакций снимка указанного типа (и категории).
+         *
+         * @param type Тип транзакций.
+         * @param categoryId Код категории или -1 для всех категорий.
+         * @param result Количество транзакций (result[0]) и сумма в копейках (result[1]).
+         */
+        void sumInto(TransactionType type, int categoryId, long[] result) {
+            long count = 0;
+            long total = result[1];
+            for (int i = from; i < to; i++) {
+                Transaction transaction = read(i);
+                if (transaction.getType() == type && (categoryId < 0 || transaction.getCategoryId() == categoryId)) {
+                    count++;
+                    total = Money.addMinor(total, transaction.getAmountMinor());
+                }
+            }
+            result[0] += count;
+            result[1] = total;
+        }
+
+        /**
+         * Находит транзакцию указанного типа по её порядковому номеру среди транзакций этого типа.
+         *
+         * @param type Тип транзакций.
+         * @param rank Порядковый номер среди транзакций типа, начиная с 0.
+         * @return Индекс транзакции в снимке или размер снимка, если транзакций типа не больше rank.
+         */
+        int indexOfType(TransactionType type, long rank) {
+            for (int i = from; i < to; i++) {
+                if (read(i).getType() == type && rank-- == 0) {
+                    return i - from;
+                }
+            }
+            return to - from;
+        }
+
+        @Override
+        public Transaction get(int index) {
+            Objects.checkIndex(index, to - from);
+            return read(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public List<Transaction> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, to - from);
+            return slice(from + fromIndex, from + toIndex);
+        }
+    }
+}
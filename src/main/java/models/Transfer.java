@@ -0,0 +1,180 @@
+package models;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Класс, представляющий перевод средств между пользователями как одну операцию с двумя проводками:
+ * списанием (расход) у отправителя и зачислением (доход) у получателя на ту же сумму и в то же время.
+ * Обе проводки строятся из записи перевода, поэтому не могут разойтись по сумме или времени,
+ * а в журнале изменений перевод хранится одной записью и восстанавливается целиком или не восстанавливается вовсе.
+ *
+ * Ключ идемпотентности задается клиентом и позволяет распознать повтор уже выполненного перевода.
+ * Номер перевода присваивается при создании и хранится в обеих проводках, связывая их в сохранённых кошельках;
+ * ключ хранится в проводке списания, поэтому перевод можно восстановить из истории отправителя.
+ */
+public class Transfer {
+    /**
+     * Начало названия категории списания: к нему добавляется логин получателя.
+     */
+    public static final String DEBIT_PREFIX = "Перевод средств к ";
+
+    /**
+     * Начало названия категории зачисления: к нему добавляется логин отправителя.
+     */
+    public static final String CREDIT_PREFIX = "Перевод средств от ";
+
+    private final long id;
+    private final String key;
+    private final String sender;
+    private final String recipient;
+    private final long amountMinor;
+    private final long timestamp;
+
+    /**
+     * Конструктор для создания нового перевода со случайным номером.
+     *
+     * @param key Ключ идемпотентности или null, если клиент его не указал.
+     * @param sender Логин отправителя.
+     * @param recipient Логин получателя.
+     * @param amount Сумма перевода.
+     * @param timestamp Время перевода в миллисекундах от начала эпохи.
+     */
+    public Transfer(String key, String sender, String recipient, Money amount, long timestamp) {
+        this(ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE), key, sender, recipient, amount, timestamp);
+    }
+
+    /**
+     * Конструктор для восстановления перевода с известным номером (из журнала или истории).
+     *
+     * @param id Номер перевода (положительное число).
+     * @param key Ключ идемпотентности или null, если клиент его не указал.
+     * @param sender Логин отправителя.
+     * @param recipient Логин получателя.
+     * @param amount Сумма перевода.
+     * @param timestamp Время перевода в миллисекундах от начала эпохи.
+     */
+    public Transfer(long id, String key, String sender, String recipient, Money amount, long timestamp) {
+        this.id = id;
+        this.key = key;
+        this.sender = sender;
+        this.recipient = recipient;
+        this.amountMinor = amount.getMinorUnits();
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Восстанавливает перевод из проводки списания в истории отправителя.
+     *
+     * @param sender Логин отправителя (владельца истории).
+     * @param debit Транзакция истории отправителя.
+     * @return Перевод или null, если транзакция не является проводкой списания перевода.
+     */
+    public static Transfer ofDebit(String sender, Transaction debit) {
+        if (debit.getTransferId() == 0 || debit.getType() != TransactionType.EXPENSE
+                || !debit.getCategory().startsWith(DEBIT_PREFIX)) {
+            return null;
+        }
+        String recipient = debit.getCategory().substring(DEBIT_PREFIX.length());
+        return new Transfer(debit.getTransferId(), debit.getTransferKey(), sender, recipient, debit.getAmount(), debit.getTimestamp());
+    }
+
+    /**
+     * Геттер для получения номера перевода.
+     *
+     * @return Номер перевода.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Геттер для получения ключа идемпотентности.
+     *
+     * @return Ключ или null.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Геттер для получения логина отправителя.
+     *
+     * @return Логин отправителя.
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Геттер для получения логина получателя.
+     *
+     * @return Логин получателя.
+     */
+    public String getRecipient() {
+        return recipient;
+    }
+
+    /**
+     * Геттер для получения суммы перевода.
+     *
+     * @return Сумма перевода (Money).
+     */
+    public Money getAmount() {
+        return Money.ofMinor(amountMinor);
+    }
+
+    /**
+     * Геттер для получения времени перевода.
+     *
+     * @return Время в миллисекундах от начала эпохи.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Возвращает проводку списания у отправителя.
+     *
+     * @return Транзакция расхода в категории "Перевод средств к <получатель>" с номером и ключом перевода.
+     */
+    public Transaction debit() {
+        return new Transaction(getAmount(), timestamp, TransactionType.EXPENSE, DEBIT_PREFIX + recipient, id, key);
+    }
+
+    /**
+     * Возвращает проводку зачисления у получателя.
+     *
+     * @return Транзакция дохода в категории "Перевод средств от <отправитель>" с номером перевода.
+     */
+    public Transaction credit() {
+        return new Transaction(getAmount(), timestamp, TransactionType.INCOME, CREDIT_PREFIX + sender, id, null);
+    }
+
+    /**
+     * Возвращает проводку перевода в кошельке указанного участника.
+     *
+     * @param username Логин отправителя или получателя.
+     * @return Проводка списания для отправителя, зачисления для получателя.
+     * @throws IllegalArgumentException Если пользователь не участвует в переводе.
+     */
+    public Transaction legOf(String username) {
+        if (username.equals(sender)) {
+            return debit();
+        }
+        if (username.equals(recipient)) {
+            return credit();
+        }
+        throw new IllegalArgumentException("Пользователь " + username + " не участвует в переводе.");
+    }
+
+    /**
+     * Проверяет, описывает ли перевод те же участников и сумму (например, при повторе запроса с тем же ключом).
+     *
+     * @param recipient Логин получателя.
+     * @param amount Сумма перевода.
+     * @return true, если получатель и сумма совпадают.
+     */
+    public boolean matches(String recipient, Money amount) {
+        return this.recipient.equals(recipient) && amountMinor == amount.getMinorUnits();
+    }
+}
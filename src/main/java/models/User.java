@@ -8,6 +8,8 @@ import java.util.*;
  * Хранит данные о пользователе, такие как имя пользователя, хэш пароля и его кошелек.
  */
 public class User implements Serializable {
+    private static final long serialVersionUID = 8991966738227922118L;
+
     private final String username;
     private final String passwordHash;
     private final Wallet wallet;
@@ -35,6 +37,16 @@ public class User implements Serializable {
         return username;
     }
 
+    /**
+     * Геттер для получения хэша пароля пользователя.
+     * Используется хранилищем для построения индекса пользователей.
+     *
+     * @return Строка с хэшем пароля.
+     */
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
     /**
      * Геттер для получения кошелька пользователя.
      * Позволяет получить доступ к финансовым данным и операциям, связанным с этим пользователем.
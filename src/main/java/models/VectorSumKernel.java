@@ -0,0 +1,62 @@
+package models;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteOrder;
+
+/**
+ * Векторная реализация ядра суммирования (Vector API, модуль jdk.incubator.vector).
+ *
+ * За шаг читается столько строк, сколько сумм (long) помещается в вектор предпочтительной ширины
+ * процессора, и столько же ключей (int) из вектора вдвое меньшей ширины. Сравнение ключей дает маску,
+ * по которой суммы добавляются к накопителю; остаток строк, не заполняющий вектор, суммируется построчно.
+ * Переполнение проверяется в каждой полосе накопителя тем же правилом, что и в Money.addMinor:
+ * суммы положительны, поэтому переполнение полосы означает переполнение итога.
+ */
+final class VectorSumKernel extends SumKernel {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    @Override
+    String name() {
+        return "vector-" + LONGS.vectorBitSize();
+    }
+
+    @Override
+    void sum(MemorySegment amounts, MemorySegment keys, int from, int to, int key, int keyMask, long[] result) {
+        int lanes = LONGS.length();
+        int upper = from + LONGS.loopBound(to - from);
+        LongVector totals = LongVector.zero(LONGS);
+        long count = 0;
+        for (int i = from; i < upper; i += lanes) {
+            VectorMask<Long> selected = IntVector.fromMemorySegment(INTS, keys, (long) i * Integer.BYTES, ByteOrder.nativeOrder())
+                    .and(keyMask)
+                    .compare(VectorOperators.EQ, key)
+                    .cast(LONGS);
+            LongVector values = LongVector.fromMemorySegment(LONGS, amounts, (long) i * Long.BYTES, ByteOrder.nativeOrder());
+            LongVector next = totals.add(values, selected);
+            // В неотобранных полосах next равен totals, поэтому проверка срабатывает только для отобранных
+            if (totals.lanewise(VectorOperators.XOR, next).and(values.lanewise(VectorOperators.XOR, next))
+                    .compare(VectorOperators.LT, 0).anyTrue()) {
+                throw new ArithmeticException("Переполнение денежной суммы.");
+            }
+            totals = next;
+            count += selected.trueCount();
+        }
+
+        long total = result[1];
+        for (long lane : totals.toArray()) {
+            total = Money.addMinor(total, lane);
+        }
+        result[0] += count;
+        result[1] = total;
+        super.sum(amounts, keys, upper, to, key, keyMask, result);
+    }
+}
@@ -1,19 +1,57 @@
 package models;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Класс, представляющий кошелек пользователя с транзакциями и бюджетами.
  * Хранит баланс кошелька, список транзакций и бюджеты по категориям.
+ * Список транзакций всегда упорядочен по времени, поэтому служит индексом для выборки по периоду.
+ * История и бюджеты выдаются неизменяемыми снимками без копирования: снимок отражает состояние
+ * на момент получения и не меняется при последующих изменениях кошелька.
+ *
+ * Кошелек потокобезопасен: все открытые методы синхронизированы на самом кошельке.
+ * Составные операции над несколькими кошельками (например, перевод) захватывают мониторы
+ * кошельков в едином порядке, чтобы избежать взаимной блокировки.
  */
 public class Wallet implements Serializable {
-    private BigDecimal balance;
-    private final List<Transaction> transactions;
-    private final Map<String, BigDecimal> budgets;
+    private static final long serialVersionUID = 7909526530900037743L;
+    // Общий счетчик версий: версия уникальна среди всех кошельков процесса
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * Наибольшая длина названия категории в символах.
+     */
+    public static final int MAX_CATEGORY_LENGTH = 100;
+
+    // Формат файла прежних версий: история сериализуется списком ArrayList, бюджеты - картой HashMap
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("transactions", List.class),
+            new ObjectStreamField("budgets", Map.class),
+            new ObjectStreamField("appliedSequence", long.class)
+    };
+
+    // Баланс в копейках не сериализуется: при загрузке он пересчитывается по истории транзакций
+    private transient long balance;
+    private transient TransactionLog transactions;
+    // Карта бюджетов не изменяется после публикации: изменение заменяет её копией,
+    // поэтому выданные снимки бюджетов остаются неизменными
+    private transient Map<String, Money> budgets;
+    // Порядковый номер последней записи журнала, учтённой в кошельке (0 в файлах прежних версий)
+    private long appliedSequence;
+    // Индекс агрегатов по категориям не сериализуется и перестраивается при загрузке
+    private transient Map<String, CategoryStats> categoryIndex;
+    private transient WalletListener listener;
+    private transient long version;
 
     /**
      * Конструктор по умолчанию для инициализации кошелька.
@@ -25,27 +63,217 @@ public class Wallet implements Serializable {
          * @param transactions Список транзакций пользователя, инициализируется пустым.
          * @param budgets Карта для хранения бюджета по категориям, инициализируется пустой.
          */
-        this.balance = BigDecimal.ZERO;
-        this.transactions = new ArrayList<>();
+        this.balance = 0;
+        this.transactions = TransactionLog.create();
         this.budgets = new HashMap<>();
+        this.categoryIndex = new HashMap<>();
+        this.version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Восстанавливает кошелек при десериализации.
+     * Индекс категорий и баланс строятся заново по бюджетам и истории транзакций.
+     * Бюджеты из файлов прежних версий (BigDecimal) переводятся в копейки.
+     *
+     * @param in Поток, из которого читается объект.
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     * @throws ClassNotFoundException Исключение, если не удаётся найти класс для десериализации.
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        List<Transaction> history = (List<Transaction>) fields.get("transactions", null);
+        Map<String, Object> stored = (Map<String, Object>) fields.get("budgets", null);
+        appliedSequence = fields.get("appliedSequence", 0L);
+        if (history == null || stored == null) {
+            throw new InvalidObjectException("Кошелек не содержит истории транзакций или бюджетов.");
+        }
+
+        for (Map.Entry<String, Object> entry : stored.entrySet()) {
+            if (entry.getValue() instanceof BigDecimal legacy) {
+                entry.setValue(Money.of(legacy.setScale(Money.SCALE, RoundingMode.HALF_UP)));
+            }
+        }
+        budgets = (Map<String, Money>) (Map<String, ?>) stored;
+        // Файлы прежних версий могут содержать транзакции не по порядку времени (сортировка устойчива)
+        if (!isChronological(history)) {
+            history.sort(Comparator.comparingLong(Transaction::getTimestamp));
+        }
+        transactions = TransactionLog.of(history);
+        rebuildCategoryIndex();
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Сериализует кошелек.
+     * Под монитором кошелька берутся только неизменяемый снимок истории, текущая карта бюджетов
+     * и номер записи журнала, поэтому снимок согласован, а запись истории в поток
+     * не задерживает команды и переводы, изменяющие кошелек.
+     *
+     * @param out Поток, в который записывается объект.
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        List<Transaction> history;
+        Map<String, Money> budgetsSnapshot;
+        long sequence;
+        synchronized (this) {
+            history = transactions.snapshot();
+            budgetsSnapshot = budgets;
+            sequence = appliedSequence;
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        // Копия в ArrayList сохраняет формат файла прежних версий
+        fields.put("transactions", new ArrayList<>(history));
+        fields.put("budgets", budgetsSnapshot);
+        fields.put("appliedSequence", sequence);
+        out.writeFields();
+    }
+
+    /**
+     * Проверяет, что транзакции упорядочены по времени.
+     *
+     * @param history Список транзакций.
+     * @return true, если время транзакций не убывает.
+     */
+    private static boolean isChronological(List<Transaction> history) {
+        for (int i = 1; i < history.size(); i++) {
+            if (history.get(i - 1).getTimestamp() > history.get(i).getTimestamp()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Полностью перестраивает индекс категорий и пересчитывает баланс.
+     * Категории из бюджета без транзакций учитываются как расходные.
+     */
+    private void rebuildCategoryIndex() {
+        categoryIndex = new HashMap<>();
+        balance = 0;
+        for (String category : budgets.keySet()) {
+            categoryIndex.put(category, new CategoryStats(TransactionType.EXPENSE));
+        }
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction t = transactions.get(i);
+            applyToBalance(t);
+            indexTransaction(t);
+        }
+    }
+
+    /**
+     * Изменяет баланс на сумму транзакции с проверкой переполнения.
+     *
+     * @param transaction Транзакция.
+     */
+    private void applyToBalance(Transaction transaction) {
+        balance = transaction.getType() == TransactionType.INCOME
+                ? Money.addMinor(balance, transaction.getAmountMinor())
+                : Money.subtractMinor(balance, transaction.getAmountMinor());
+    }
+
+    /**
+     * Учитывает транзакцию в индексе категорий.
+     *
+     * @param transaction Добавленная транзакция.
+     */
+    private void indexTransaction(Transaction transaction) {
+        categoryIndex.computeIfAbsent(transaction.getCategory(), c -> new CategoryStats(transaction.getType()))
+                .record(transaction);
+    }
+
+    /**
+     * Устанавливает слушателя изменений кошелька.
+     *
+     * @param listener Слушатель изменений (null, чтобы отключить уведомления).
+     */
+    public synchronized void setListener(WalletListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Геттер для получения версии кошелька.
+     * Версия возрастает при каждом изменении (транзакция или бюджет) и уникальна среди всех кошельков,
+     * поэтому по совпадению версии можно судить, что кошелек не менялся.
+     *
+     * @return Версия кошелька.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Отмечает изменение кошелька, присваивая ему новую версию.
+     */
+    private void touch() {
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Геттер для получения порядкового номера последней записи журнала, учтённой в кошельке.
+     *
+     * @return Порядковый номер записи журнала.
+     */
+    public synchronized long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Запоминает порядковый номер записи журнала, учтённой в кошельке.
+     * Номер сохраняется вместе с кошельком, поэтому при восстановлении повторно применяются только более поздние записи.
+     *
+     * @param sequence Порядковый номер записи журнала.
+     */
+    public synchronized void setAppliedSequence(long sequence) {
+        appliedSequence = Math.max(appliedSequence, sequence);
     }
 
     /**
      * Геттер для получения текущего баланса кошелька.
      *
-     * @return Текущий баланс (BigDecimal).
+     * @return Текущий баланс (Money).
      */
-    public BigDecimal getBalance() {
-        return balance;
+    public synchronized Money getBalance() {
+        return Money.ofMinor(balance);
     }
 
     /**
      * Геттер для получения списка транзакций кошелька.
+     * Возвращает неизменяемый снимок истории без копирования: последующие изменения кошелька
+     * в снимке не отражаются.
+     *
+     * @return Неизменяемый список транзакций в порядке времени (List<Transaction>).
+     */
+    public synchronized List<Transaction> getTransactions() {
+        return transactions.snapshot();
+    }
+
+    /**
+     * Возвращает транзакции за период в порядке времени.
+     * Границы периода находятся двоичным поиском по упорядоченной истории, результат - неизменяемый
+     * снимок части истории без копирования.
+     *
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Неизменяемый список транзакций за период (List<Transaction>).
+     */
+    public synchronized List<Transaction> getTransactionsBetween(long from, long to) {
+        if (from >= to) {
+            return List.of();
+        }
+        return transactions.snapshot(transactions.lowerBound(from), transactions.lowerBound(to));
+    }
+
+    /**
+     * Возвращает время для новой транзакции.
+     * Время не может быть меньше времени последней транзакции, даже если системные часы были переведены назад.
      *
-     * @return Список транзакций (List<Transaction>).
+     * @return Время в миллисекундах от начала эпохи.
      */
-    public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions);
+    private long nextTimestamp() {
+        long now = System.currentTimeMillis();
+        return Math.max(now, transactions.lastTimestamp());
     }
 
     /**
@@ -54,9 +282,35 @@ public class Wallet implements Serializable {
      * @param category Название категории.
      * @return true, если категория связана с доходами, иначе false.
      */
-    public boolean isIncomeCategory(String category) {
-        return transactions.stream()
-                .anyMatch(t -> t.getCategory().equals(category) && t.getType() == TransactionType.INCOME);
+    public synchronized boolean isIncomeCategory(String category) {
+        CategoryStats stats = categoryIndex.get(category);
+        return stats != null && stats.getType() == TransactionType.INCOME;
+    }
+
+    /**
+     * Возвращает агрегированные данные по категории.
+     *
+     * @param category Название категории.
+     * @return Статистика категории или null, если категория не существует.
+     */
+    public synchronized CategoryStats getCategoryStats(String category) {
+        return categoryIndex.get(category);
+    }
+
+    /**
+     * Возвращает агрегаты по всем категориям кошелька.
+     * Агрегат копируется из индекса категорий, поэтому не требует обхода истории транзакций
+     * и не меняется при последующих изменениях кошелька.
+     * Категории из бюджета без транзакций входят в агрегат с нулевыми суммами.
+     *
+     * @return Агрегат по категориям (CategoryAggregate).
+     */
+    public synchronized CategoryAggregate getCategoryAggregate() {
+        CategoryAggregate aggregate = new CategoryAggregate();
+        for (Map.Entry<String, CategoryStats> entry : categoryIndex.entrySet()) {
+            aggregate.addCategory(entry.getKey(), entry.getValue());
+        }
+        return aggregate;
     }
 
     /**
@@ -65,23 +319,33 @@ public class Wallet implements Serializable {
      * @param amount Сумма для проверки.
      * @throws IllegalArgumentException Если сумма отрицательная или равна нулю.
      */
-    private void validatePositiveAmount(BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+    private void validatePositiveAmount(Money amount) {
+        if (amount == null || !amount.isPositive()) {
             throw new IllegalArgumentException("Вводимое значение должно быть положительным числом.");
         }
     }
 
+    /**
+     * Проверяет, что название категории не длиннее допустимого.
+     *
+     * @param category Название категории.
+     * @throws IllegalArgumentException Если название длиннее MAX_CATEGORY_LENGTH символов.
+     */
+    private void validateCategory(String category) {
+        if (category != null && category.length() > MAX_CATEGORY_LENGTH) {
+            throw new IllegalArgumentException("Название категории должно содержать не более " + MAX_CATEGORY_LENGTH + " символов.");
+        }
+    }
+
     /**
      * Проверяет, существует ли указанная категория.
      *
      * @param category Название категории.
      * @return true, если категория существует, иначе false.
      */
-    public boolean doesCategoryExist(String category) {
-        // Проверяем в бюджете и среди транзакций
-        return budgets.containsKey(category) ||
-                transactions.stream()
-                        .anyMatch(t -> t.getCategory().equals(category));
+    public synchronized boolean doesCategoryExist(String category) {
+        // Индекс содержит как категории из бюджета, так и категории с транзакциями
+        return categoryIndex.containsKey(category);
     }
 
     /**
@@ -90,18 +354,53 @@ public class Wallet implements Serializable {
      *
      * @param category Категория дохода (например, "Зарплата").
      * @param amount Сумма дохода.
-     * @throws IllegalArgumentException Если категория используется для расходов.
+     * @throws IllegalArgumentException Если категория используется для расходов или её название слишком длинное.
+     */
+    public synchronized void addIncome(String category, Money amount) {
+        validateIncome(category, amount);
+
+        balance = Money.addMinor(balance, amount.getMinorUnits());
+        addTransaction(new Transaction(amount, nextTimestamp(), TransactionType.INCOME, category));
+    }
+
+    /**
+     * Проверяет, что доход можно зачислить, не изменяя кошелек.
+     *
+     * @param category Категория дохода.
+     * @param amount Сумма дохода.
+     * @throws IllegalArgumentException Если сумма не положительна, категория используется для расходов или её название слишком длинное.
+     * @throws ArithmeticException Если баланс после зачисления выйдет за допустимый диапазон.
      */
-    public void addIncome(String category, BigDecimal amount) {
+    public synchronized void validateIncome(String category, Money amount) {
         validatePositiveAmount(amount);
+        validateCategory(category);
 
         // Проверка на существование расходной категории
         if (doesCategoryExist(category) && !isIncomeCategory(category) ) {
             throw new IllegalArgumentException("Категория \"" + category + "\" используется для учёта расходов. В неё нельзя добавлять доходы.");
         }
 
-        balance = balance.add(amount);
-        transactions.add(new Transaction(amount, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")), TransactionType.INCOME, category));
+        Money.addMinor(balance, amount.getMinorUnits());
+    }
+
+    /**
+     * Проверяет, что расход можно списать, не изменяя кошелек.
+     *
+     * @param category Категория расхода.
+     * @param amount Сумма расхода.
+     * @throws IllegalArgumentException Если сумма не положительна, категория используется для доходов, её название слишком длинное
+     *                                  или недостаточно средств.
+     */
+    public synchronized void validateExpense(String category, Money amount) {
+        validatePositiveAmount(amount);
+        validateCategory(category);
+
+        if (isIncomeCategory(category)) {
+            throw new IllegalArgumentException("Категория \"" + category + "\" используется для учёта доходов. В неё нельзя добавлять расходы.");
+        }
+        if (balance < amount.getMinorUnits()) {
+            throw new IllegalArgumentException("Недостаточно средств.");
+        }
     }
 
     /**
@@ -110,36 +409,83 @@ public class Wallet implements Serializable {
      *
      * @param category Категория расхода (например, "Продукты").
      * @param amount Сумма расхода.
-     * @throws IllegalArgumentException Если недостаточно средств для расхода.
+     * @throws IllegalArgumentException Если недостаточно средств для расхода или название категории слишком длинное.
      */
-    public void addExpense(String category, BigDecimal amount) {
+    public synchronized void addExpense(String category, Money amount) {
         validatePositiveAmount(amount);
+        validateCategory(category);
 
         // Проверка на существование доходной категории
-        if (doesCategoryExist(category) && isIncomeCategory(category)) {
+        if (isIncomeCategory(category)) {
             throw new IllegalArgumentException("Категория \"" + category + "\" используется для учёта доходов. В неё нельзя добавлять расходы.");
         }
 
         // Если категории нет, автоматически создаем ее с бюджетом 0
         if (!doesCategoryExist(category)) {
-            budgets.put(category, BigDecimal.ZERO);
-        }
-
-        // Проверка превышения лимита бюджета по категории
-        BigDecimal remainingBudget = getBudgetRemain(category);
-        if (remainingBudget.compareTo(amount) < 0) {
-            System.out.println("Превышен лимит бюджета для категории: " + category);
+            putBudget(category, Money.ZERO);
         }
 
         // Проверка превышения баланса
-        if (balance.compareTo(amount) >= 0) {
-            balance = balance.subtract(amount);
-            transactions.add(new Transaction(amount, LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")), TransactionType.EXPENSE, category));
+        if (balance >= amount.getMinorUnits()) {
+            balance -= amount.getMinorUnits();
+            addTransaction(new Transaction(amount, nextTimestamp(), TransactionType.EXPENSE, category));
         } else {
             throw new IllegalArgumentException("Недостаточно средств.");
         }
     }
 
+    /**
+     * Проверяет, превысит ли расход остаток бюджета категории, не изменяя кошелек.
+     * Бюджет не ограничивает расход: результат служит для предупреждения пользователя.
+     * Для новой категории бюджет равен 0, поэтому любой расход в неё превышает бюджет.
+     *
+     * @param category Категория расхода.
+     * @param amount Сумма расхода.
+     * @return true, если сумма положительна, категория не доходная и сумма больше остатка бюджета.
+     */
+    public synchronized boolean exceedsBudget(String category, Money amount) {
+        return amount != null && amount.isPositive() && category.length() <= MAX_CATEGORY_LENGTH && !isIncomeCategory(category)
+                && getBudgetRemain(category).compareTo(amount) < 0;
+    }
+
+    /**
+     * Проводит перевод из этого кошелька в кошелек получателя.
+     * Обе проводки перевода проверяются до изменения кошельков и записываются вместе,
+     * а слушатель этого кошелька получает перевод одним уведомлением (слушатель получателя не вызывается).
+     * Как и при добавлении расхода, категория списания создается с бюджетом 0; бюджет перевод не ограничивает.
+     *
+     * Вызывающий код должен удерживать мониторы обоих кошельков, захваченные в едином порядке:
+     * метод захватывает монитор получателя повторно, чтобы не нарушить порядок блокировок.
+     *
+     * @param transfer Перевод, отправителем которого является владелец этого кошелька.
+     * @param recipient Кошелек получателя.
+     * @throws IllegalArgumentException Если кошелек получателя совпадает с этим, сумма не положительна,
+     *                                  категории имеют другой тип или недостаточно средств.
+     * @throws ArithmeticException Если баланс получателя выйдет за допустимый диапазон.
+     */
+    public synchronized void addTransfer(Transfer transfer, Wallet recipient) {
+        if (recipient == this) {
+            throw new IllegalArgumentException("Нельзя отправить перевод самому себе.");
+        }
+        synchronized (recipient) {
+            Transaction debit = transfer.debit();
+            Transaction credit = transfer.credit();
+            String category = debit.getCategory();
+            validateExpense(category, transfer.getAmount());
+            recipient.validateIncome(credit.getCategory(), transfer.getAmount());
+
+            if (!doesCategoryExist(category)) {
+                putBudget(category, Money.ZERO);
+            }
+
+            post(debit);
+            recipient.post(credit);
+            if (listener != null) {
+                listener.onTransfer(transfer, recipient);
+            }
+        }
+    }
+
     /**
      * Устанавливает бюджет для категории.
      * Если категория уже существует, проверяет совместимость по типу транзакций.
@@ -147,23 +493,147 @@ public class Wallet implements Serializable {
      *
      * @param category Название категории.
      * @param amount Сумма бюджета.
-     * @throws IllegalArgumentException Если категория используется как доходная.
+     * @throws IllegalArgumentException Если категория используется как доходная или её название слишком длинное.
      */
-    public void setBudget(String category, BigDecimal amount) {
+    public synchronized void setBudget(String category, Money amount) {
         validatePositiveAmount(amount);
+        validateCategory(category);
 
         if (doesCategoryExist(category)) {
             // Проверяем, используется ли категория как доходная
             if (isIncomeCategory(category)) {
                 throw new IllegalArgumentException("Категория \"" + category + "\" используется для учёта доходов. Для неё нельзя устанавливать бюджет.");
             }
-        } else {
-            // Если категории нет, добавляем ее как категорию расходов
-            budgets.put(category, BigDecimal.ZERO);
         }
 
-        // Устанавливаем бюджет
-        budgets.put(category, amount);
+        // Устанавливаем бюджет (если категории нет, она создается как категория расходов)
+        putBudget(category, amount);
+    }
+
+    /**
+     * Импортирует пакет транзакций с заданным временем (например, из выписки банка).
+     * Транзакции проверяются в порядке следования в пакете так же, как при добавлении дохода или расхода:
+     * отклоняются операции с неположительной суммой, с категорией другого типа и расходы сверх баланса.
+     * Отклонённая операция не прерывает импорт остальных. Превышение бюджета при импорте не сообщается.
+     *
+     * Принятые транзакции вставляются в историю одним слиянием по времени, поэтому пакет не обязан
+     * быть упорядочен и может предшествовать уже имеющимся транзакциям. Слушатель получает весь пакет сразу.
+     *
+     * @param batch Транзакции в порядке следования в источнике.
+     * @param rejected Получает сообщение об ошибке и индекс отклонённой транзакции в пакете.
+     * @return Количество принятых транзакций.
+     */
+    public synchronized int importTransactions(List<Transaction> batch, ObjIntConsumer<String> rejected) {
+        List<Transaction> accepted = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Transaction transaction = batch.get(i);
+            String category = transaction.getCategory();
+            try {
+                if (transaction.getType() == TransactionType.INCOME) {
+                    validateIncome(category, transaction.getAmount());
+                } else {
+                    validateExpense(category, transaction.getAmount());
+                    // Как и при добавлении расхода, новая категория создается с бюджетом 0
+                    if (!doesCategoryExist(category)) {
+                        putBudget(category, Money.ZERO);
+                    }
+                }
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                rejected.accept(e.getMessage(), i);
+                continue;
+            }
+            applyToBalance(transaction);
+            indexTransaction(transaction);
+            accepted.add(transaction);
+        }
+
+        if (!accepted.isEmpty()) {
+            accepted.sort(Comparator.comparingLong(Transaction::getTimestamp));
+            transactions.merge(accepted);
+            touch();
+            if (listener != null) {
+                listener.onTransactions(accepted);
+            }
+        }
+        return accepted.size();
+    }
+
+    /**
+     * Добавляет транзакцию в историю и обновляет индекс категорий.
+     *
+     * @param transaction Новая транзакция.
+     */
+    private void addTransaction(Transaction transaction) {
+        transactions.append(transaction);
+        indexTransaction(transaction);
+        touch();
+        if (listener != null) {
+            listener.onTransaction(transaction);
+        }
+    }
+
+    /**
+     * Записывает бюджет категории и регистрирует категорию в индексе как расходную.
+     *
+     * @param category Название категории.
+     * @param amount Сумма бюджета.
+     */
+    private void putBudget(String category, Money amount) {
+        replaceBudget(category, amount);
+        categoryIndex.computeIfAbsent(category, c -> new CategoryStats(TransactionType.EXPENSE));
+        touch();
+        if (listener != null) {
+            listener.onBudget(category, amount);
+        }
+    }
+
+    /**
+     * Применяет ранее зафиксированную транзакцию без проверок и уведомлений.
+     * Используется при воспроизведении журнала изменений.
+     *
+     * @param transaction Транзакция из журнала.
+     */
+    public synchronized void restoreTransaction(Transaction transaction) {
+        post(transaction);
+    }
+
+    /**
+     * Записывает транзакцию в историю по её времени без проверок и уведомлений:
+     * изменяет баланс, обновляет индекс категорий и версию кошелька.
+     *
+     * @param transaction Транзакция.
+     */
+    private void post(Transaction transaction) {
+        applyToBalance(transaction);
+        transactions.insert(transaction);
+        indexTransaction(transaction);
+        touch();
+    }
+
+    /**
+     * Применяет ранее зафиксированный бюджет без проверок и уведомлений.
+     * Используется при воспроизведении журнала изменений.
+     *
+     * @param category Категория бюджета.
+     * @param amount Сумма бюджета.
+     */
+    public synchronized void restoreBudget(String category, Money amount) {
+        replaceBudget(category, amount);
+        categoryIndex.computeIfAbsent(category, c -> new CategoryStats(TransactionType.EXPENSE));
+        touch();
+    }
+
+    /**
+     * Записывает бюджет категории в копию карты бюджетов и публикует копию вместо прежней карты.
+     * Бюджеты меняются редко, а карта выдается читателям без копирования.
+     *
+     * @param category Название категории.
+     * @param amount Сумма бюджета.
+     */
+    private void replaceBudget(String category, Money amount) {
+        Map<String, Money> updated = new HashMap<>(budgets);
+        updated.put(category, amount);
+        budgets = updated;
     }
 
     /**
@@ -172,17 +642,17 @@ public class Wallet implements Serializable {
      * @param category Категория для проверки бюджета.
      * @return Числовое значение общего бюджета для указанной категории.
      */
-    public BigDecimal getBudget(String category) {
-        return budgets.getOrDefault(category, BigDecimal.ZERO);
+    public synchronized Money getBudget(String category) {
+        return budgets.getOrDefault(category, Money.ZERO);
     }
 
     /**
-     * Возвращает копию карты всех бюджетов.
+     * Возвращает неизменяемый снимок карты всех бюджетов без копирования.
      *
-     * @return Карта всех бюджетов (Map<String, BigDecimal>).
+     * @return Карта всех бюджетов (Map<String, Money>).
      */
-    public Map<String, BigDecimal> getBudgets() {
-        return new HashMap<>(budgets);
+    public synchronized Map<String, Money> getBudgets() {
+        return Collections.unmodifiableMap(budgets);
     }
 
     /**
@@ -191,22 +661,20 @@ public class Wallet implements Serializable {
      * @param category Категория для проверки бюджета.
      * @return Числовое значение потраченного бюджета для указанной категории.
      */
-    public BigDecimal getBudgetSpent(String category) {
-        return transactions.stream()
-                .filter(t -> t.getCategory().equals(category) && t.getType() == TransactionType.EXPENSE)
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public synchronized Money getBudgetSpent(String category) {
+        CategoryStats stats = categoryIndex.get(category);
+        return stats != null ? stats.getSpentTotal() : Money.ZERO;
     }
 
     /**
      * Возвращает оставшийся бюджет для указанной категории.
      *
      * @param category Категория для вычисления оставшегося бюджета.
-     * @return Оставшийся бюджет для категории (BigDecimal).
+     * @return Оставшийся бюджет для категории (Money).
      */
-    public BigDecimal getBudgetRemain(String category) {
-        BigDecimal budget = getBudget(category);
-        BigDecimal spent = getBudgetSpent(category);
-        return budget.subtract(spent);
+    public synchronized Money getBudgetRemain(String category) {
+        Money budget = getBudget(category);
+        Money spent = getBudgetSpent(category);
+        return budget.minus(spent);
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package models;
+
+import java.util.List;
+
+/**
+ * Интерфейс для получения уведомлений об изменениях кошелька.
+ * Используется слоем хранения, чтобы фиксировать каждое изменение без полной перезаписи данных.
+ */
+public interface WalletListener {
+
+    /**
+     * Вызывается после добавления транзакции в кошелек.
+     *
+     * @param transaction Добавленная транзакция.
+     */
+    void onTransaction(Transaction transaction);
+
+    /**
+     * Вызывается после добавления пакета транзакций в кошелек (например, при импорте выписки).
+     * По умолчанию о каждой транзакции сообщается по отдельности.
+     *
+     * @param transactions Добавленные транзакции.
+     */
+    default void onTransactions(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            onTransaction(transaction);
+        }
+    }
+
+    /**
+     * Вызывается после проведения перевода из кошелька: обе проводки уже записаны в кошельки
+     * отправителя и получателя. Вызывается под мониторами обоих кошельков.
+     *
+     * @param transfer Проведённый перевод.
+     * @param counterpart Кошелек получателя.
+     */
+    void onTransfer(Transfer transfer, Wallet counterpart);
+
+    /**
+     * Вызывается после записи бюджета категории.
+     *
+     * @param category Категория бюджета.
+     * @param amount Новая сумма бюджета.
+     */
+    void onBudget(String category, Money amount);
+}
@@ -0,0 +1,246 @@
+package services;
+
+import models.*;
+
+import java.io.Serial;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Сервис общих отчетов по всем пользователям системы.
+ * Набор пользователей делится на группы, а длинная история транзакций одного пользователя - на участки;
+ * группы и участки обрабатываются параллельно в собственном пуле ForkJoinPool, а частичные агрегаты
+ * объединяются. Результат совпадает с последовательным расчётом при любой степени параллелизма.
+ * Степень параллелизма по умолчанию задается системным свойством finance.analytics.parallelism
+ * (по умолчанию - количество процессоров); значение 1 отключает параллельный расчёт.
+ */
+public class AnalyticsService implements AutoCloseable {
+    /**
+     * Количество пользователей, обрабатываемых одной задачей без дальнейшего деления.
+     */
+    static final int USERS_PER_TASK = 8;
+
+    /**
+     * Количество транзакций одного пользователя, обрабатываемых одной задачей без дальнейшего деления.
+     */
+    static final int TRANSACTIONS_PER_TASK = 1 << 16;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    /**
+     * Конструктор для создания сервиса со степенью параллелизма из системных свойств.
+     */
+    public AnalyticsService() {
+        this(Integer.getInteger("finance.analytics.parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Конструктор для создания сервиса с указанной степенью параллелизма.
+     *
+     * @param parallelism Количество потоков расчёта (1 - последовательный расчёт в вызывающем потоке).
+     * @throws IllegalArgumentException Если степень параллелизма не положительна.
+     */
+    public AnalyticsService(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Степень параллелизма должна быть положительным числом.");
+        }
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Геттер для получения степени параллелизма.
+     *
+     * @return Количество потоков расчёта.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Строит общий отчет по всей истории операций пользователей.
+     * Агрегаты копируются из индексов категорий кошельков, поэтому история транзакций не обходится.
+     *
+     * @param users Пользователи (например, AuthService.getAllUsers().values()).
+     * @return Общий отчет.
+     */
+    public SystemReport analyze(Collection<User> users) {
+        return analyze(users, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Строит общий отчет по операциям пользователей за период.
+     * Балансы и бюджеты берутся текущие, а суммы по категориям и превышения бюджетов
+     * считаются по операциям за период.
+     *
+     * @param users Пользователи (например, AuthService.getAllUsers().values()).
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Общий отчет.
+     */
+    public SystemReport analyze(Collection<User> users, long from, long to) {
+        // Пользователи упорядочиваются по логину, чтобы разбиение на задачи не зависело от порядка в коллекции
+        User[] sorted = users.toArray(new User[0]);
+        Arrays.sort(sorted, Comparator.comparing(User::getUsername));
+        if (pool == null) {
+            return analyzeUsers(sorted, 0, sorted.length, from, to, false);
+        }
+        return pool.invoke(new UsersTask(sorted, 0, sorted.length, from, to));
+    }
+
+    /**
+     * Формирует текстовый общий отчет.
+     *
+     * @param report Общий отчет.
+     * @param top Количество категорий в списках самых крупных категорий.
+     * @return Строка с общим отчетом.
+     */
+    public String render(SystemReport report, int top) {
+        CategoryAggregate categories = report.getCategories();
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Пользователей: %d\n", report.getUserCount()));
+        text.append(String.format("Общий баланс: %s\n", report.getTotalBalance()));
+        text.append(String.format("Общая сумма доходов: %s (операций: %d)\n",
+                categories.getTotal(TransactionType.INCOME), categories.getCount(TransactionType.INCOME)));
+        text.append(String.format("Общая сумма расходов: %s (операций: %d)\n",
+                categories.getTotal(TransactionType.EXPENSE), categories.getCount(TransactionType.EXPENSE)));
+        text.append(String.format("Бюджетов: %d, превышено: %d (пользователей с превышением: %d)\n",
+                report.getBudgetCount(), report.getBudgetOverruns(), report.getUsersOverBudget()));
+
+        text.append(String.format("\nКрупнейшие категории расходов (до %d):", top));
+        List<String> expenses = report.getTopCategories(TransactionType.EXPENSE, top);
+        for (int i = 0; i < expenses.size(); i++) {
+            CategoryStats stats = categories.get(expenses.get(i));
+            text.append(String.format("\n%d. %s: %s (операций: %d)", i + 1, expenses.get(i),
+                    stats.getSpentTotal(), stats.getCount(TransactionType.EXPENSE)));
+        }
+        if (expenses.isEmpty()) {
+            text.append("\nНет расходов.");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Останавливает потоки расчёта.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Строит отчет по группе пользователей в текущем потоке.
+     *
+     * @param users Пользователи, упорядоченные по логину.
+     * @param start Индекс первого пользователя группы.
+     * @param end Индекс, следующий за последним пользователем группы.
+     * @param from Начало периода включительно.
+     * @param to Конец периода не включительно.
+     * @param parallel true, если длинную историю транзакций можно делить на участки для пула.
+     * @return Отчет по группе пользователей.
+     */
+    private static SystemReport analyzeUsers(User[] users, int start, int end, long from, long to, boolean parallel) {
+        SystemReport report = new SystemReport();
+        for (int i = start; i < end; i++) {
+            Wallet wallet = users[i].getWallet();
+            long balance;
+            Map<String, Money> budgets;
+            CategoryAggregate aggregate = null;
+            List<Transaction> transactions = null;
+
+            // Баланс, бюджеты и история читаются вместе, чтобы соответствовать одному состоянию кошелька
+            synchronized (wallet) {
+                balance = wallet.getBalance().getMinorUnits();
+                budgets = wallet.getBudgets();
+                if (from == Long.MIN_VALUE && to == Long.MAX_VALUE) {
+                    aggregate = wallet.getCategoryAggregate();
+                } else {
+                    transactions = wallet.getTransactionsBetween(from, to);
+                }
+            }
+
+            if (aggregate == null) {
+                aggregate = parallel && transactions.size() > TRANSACTIONS_PER_TASK
+                        ? new HistoryTask(transactions, 0, transactions.size()).invoke()
+                        : CategoryAggregate.of(transactions);
+            }
+            report.addUser(balance, aggregate, budgets);
+        }
+        return report;
+    }
+
+    /**
+     * Задача построения отчета по группе пользователей.
+     * Большая группа делится пополам, и половины обрабатываются параллельно.
+     */
+    private static class UsersTask extends RecursiveTask<SystemReport> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final User[] users;
+        private final int start;
+        private final int end;
+        private final long from;
+        private final long to;
+
+        UsersTask(User[] users, int start, int end, long from, long to) {
+            this.users = users;
+            this.start = start;
+            this.end = end;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SystemReport compute() {
+            if (end - start <= USERS_PER_TASK) {
+                return analyzeUsers(users, start, end, from, to, true);
+            }
+            int middle = (start + end) >>> 1;
+            UsersTask left = new UsersTask(users, start, middle, from, to);
+            left.fork();
+            SystemReport right = new UsersTask(users, middle, end, from, to).compute();
+            SystemReport report = left.join();
+            report.merge(right);
+            return report;
+        }
+    }
+
+    /**
+     * Задача группировки участка истории транзакций одного пользователя по категориям.
+     * Длинный участок делится пополам, и половины обрабатываются параллельно.
+     */
+    private static class HistoryTask extends RecursiveTask<CategoryAggregate> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // Задачи выполняются только в пуле и не сериализуются; снимок истории может быть несериализуемым
+        private final transient List<Transaction> transactions;
+        private final int start;
+        private final int end;
+
+        HistoryTask(List<Transaction> transactions, int start, int end) {
+            this.transactions = transactions;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected CategoryAggregate compute() {
+            if (end - start <= TRANSACTIONS_PER_TASK) {
+                return CategoryAggregate.of(transactions.subList(start, end));
+            }
+            int middle = (start + end) >>> 1;
+            HistoryTask left = new HistoryTask(transactions, start, middle);
+            left.fork();
+            CategoryAggregate right = new HistoryTask(transactions, middle, end).compute();
+            CategoryAggregate aggregate = left.join();
+            aggregate.merge(right);
+            return aggregate;
+        }
+    }
+}
@@ -1,9 +1,9 @@
 package services;
 
 import models.*;
-import java.util.HashMap;
 import java.util.Map;
-import storage.FileStorage;
+import java.util.Set;
+import storage.*;
 import java.io.IOException;
 
 /**
@@ -11,47 +11,59 @@ import java.io.IOException;
  * Реализует регистрацию и вход пользователей в систему.
  */
 public class AuthService {
-    private Map<String, User> users;
-    private static final String STORAGE_FILE = "users.dat";
+    /**
+     * Наибольшая длина имени пользователя в символах.
+     * Имя входит в названия категорий переводов, поэтому ограничено сильнее, чем название категории.
+     */
+    public static final int MAX_USERNAME_LENGTH = 64;
+
+    private final UserStore store;
 
     /**
-     * Конструктор для инициализации сервиса аутентификации.
-     * При инициализации пытаемся загрузить данные о пользователях из файла.
-     * Если загрузка не удалась, инициализируем пустую коллекцию пользователей.
+     * Конструктор для инициализации сервиса аутентификации с настройками хранения по умолчанию.
      */
-    @SuppressWarnings("unchecked")
     public AuthService() {
-        try {
-            Object data = FileStorage.loadData(STORAGE_FILE);
-            this.users = (Map<String, User>) data;
-        } catch (IOException | ClassNotFoundException e) {
-            this.users = new HashMap<>();
-        }
+        this(StorageConfig.fromSystemProperties());
+    }
+
+    /**
+     * Конструктор для инициализации сервиса аутентификации.
+     * При инициализации загружается только индекс пользователей;
+     * кошельки загружаются из хранилища при первом обращении к ним.
+     *
+     * @param config Настройки хранения данных.
+     */
+    public AuthService(StorageConfig config) {
+        this.store = UserStore.open(config);
     }
 
     /**
      * Регистрация нового пользователя в системе.
      * Проверяет, существует ли уже пользователь с таким именем.
-     * Если нет, сохраняет его в коллекции.
+     * Если нет, сохраняет его в хранилище.
      *
      * @param username Имя пользователя.
      * @param password Пароль пользователя.
      * @return true, если регистрация прошла успешно, иначе false.
+     * @throws IllegalArgumentException Если имя пользователя длиннее MAX_USERNAME_LENGTH символов.
      */
     public boolean register(String username, String password) {
-        if (users.containsKey(username)) {
+        if (username.length() > MAX_USERNAME_LENGTH) {
+            throw new IllegalArgumentException("Имя пользователя должно содержать не более " + MAX_USERNAME_LENGTH + " символов.");
+        }
+        if (store.exists(username)) {
             return false; // Пользователь уже существует
         }
 
-        // Добавляем нового пользователя с хэшированным паролем
-        users.put(username, new User(username, Integer.toString(password.hashCode())));
-        saveUsers();
-        return true;
+        // Добавляем нового пользователя с хэшированным паролем; повторная проверка внутри хранилища
+        // защищает от одновременной регистрации одного и того же имени
+        return store.create(username, Integer.toString(password.hashCode())) != null;
     }
 
     /**
      * Вход пользователя в систему.
      * Проверяет, существует ли пользователь с данным именем и правильно ли введен пароль.
+     * Пароль проверяется по индексу, и только после этого загружается кошелек пользователя.
      *
      * @param username Имя пользователя.
      * @param password Пароль пользователя.
@@ -59,7 +71,11 @@ public class AuthService {
      */
 
     public User login(String username, String password) {
-        User user = users.get(username);
+        String passwordHash = store.getPasswordHash(username);
+        if (passwordHash == null || !passwordHash.equals(Integer.toString(password.hashCode()))) {
+            return null;
+        }
+        User user = store.get(username);
         if (user != null && user.validatePassword(password)) {
             return user;
         }
@@ -67,24 +83,61 @@ public class AuthService {
     }
 
     /**
-     * Сохраняет список пользователей в файл.
-     * Использует класс FileStorage для сериализации коллекции пользователей.
+     * Возвращает пользователя по имени, загружая его кошелек при необходимости.
+     *
+     * @param username Имя пользователя.
+     * @return Пользователь или null, если он не найден.
+     */
+    public User getUser(String username) {
+        return store.get(username);
+    }
+
+    /**
+     * Сохраняет изменённых пользователей в хранилище.
+     * Записываются только сегменты пользователей, чьи данные изменились.
      * Если происходит ошибка при сохранении, выводится сообщение в консоль.
      */
     public void saveUsers() {
         try {
-            FileStorage.saveData(users, STORAGE_FILE);
+            store.save();
         } catch (IOException e) {
             System.out.println("Не удалось сохранить пользователей.");
         }
     }
 
+    /**
+     * Фиксирует накопленные записи журнала.
+     * Вызывается после завершения каждой команды; без журнала ничего не делает.
+     */
+    public void commit() {
+        store.commit();
+    }
+
+    /**
+     * Закрывает хранилище: останавливает фоновое сохранение снимков и закрывает журнал.
+     * Вызывается, когда сервис больше не используется (например, при повторном открытии данных).
+     */
+    public void close() {
+        store.close();
+    }
+
+    /**
+     * Геттер для получения логинов всех зарегистрированных пользователей.
+     * Кошельки пользователей при этом не загружаются.
+     *
+     * @return Множество логинов.
+     */
+    public Set<String> getUsernames() {
+        return store.getUsernames();
+    }
+
     /**
      * Геттер для получения списка всех зарегистрированных пользователей.
+     * Загружает кошельки всех пользователей, поэтому предназначен для общих отчетов.
      *
      * @return Список всех пользователей
      */
     public Map<String, User> getAllUsers() {
-        return users;
+        return store.loadAll();
     }
 }
@@ -0,0 +1,172 @@
+package services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Потоковый разбор файла CSV по записям.
+ * Поддерживаются поля в кавычках (с удвоенными кавычками внутри и переводами строк), окончания строк
+ * \n и \r\n и метка порядка байтов в начале файла. Разделитель полей определяется по первой строке:
+ * точка с запятой, если она там встречается, иначе запятая.
+ * В памяти находится только буфер чтения и текущая запись, поэтому размер файла не ограничен.
+ */
+final class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader in;
+    private final char[] buffer;
+    private final StringBuilder field;
+    private int position;
+    private int limit;
+    private char delimiter;
+    private int line;
+    private int nextLine;
+
+    /**
+     * Конструктор для создания разборщика поверх источника символов.
+     *
+     * @param in Источник символов (закрывается вместе с разборщиком).
+     */
+    CsvReader(Reader in) {
+        this.in = in;
+        this.buffer = new char[BUFFER_SIZE];
+        this.field = new StringBuilder();
+        this.nextLine = 1;
+    }
+
+    /**
+     * Читает следующую запись.
+     * Пустая строка читается как запись из одного пустого поля.
+     *
+     * @param fields Список, в который записываются поля записи (предварительно очищается).
+     * @return false, если файл закончился.
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     */
+    boolean next(List<String> fields) throws IOException {
+        fields.clear();
+        if (delimiter == 0) {
+            detectDelimiter();
+        }
+        if (!fill()) {
+            return false;
+        }
+
+        line = nextLine;
+        field.setLength(0);
+        boolean quoted = false;
+        while (fill()) {
+            char c = buffer[position++];
+            if (quoted) {
+                if (c != '"') {
+                    if (c == '\n') {
+                        nextLine++;
+                    }
+                    field.append(c);
+                } else if (fill() && buffer[position] == '"') {
+                    // Удвоенная кавычка внутри поля означает саму кавычку
+                    field.append('"');
+                    position++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                nextLine++;
+                break;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    /**
+     * Геттер для получения номера строки файла, с которой начинается последняя прочитанная запись.
+     *
+     * @return Номер строки, начиная с 1.
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Закрывает источник символов.
+     *
+     * @throws IOException Исключение, если произошла ошибка при закрытии.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Определяет разделитель полей по первой строке и пропускает метку порядка байтов.
+     * Если первая строка не помещается в буфер, разделитель определяется по её началу.
+     *
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     */
+    private void detectDelimiter() throws IOException {
+        int end = -1;
+        while (end < 0 && limit < buffer.length) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                break;
+            }
+            end = indexOf('\n', limit, limit + read);
+            limit += read;
+        }
+        if (limit > 0 && buffer[0] == '\uFEFF') {
+            position = 1;
+        }
+        delimiter = ',';
+        for (int i = position; i < (end >= 0 ? end : limit); i++) {
+            if (buffer[i] == ';') {
+                delimiter = ';';
+                break;
+            }
+        }
+    }
+
+    /**
+     * Ищет символ в части буфера.
+     *
+     * @param c Символ.
+     * @param from Начало части буфера включительно.
+     * @param to Конец части буфера не включительно.
+     * @return Индекс символа или -1, если символа нет.
+     */
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Дочитывает буфер, если все прочитанные символы уже разобраны.
+     *
+     * @return false, если файл закончился.
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
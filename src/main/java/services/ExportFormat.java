@@ -0,0 +1,36 @@
+package services;
+
+/**
+ * Перечисление форматов выгрузки истории операций.
+ * Это перечисление определяет формат файла выгрузки:
+ * - CSV: Строки "дата,тип,сумма,категория" с заголовком; файл можно загрузить обратно командой import.
+ * - JSONL: JSON Lines - по одному объекту JSON на операцию.
+ */
+public enum ExportFormat {
+    CSV, JSONL;
+
+    /**
+     * Возвращает расширение файла выгрузки.
+     *
+     * @return Расширение без точки.
+     */
+    public String getExtension() {
+        return this == CSV ? "csv" : "jsonl";
+    }
+
+    /**
+     * Определяет формат по названию без учёта регистра.
+     *
+     * @param name Название формата (csv или jsonl).
+     * @return Формат выгрузки.
+     * @throws IllegalArgumentException Если формат не поддерживается.
+     */
+    public static ExportFormat parse(String name) {
+        for (ExportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестный формат \"" + name + "\". Используйте csv или jsonl.");
+    }
+}
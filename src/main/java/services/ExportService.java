@@ -0,0 +1,402 @@
+package services;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import models.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис выгрузки истории операций пользователей в файлы CSV и JSON Lines.
+ * Операции записываются по одной через буфер в файловый канал, поэтому текст выгрузки
+ * не формируется в памяти целиком. Файл записывается через временный файл и появляется
+ * под своим именем только полностью записанным.
+ *
+ * Выгрузка всех пользователей выполняется параллельно, каждый пользователь - в отдельный файл.
+ * Количество потоков задается системным свойством finance.export.parallelism
+ * (по умолчанию - количество процессоров); значение 1 отключает параллельную выгрузку.
+ */
+public class ExportService implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME.withZone(ZoneId.systemDefault());
+
+    private static final LatencyHistogram USER_TIMER = Metrics.timer("export.user");
+    private static final LongAdder ROWS = Metrics.counter("export.rows");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("export.written.bytes");
+
+    private final int parallelism;
+    private final ExecutorService pool;
+
+    /**
+     * Конструктор для создания сервиса с количеством потоков из системных свойств.
+     */
+    public ExportService() {
+        this(Integer.getInteger("finance.export.parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Конструктор для создания сервиса с указанным количеством потоков выгрузки.
+     *
+     * @param parallelism Количество потоков (1 - последовательная выгрузка в вызывающем потоке).
+     * @throws IllegalArgumentException Если количество потоков не положительно.
+     */
+    public ExportService(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Степень параллелизма должна быть положительным числом.");
+        }
+        this.parallelism = parallelism;
+        this.pool = parallelism > 1 ? Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "finance-export");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Геттер для получения количества потоков выгрузки.
+     *
+     * @return Количество потоков.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Выгружает историю операций пользователя в файл.
+     * История берётся на момент начала выгрузки; изменения кошелька во время записи в файл не попадают.
+     *
+     * @param user Пользователь.
+     * @param format Формат файла.
+     * @param file Путь к файлу выгрузки (существующий файл заменяется).
+     * @return Количество выгруженных операций.
+     * @throws IOException Исключение, если не удалось записать файл.
+     */
+    public long exportUser(User user, ExportFormat format, Path file) throws IOException {
+        long started = System.nanoTime();
+        List<Transaction> transactions = user.getWallet().getTransactions();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE), BUFFER_SIZE);
+            RowWriter rows = new RowWriter(out, format, user.getUsername());
+            rows.writeHeader();
+            for (Transaction transaction : transactions) {
+                rows.write(transaction);
+            }
+            out.flush();
+            BYTES_WRITTEN.add(channel.position());
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ROWS.add(transactions.size());
+        USER_TIMER.recordSince(started);
+        return transactions.size();
+    }
+
+    /**
+     * Выгружает историю операций всех пользователей в отдельные файлы каталога.
+     * Файл пользователя называется по его логину (в кодировке URL) с расширением формата.
+     * Если выгрузка некоторых пользователей не удалась, остальные всё равно выгружаются,
+     * а затем выбрасывается исключение с первой ошибкой.
+     *
+     * @param authService Сервис пользователей.
+     * @param format Формат файлов.
+     * @param dir Каталог выгрузки (создается при необходимости).
+     * @return Количество выгруженных операций по логинам пользователей.
+     * @throws IOException Исключение, если не удалось выгрузить хотя бы одного пользователя.
+     */
+    public Map<String, Long> exportAll(AuthService authService, ExportFormat format, Path dir) throws IOException {
+        Files.createDirectories(dir);
+        List<String> usernames = new ArrayList<>(authService.getUsernames());
+        Collections.sort(usernames);
+
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (String username : usernames) {
+            tasks.add(() -> {
+                User user = authService.getUser(username);
+                if (user == null) {
+                    throw new IOException("Не удалось загрузить данные пользователя " + username + ".");
+                }
+                Path file = dir.resolve(URLEncoder.encode(username, StandardCharsets.UTF_8) + "." + format.getExtension());
+                return exportUser(user, format, file);
+            });
+        }
+
+        List<Future<Long>> results;
+        if (pool == null) {
+            results = new ArrayList<>();
+            for (Callable<Long> task : tasks) {
+                FutureTask<Long> future = new FutureTask<>(task);
+                future.run();
+                results.add(future);
+            }
+        } else {
+            try {
+                results = pool.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Выгрузка прервана.", e);
+            }
+        }
+
+        Map<String, Long> exported = new TreeMap<>();
+        IOException failure = null;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                exported.put(usernames.get(i), results.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Выгрузка прервана.", e);
+            } catch (ExecutionException e) {
+                IOException error = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                if (failure == null) {
+                    failure = error;
+                } else {
+                    failure.addSuppressed(error);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return exported;
+    }
+
+    /**
+     * Останавливает потоки выгрузки.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Запись операций в выбранном формате.
+     * Дата и сумма формируются в переиспользуемом буфере: начало дня вычисляется один раз на день,
+     * а время суток - арифметически. Подготовленное значение поля категории запоминается по коду категории.
+     */
+    private static class RowWriter {
+        private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+        private final Writer out;
+        private final ExportFormat format;
+        private final String username;
+        private final ZoneId zone = DATE_FORMAT.getZone();
+        // Дата в формате 2024-01-31T18:30:00 или 2024-01-31T18:30:00.250
+        private final char[] date = new char[23];
+        private long dayStart = Long.MAX_VALUE;
+        private long dayEnd = Long.MIN_VALUE;
+        private boolean regularDay;
+        private String[] categories = new String[64];
+
+        RowWriter(Writer out, ExportFormat format, String username) {
+            this.out = out;
+            this.format = format;
+            // Логин одинаков во всех строках выгрузки JSON Lines, поэтому экранируется один раз
+            this.username = format == ExportFormat.JSONL ? quoteJson(username) : username;
+        }
+
+        /**
+         * Записывает строку заголовка (только для CSV).
+         *
+         * @throws IOException Исключение, если произошла ошибка при записи.
+         */
+        void writeHeader() throws IOException {
+            if (format == ExportFormat.CSV) {
+                out.write("date,type,amount,category\n");
+            }
+        }
+
+        /**
+         * Записывает одну операцию.
+         *
+         * @param t Транзакция.
+         * @throws IOException Исключение, если произошла ошибка при записи.
+         */
+        void write(Transaction t) throws IOException {
+            String type = t.getType() == TransactionType.INCOME ? "income" : "expense";
+            if (format == ExportFormat.CSV) {
+                writeDate(t.getTimestamp());
+                out.write(',');
+                out.write(type);
+                out.write(',');
+                writeAmount(t.getAmountMinor());
+                out.write(',');
+                out.write(category(t));
+                out.write('\n');
+            } else {
+                out.write("{\"username\":");
+                out.write(username);
+                out.write(",\"timestamp\":");
+                out.write(Long.toString(t.getTimestamp()));
+                out.write(",\"date\":\"");
+                writeDate(t.getTimestamp());
+                out.write("\",\"type\":\"");
+                out.write(type);
+                out.write("\",\"amount\":");
+                writeAmount(t.getAmountMinor());
+                out.write(",\"category\":");
+                out.write(category(t));
+                out.write("}\n");
+            }
+        }
+
+        /**
+         * Записывает дату операции в формате ISO (в часовом поясе системы).
+         * В дни перехода на летнее или зимнее время дата форматируется общим способом.
+         *
+         * @param timestamp Время в миллисекундах от начала эпохи.
+         * @throws IOException Исключение, если произошла ошибка при записи.
+         */
+        private void writeDate(long timestamp) throws IOException {
+            if (timestamp < dayStart || timestamp >= dayEnd) {
+                startDay(timestamp);
+            }
+            if (!regularDay) {
+                out.write(DATE_FORMAT.format(Instant.ofEpochMilli(timestamp)));
+                return;
+            }
+            long millisOfDay = timestamp - dayStart;
+            int seconds = (int) (millisOfDay / 1000);
+            int millis = (int) (millisOfDay % 1000);
+            putDigits(11, seconds / 3600, 2);
+            putDigits(14, seconds / 60 % 60, 2);
+            putDigits(17, seconds % 60, 2);
+            int length = 19;
+            if (millis != 0) {
+                date[19] = '.';
+                putDigits(20, millis, 3);
+                length = 23;
+            }
+            out.write(date, 0, length);
+        }
+
+        /**
+         * Вычисляет границы дня, в который попадает время, и записывает дату дня в буфер.
+         *
+         * @param timestamp Время в миллисекундах от начала эпохи.
+         */
+        private void startDay(long timestamp) {
+            LocalDate day = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+            dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            String text = day.toString();
+            regularDay = dayEnd - dayStart == DAY_MILLIS && text.length() == 10;
+            if (regularDay) {
+                text.getChars(0, 10, date, 0);
+                date[10] = 'T';
+                date[13] = ':';
+                date[16] = ':';
+            }
+        }
+
+        /**
+         * Записывает число в буфер даты с ведущими нулями.
+         *
+         * @param offset Позиция в буфере.
+         * @param value Число.
+         * @param digits Количество цифр.
+         */
+        private void putDigits(int offset, int value, int digits) {
+            for (int i = offset + digits - 1; i >= offset; i--) {
+                date[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        /**
+         * Записывает сумму в копейках с двумя знаками после запятой (например, 150.00).
+         *
+         * @param minorUnits Сумма в копейках (положительная).
+         * @throws IOException Исключение, если произошла ошибка при записи.
+         */
+        private void writeAmount(long minorUnits) throws IOException {
+            out.write(Long.toString(minorUnits / 100));
+            int cents = (int) (minorUnits % 100);
+            out.write('.');
+            out.write('0' + cents / 10);
+            out.write('0' + cents % 10);
+        }
+
+        /**
+         * Возвращает подготовленное для формата значение поля категории.
+         *
+         * @param t Транзакция.
+         * @return Поле категории (в кавычках, если требуется).
+         */
+        private String category(Transaction t) {
+            int id = t.getCategoryId();
+            if (id >= categories.length) {
+                categories = Arrays.copyOf(categories, Math.max(id + 1, categories.length * 2));
+            }
+            String field = categories[id];
+            if (field == null) {
+                field = format == ExportFormat.CSV ? quoteCsv(t.getCategory()) : quoteJson(t.getCategory());
+                categories[id] = field;
+            }
+            return field;
+        }
+
+        /**
+         * Заключает поле CSV в кавычки, если оно содержит разделитель, кавычку или перевод строки.
+         *
+         * @param value Значение поля.
+         * @return Поле CSV.
+         */
+        private static String quoteCsv(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == ';' || c == '"' || c == '\n' || c == '\r') {
+                    return "\"" + value.replace("\"", "\"\"") + "\"";
+                }
+            }
+            return value;
+        }
+
+        /**
+         * Записывает строку в кавычках JSON, экранируя служебные символы.
+         *
+         * @param value Строка.
+         * @return Строка JSON.
+         */
+        private static String quoteJson(String value) {
+            StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> quoted.append("\\\"");
+                    case '\\' -> quoted.append("\\\\");
+                    default -> {
+                        if (c < 0x20) {
+                            quoted.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            quoted.append(c);
+                        }
+                    }
+                }
+            }
+            return quoted.append('"').toString();
+        }
+    }
+}
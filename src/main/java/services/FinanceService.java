@@ -1,15 +1,105 @@
 package services;
 
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import models.*;
-import java.math.BigDecimal;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Класс для управления финансовыми операциями пользователей.
  * Включает добавление дохода, расхода, установку бюджета и получение статистики.
  */
 public class FinanceService {
+    /**
+     * Количество разделов отчетов, хранимых в кэше по умолчанию.
+     */
+    public static final int DEFAULT_CACHE_CAPACITY = 64;
+    /**
+     * Суммарная длина текста разделов отчетов в кэше по умолчанию (около 2 МБ в куче).
+     */
+    public static final long DEFAULT_CACHE_CHARS = 1L << 20;
+
+    /**
+     * Количество переводов, ключи идемпотентности которых запоминаются по умолчанию.
+     */
+    public static final int DEFAULT_TRANSFER_KEY_CAPACITY = 100_000;
+
+    // Наибольшая длина ключа идемпотентности перевода
+    private static final int MAX_TRANSFER_KEY_LENGTH = 128;
+
+    // Длительность формирования отчетов; отчеты, выданные из кэша, не замеряются
+    private static final LatencyHistogram OVERVIEW_TIMER = Metrics.timer("report.overview");
+    private static final LatencyHistogram SUMMARY_TIMER = Metrics.timer("report.summary");
+    private static final LatencyHistogram BUDGET_TIMER = Metrics.timer("report.budget");
+    private static final LatencyHistogram TRANSACTIONS_TIMER = Metrics.timer("report.transactions");
+    private static final LatencyHistogram CATEGORY_BUDGET_TIMER = Metrics.timer("report.category-budget");
+    private static final LatencyHistogram CATEGORY_TRANSACTIONS_TIMER = Metrics.timer("report.category-transactions");
+    private static final LatencyHistogram WRITE_TRANSACTIONS_TIMER = Metrics.timer("report.write-transactions");
+    private static final LatencyHistogram WRITE_CATEGORY_TRANSACTIONS_TIMER = Metrics.timer("report.write-category-transactions");
+    private static final LatencyHistogram TOP_TRANSACTIONS_TIMER = Metrics.timer("report.top-transactions");
+    private static final LatencyHistogram TOP_CATEGORIES_TIMER = Metrics.timer("report.top-categories");
+    private static final LatencyHistogram TOP_RECIPIENTS_TIMER = Metrics.timer("report.top-recipients");
+
+    // Порядок крупнейших транзакций: по сумме, при равной сумме более ранняя считается крупнее
+    private static final Comparator<Transaction> BY_AMOUNT = Comparator.comparingLong(Transaction::getAmountMinor)
+            .thenComparing(Comparator.comparingLong(Transaction::getTimestamp).reversed());
+
+    private final ReportCache reportCache;
+    private final IdempotencyIndex transferKeys;
+    // Кошельки, переводы с ключами из истории которых уже внесены в индекс; ссылки слабые,
+    // чтобы индекс не удерживал выгруженные кошельки
+    private final Set<Wallet> indexedWallets;
+
+    /**
+     * Конструктор для создания сервиса с кэшем отчетов размера по умолчанию.
+     */
+    public FinanceService() {
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * Конструктор для создания сервиса с кэшем отчетов указанного размера.
+     *
+     * @param cacheCapacity Максимальное количество разделов отчетов в кэше (0 - кэширование отключено); суммарная длина их текста не превышает DEFAULT_CACHE_CHARS.
+     */
+    public FinanceService(int cacheCapacity) {
+        this(cacheCapacity, DEFAULT_TRANSFER_KEY_CAPACITY);
+    }
+
+    /**
+     * Конструктор для создания сервиса с кэшем отчетов и индексом ключей переводов указанного размера.
+     *
+     * @param cacheCapacity Максимальное количество разделов отчетов в кэше (0 - кэширование отключено); суммарная длина их текста не превышает DEFAULT_CACHE_CHARS.
+     * @param transferKeyCapacity Количество последних переводов, повтор которых распознается по ключу идемпотентности.
+     */
+    public FinanceService(int cacheCapacity, int transferKeyCapacity) {
+        this.reportCache = new ReportCache(cacheCapacity, DEFAULT_CACHE_CHARS);
+        this.transferKeys = new IdempotencyIndex(transferKeyCapacity);
+        this.indexedWallets = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+    }
+
+    /**
+     * Геттер для получения количества отчетов, выданных из кэша.
+     *
+     * @return Количество попаданий в кэш.
+     */
+    public long getCacheHits() {
+        return reportCache.getHits();
+    }
+
+    /**
+     * Геттер для получения количества отчетов, сформированных заново.
+     *
+     * @return Количество промахов кэша.
+     */
+    public long getCacheMisses() {
+        return reportCache.getMisses();
+    }
 
     /**
      * Добавляет доход в кошелек пользователя.
@@ -18,7 +108,7 @@ public class FinanceService {
      * @param amount Сумма дохода.
      * @param category Категория дохода.
      */
-    public void addIncome(User user, String category, BigDecimal amount) {
+    public void addIncome(User user, String category, Money amount) {
         user.getWallet().addIncome(category, amount);
     }
 
@@ -29,7 +119,7 @@ public class FinanceService {
      * @param amount Сумма расхода.
      * @param category Категория расхода.
      */
-    public void addExpense(User user, String category, BigDecimal amount) {
+    public void addExpense(User user, String category, Money amount) {
         user.getWallet().addExpense(category, amount);
     }
 
@@ -40,7 +130,7 @@ public class FinanceService {
      * @param category Категория, для которой устанавливается бюджет.
      * @param amount Сумма бюджета.
      */
-    public void setBudget(User user, String category, BigDecimal amount) {
+    public void setBudget(User user, String category, Money amount) {
         user.getWallet().setBudget(category, amount);
     }
 
@@ -52,52 +142,196 @@ public class FinanceService {
      * @param sender Отправитель перевода (пользователь, который переводит средства)
      * @param recipientUsername Логин получателя перевода
      * @param amount Сумма перевода
-     * @param authService Сервис для получения списка всех пользователей
+     * @param authService Сервис для поиска получателя
      * @return true, если перевод успешен, иначе false
      */
-    public boolean addTransfer(User sender, String recipientUsername, BigDecimal amount, AuthService authService) {
+    public boolean addTransfer(User sender, String recipientUsername, Money amount, AuthService authService) {
+        try {
+            transfer(sender, recipientUsername, amount, null, authService);
+            return true;
+        } catch (TransferException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Метод для перевода средств между пользователями с ключом идемпотентности.
+     * Перевод проводится одной операцией с двумя проводками: расходом у отправителя и доходом у получателя.
+     * Перевод атомарен: оба кошелька блокируются в порядке логинов владельцев,
+     * и обе проводки проверяются до того, как изменится хотя бы один из кошельков.
+     *
+     * Повторный запрос отправителя с тем же ключом не проводит перевод ещё раз, а возвращает
+     * перевод, проведённый по первому запросу. Ключ сохраняется в проводке списания, поэтому повтор
+     * распознается и после перезапуска: при первом переводе с ключом переводы отправителя с ключами
+     * из его истории (в том числе восстановленные из журнала) вносятся в индекс ключей.
+     * Индекс хранит последние переводы (см. DEFAULT_TRANSFER_KEY_CAPACITY).
+     *
+     * @param sender Отправитель перевода.
+     * @param recipientUsername Логин получателя перевода.
+     * @param amount Сумма перевода.
+     * @param key Ключ идемпотентности или null, если повтор распознавать не нужно.
+     * @param authService Сервис для поиска получателя.
+     * @return Проведённый перевод (при повторе - перевод по первому запросу).
+     * @throws IllegalArgumentException Если получатель совпадает с отправителем, сумма не положительна, ключ пуст
+     *                                  или слишком длинный, либо ключ уже использован для другого перевода.
+     * @throws TransferException Если перевод не выполнен: недостаточно средств, получатель не найден
+     *                           или кошелек отклонил проводки.
+     */
+    public Transfer transfer(User sender, String recipientUsername, Money amount, String key, AuthService authService) {
         // Проверяем, что не переводим сами себе
         if (sender.getUsername().equals(recipientUsername)) {
             throw new IllegalArgumentException("В качестве получателя указан текущий пользователь. Нельзя отправить перевод самому себе.");
         }
 
         // Проверяем, что сумма перевода положительная
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amount == null || !amount.isPositive()) {
             throw new IllegalArgumentException("Вводимое значение должно быть положительным числом.");
         }
 
+        if (key != null) {
+            if (key.isBlank() || key.length() > MAX_TRANSFER_KEY_LENGTH) {
+                throw new IllegalArgumentException("Ключ идемпотентности должен содержать от 1 до " + MAX_TRANSFER_KEY_LENGTH + " символов.");
+            }
+            // Повтор распознается до проверки баланса: средства могли быть списаны первым запросом
+            Transfer previous = findTransfer(sender, recipientUsername, amount, key);
+            if (previous != null) {
+                return previous;
+            }
+        }
+
+        // Находим получателя через AuthService (его кошелек загружается при необходимости)
+        User recipient = authService.getUser(recipientUsername);
+        if (recipient == null) {
+            throw new TransferException(TransferException.Reason.RECIPIENT_NOT_FOUND, "Получатель с таким логином не найден.");
+        }
+
         // Проверяем, что у отправителя есть достаточно средств
         if (sender.getWallet().getBalance().compareTo(amount) < 0) {
-            System.out.println("Ошибка: У вас недостаточно средств для перевода.");
-            return false;
+            throw insufficientFunds();
         }
 
-        // Находим получателя через AuthService
-        User recipient = authService.getAllUsers().get(recipientUsername);
-        if (recipient == null) {
-            System.out.println("Ошибка: Получатель с таким логином не найден.");
-            return false;
+        Wallet senderWallet = sender.getWallet();
+        Wallet recipientWallet = recipient.getWallet();
+
+        // Кошельки блокируются в порядке логинов, чтобы встречные переводы не взаимоблокировались
+        boolean senderFirst = sender.getUsername().compareTo(recipient.getUsername()) < 0;
+        Wallet first = senderFirst ? senderWallet : recipientWallet;
+        Wallet second = senderFirst ? recipientWallet : senderWallet;
+        synchronized (first) {
+            synchronized (second) {
+                // Одновременные запросы с одним ключом выполняются под монитором кошелька отправителя по очереди
+                if (key != null) {
+                    Transfer previous = findTransfer(sender, recipientUsername, amount, key);
+                    if (previous != null) {
+                        return previous;
+                    }
+                }
+
+                // Баланс мог измениться с момента предварительной проверки
+                if (senderWallet.getBalance().compareTo(amount) < 0) {
+                    throw insufficientFunds();
+                }
+
+                // Выполняем перевод: обе проводки проверяются и записываются кошельком отправителя вместе
+                Transfer transfer = new Transfer(key, sender.getUsername(), recipient.getUsername(), amount, System.currentTimeMillis());
+                try {
+                    senderWallet.addTransfer(transfer, recipientWallet);
+                } catch (IllegalArgumentException | ArithmeticException e) {
+                    throw new TransferException(TransferException.Reason.REJECTED, "Перевод отклонен: " + e.getMessage());
+                }
+                if (key != null) {
+                    transferKeys.put(transfer);
+                }
+                return transfer;
+            }
         }
+    }
 
-        // Выполняем перевод: уменьшение баланса отправителя и увеличение баланса получателя
-        try {
-            addExpense(sender, String.format("Перевод средств к %s", recipient.getUsername()), amount);  // Фиксируем расход у отправителя
-            addIncome(recipient, String.format("Перевод средств от %s", sender.getUsername()), amount); // Фиксируем доход у получателя
-            return true;
-        } catch (Exception e) {
-            System.out.println("Ошибка при выполнении перевода: " + e.getMessage());
-            return false;
+    /**
+     * Создает исключение об отказе в переводе из-за недостатка средств.
+     *
+     * @return Исключение с причиной INSUFFICIENT_FUNDS.
+     */
+    private static TransferException insufficientFunds() {
+        return new TransferException(TransferException.Reason.INSUFFICIENT_FUNDS, "У вас недостаточно средств для перевода.");
+    }
+
+    /**
+     * Проверяет, превысит ли расход остаток бюджета категории.
+     * Используется интерфейсом для предупреждения пользователя; сам расход не ограничивается бюджетом.
+     *
+     * @param user Пользователь.
+     * @param category Категория расхода.
+     * @param amount Сумма расхода.
+     * @return true, если категория расходная (или новая) и расход больше остатка её бюджета.
+     */
+    public boolean exceedsBudget(User user, String category, Money amount) {
+        return user.getWallet().exceedsBudget(category, amount);
+    }
+
+    /**
+     * Находит перевод отправителя, ранее проведённый с указанным ключом идемпотентности.
+     *
+     * @param sender Отправитель перевода.
+     * @param recipientUsername Логин получателя в повторном запросе.
+     * @param amount Сумма в повторном запросе.
+     * @param key Ключ идемпотентности.
+     * @return Перевод или null, если ключ не использовался.
+     * @throws IllegalArgumentException Если ключ использован для перевода другому получателю или другой суммы.
+     */
+    private Transfer findTransfer(User sender, String recipientUsername, Money amount, String key) {
+        indexHistory(sender);
+        Transfer previous = transferKeys.find(sender.getUsername(), key);
+        if (previous != null && !previous.matches(recipientUsername, amount)) {
+            throw new IllegalArgumentException("Ключ идемпотентности \"" + key + "\" уже использован для другого перевода.");
+        }
+        return previous;
+    }
+
+    /**
+     * Вносит в индекс ключей переводы с ключами из истории отправителя, если это ещё не сделано для его кошелька.
+     * История читается один раз на кошелек под его монитором, поэтому одновременные переводы
+     * того же отправителя ищут ключ только после заполнения индекса.
+     *
+     * @param sender Отправитель перевода.
+     */
+    private void indexHistory(User sender) {
+        Wallet wallet = sender.getWallet();
+        synchronized (wallet) {
+            if (!indexedWallets.add(wallet)) {
+                return;
+            }
+            // Переводы вносятся в порядке времени: при переполнении индекса вытесняются самые старые
+            for (Transaction transaction : wallet.getTransactions()) {
+                if (transaction.getTransferKey() != null) {
+                    Transfer transfer = Transfer.ofDebit(sender.getUsername(), transaction);
+                    if (transfer != null) {
+                        transferKeys.put(transfer);
+                    }
+                }
+            }
         }
     }
 
     /**
      * Возвращает полную информацию о финансах пользователя.
      * Включает баланс, суммы доходов/расходов и список операций.
+     * Результат кэшируется до изменения кошелька.
      *
      * @param user Пользователь, для которого формируется отчет.
      * @return Строка с полной информацией о финансах пользователя.
      */
     public String getOverview(User user) {
+        return reportCache.get(user, "overview", () -> timed(OVERVIEW_TIMER, () -> renderOverview(user)));
+    }
+
+    /**
+     * Формирует полный обзор финансов без использования кэша.
+     *
+     * @param user Пользователь, для которого формируется отчет.
+     * @return Строка с полной информацией о финансах пользователя.
+     */
+    private String renderOverview(User user) {
         String balance = getBalance(user);
         String overviewIncome = getIncomeOverview(user);
         String overviewExpense = getExpenseOverview(user);
@@ -189,22 +423,70 @@ public class FinanceService {
 
     /**
      * Возвращает общую сумму по типу транзакции (доходы или расходы).
+     * Результат кэшируется до изменения кошелька.
      *
      * @param user Пользователь.
      * @param type Тип транзакции (доходы или расходы).
      * @return Сводка по суммам доходов или расходов.
      */
     public String getSummaryByType(User user, TransactionType type) {
-        Wallet wallet = user.getWallet();
+        return reportCache.get(user, "summary:" + type, () -> timed(SUMMARY_TIMER, () -> renderSummaryByType(user, type)));
+    }
+
+    /**
+     * Формирует сводку по типу транзакций без использования кэша.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакции (доходы или расходы).
+     * @return Сводка по суммам доходов или расходов.
+     */
+    private String renderSummaryByType(User user, TransactionType type) {
         String label = type == TransactionType.INCOME ? "доходов" : "расходов";
 
-        BigDecimal totalExpenses = wallet.getTransactions().stream()
-                .filter(t -> t.getType() == type)
-                .map(Transaction::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Итоги берутся из агрегата категорий, без обхода истории транзакций
+        Money total = user.getWallet().getCategoryAggregate().getTotal(type);
+
+        return String.format(
+                "Общая сумма %s: %s", label, total
+        );
+    }
+
+    /**
+     * Возвращает сумму и количество транзакций указанного типа за период: по всем категориям или по одной.
+     * Если кошелек хранит историю в столбцах (finance.history.store), суммы за период складываются
+     * без создания объектов транзакций, векторными инструкциями при подключенном модуле jdk.incubator.vector.
+     * Результат кэшируется до изменения кошелька.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакции (доходы или расходы).
+     * @param category Название категории или null для всех категорий.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Сводка по сумме доходов или расходов за период.
+     */
+    public String getSummaryByType(User user, TransactionType type, String category, long from, long to) {
+        return reportCache.get(user, "summary:" + type + ":" + from + ":" + to + ":" + category,
+                () -> timed(SUMMARY_TIMER, () -> renderSummaryByType(user, type, category, from, to)));
+    }
+
+    /**
+     * Формирует сводку по типу транзакций за период без использования кэша.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакции (доходы или расходы).
+     * @param category Название категории или null для всех категорий.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Сводка по сумме доходов или расходов за период.
+     */
+    private String renderSummaryByType(User user, TransactionType type, String category, long from, long to) {
+        String label = type == TransactionType.INCOME ? "доходов" : "расходов";
+        CategoryStats stats = CategoryStats.total(user.getWallet().getTransactionsBetween(from, to), type, category);
 
         return String.format(
-                "Общая сумма %s: %s", label, totalExpenses
+                "Общая сумма %s%s за период: %s (операций: %d)", label,
+                category == null ? "" : " по категории " + category,
+                Money.ofMinor(stats.getTotalMinor(type)), stats.getCount(type)
         );
     }
 
@@ -245,37 +527,51 @@ public class FinanceService {
 
     /**
      * Универсальный метод для получения бюджета по типу транзакций.
+     * Результат кэшируется до изменения кошелька.
      *
      * @param user Пользователь, для которого получаем данные.
      * @param type Тип транзакции (доходы или расходы).
      * @return Строка с бюджетным обзором для заданного типа транзакций.
      */
     public String getBudgetByType(User user, TransactionType type) {
+        return reportCache.get(user, "budget:" + type, () -> timed(BUDGET_TIMER, () -> renderBudgetByType(user, type)));
+    }
+
+    /**
+     * Формирует обзор бюджета по типу транзакций без использования кэша.
+     *
+     * @param user Пользователь, для которого получаем данные.
+     * @param type Тип транзакции (доходы или расходы).
+     * @return Строка с бюджетным обзором для заданного типа транзакций.
+     */
+    private String renderBudgetByType(User user, TransactionType type) {
         Wallet wallet = user.getWallet();
         StringBuilder overview = new StringBuilder();
 
         String label = type == TransactionType.INCOME ? "доходов, Доходы" : "расходов, Бюджет";
         String[] labels = label.split(", ");
 
-        // Собираем категории, связанные с указанным типом транзакции
-        Set<String> transactionCategories = wallet.getTransactions().stream()
-                .filter(t -> t.getType() == type)
-                .map(Transaction::getCategory)
-                .collect(Collectors.toSet()); // Используем Set для категорий из транзакций
+        // Агрегаты и бюджеты читаются вместе, чтобы отчет соответствовал одному состоянию кошелька
+        CategoryAggregate aggregate;
+        Map<String, Money> budgets;
+        synchronized (wallet) {
+            aggregate = wallet.getCategoryAggregate();
+            budgets = wallet.getBudgets();
+        }
+
+        // Категории, в которых есть транзакции указанного типа
+        Set<String> allCategories = new HashSet<>(aggregate.getCategories(type));
 
-        // Собираем категории из бюджета, у которых нет транзакций, но есть лимит, и отображаем их только для expense
-        Set<String> categoriesWithoutTransactions = new HashSet<>();
+        // Для расходов добавляем категории из бюджета, у которых нет транзакций, но есть лимит
         if (type == TransactionType.EXPENSE) {
-            categoriesWithoutTransactions = wallet.getBudgets().keySet().stream()
-                    .filter(category -> wallet.getTransactions().stream()
-                            .noneMatch(t -> t.getCategory().equals(category)))
-                    .collect(Collectors.toSet()); // Фильтруем категории, у которых нет транзакций
+            for (String category : budgets.keySet()) {
+                CategoryStats stats = aggregate.get(category);
+                if (stats == null || stats.getTransactionCount() == 0) {
+                    allCategories.add(category);
+                }
+            }
         }
 
-        // Объединяем категории с транзакциями и без транзакций для типа "расходы" (не для доходов)
-        Set<String> allCategories = new HashSet<>(transactionCategories);
-        allCategories.addAll(categoriesWithoutTransactions);  // Добавляем категории без транзакций только для расхода
-
         // Сортируем объединённые категории по алфавиту
         List<String> categories = new ArrayList<>(allCategories);
         Collections.sort(categories);
@@ -289,12 +585,10 @@ public class FinanceService {
             overview.append("--------------------------");
 
             for (String category : categories) {
+                CategoryStats stats = aggregate.get(category);
                 if (type == TransactionType.INCOME) {
                     // Сумма доходов по категории
-                    BigDecimal income = wallet.getTransactions().stream()
-                            .filter(t -> t.getType() == TransactionType.INCOME && t.getCategory().equals(category))
-                            .map(Transaction::getAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+                    Money income = stats.getIncomeTotal();
 
                     overview.append(
                             String.format(
@@ -303,9 +597,9 @@ public class FinanceService {
                             )
                     );
                 } else {
-                    BigDecimal budget = wallet.getBudget(category);
-                    BigDecimal spent = wallet.getBudgetSpent(category);
-                    BigDecimal remain = wallet.getBudgetRemain(category);
+                    Money budget = budgets.getOrDefault(category, Money.ZERO);
+                    Money spent = stats != null ? stats.getSpentTotal() : Money.ZERO;
+                    Money remain = budget.minus(spent);
 
                     overview.append(
                             String.format(
@@ -317,8 +611,9 @@ public class FinanceService {
             }
         }
 
-        String str = overview.toString();
-        return str.substring(0, str.length() - 1);
+        // Отбрасываем последний символ без копирования текста
+        overview.setLength(overview.length() - 1);
+        return overview.toString();
     }
 
     /**
@@ -328,31 +623,32 @@ public class FinanceService {
      * @return Строка со списком всех транзакций.
      */
     public String getAllTransactions(User user) {
-        Wallet wallet = user.getWallet();
-        StringBuilder transactionsList = new StringBuilder();
-
-        List<Transaction> transactions = wallet.getTransactions();
-
-        if (transactions.isEmpty()) {
-            return "Операций не найдено.";
-        }
+        return getAllTransactions(user, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
 
-        transactionsList.append("Список всех операций:\n");
-        transactionsList.append("---------------------\n");
-        for (Transaction t : transactions) {
-            transactionsList.append(
-                    String.format(
-                            "%s - %s: %s (Категория: %s)\n",
-                            t.getDate(),
-                            t.getType() == TransactionType.INCOME ? "Доход" : "Расход",
-                            t.getAmount(),
-                            t.getCategory()
-                    )
-            );
-        }
+    /**
+     * Возвращает список транзакций пользователя за период.
+     * Результат кэшируется до изменения кошелька.
+     *
+     * @param user Пользователь.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Строка со списком транзакций за период.
+     */
+    public String getAllTransactions(User user, long from, long to) {
+        return reportCache.get(user, "transactions:" + from + ":" + to, () -> timed(TRANSACTIONS_TIMER, () -> renderAllTransactions(user, from, to)));
+    }
 
-        String str = transactionsList.toString();
-        return str.substring(0, str.length() - 1);
+    /**
+     * Формирует список транзакций за период без использования кэша.
+     *
+     * @param user Пользователь.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Строка со списком транзакций за период.
+     */
+    private String renderAllTransactions(User user, long from, long to) {
+        return render(out -> streamTransactions(user, null, from, to, 1, 0, out));
     }
 
     /**
@@ -383,46 +679,57 @@ public class FinanceService {
      * @return Строка со списком транзакций указанного типа.
      */
     public String getTransactionsByType(User user, TransactionType type) {
-        Wallet wallet = user.getWallet();
-        StringBuilder transactionsList = new StringBuilder();
-
-        String label = type == TransactionType.INCOME ? "доход" : "расход";
-
-        List<Transaction> filteredTransactions = wallet.getTransactions().stream()
-                .filter(t -> t.getType() == type)
-                .toList();
-
-        if (filteredTransactions.isEmpty()) {
-            return String.format("Операций %sа не найдено.", label);
-        }
+        return getTransactionsByType(user, type, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
 
-        transactionsList.append(String.format("Список всех %sов:\n", label));
-        transactionsList.append("---------------------\n");
-
-        for (Transaction t : filteredTransactions) {
-            transactionsList.append(
-                    String.format(
-                            "%s - %s: %s (Категория: %s)\n",
-                            t.getDate(),
-                            type == TransactionType.INCOME ? "Доход" : "Расход",
-                            t.getAmount(),
-                            t.getCategory()
-                    )
-            );
-        }
+    /**
+     * Возвращает список транзакций пользователя указанного типа за период.
+     * Результат кэшируется до изменения кошелька.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакции (INCOME или EXPENSE).
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Строка со списком транзакций указанного типа за период.
+     */
+    public String getTransactionsByType(User user, TransactionType type, long from, long to) {
+        return reportCache.get(user, "transactions:" + type + ":" + from + ":" + to, () -> timed(TRANSACTIONS_TIMER, () -> renderTransactionsByType(user, type, from, to)));
+    }
 
-        return transactionsList.toString().trim();
+    /**
+     * Формирует список транзакций указанного типа за период без использования кэша.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакции (INCOME или EXPENSE).
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @return Строка со списком транзакций указанного типа за период.
+     */
+    private String renderTransactionsByType(User user, TransactionType type, long from, long to) {
+        return render(out -> streamTransactions(user, type, from, to, 1, 0, out));
     }
 
 
     /**
      * Получает информацию о состоянии бюджета и оставшемся лимите для указанных категорий.
+     * Результат кэшируется до изменения кошелька.
      *
      * @param user Пользователь, для которого получаем данные.
      * @param categories Список категорий.
      * @return Строка с состоянием бюджета для указанных категорий.
      */
     public String getCategoryBudget(User user, List<String> categories) {
+        return reportCache.get(user, "category-budget:" + String.join("\n", categories), () -> timed(CATEGORY_BUDGET_TIMER, () -> renderCategoryBudget(user, categories)));
+    }
+
+    /**
+     * Формирует состояние бюджета по категориям без использования кэша.
+     *
+     * @param user Пользователь, для которого получаем данные.
+     * @param categories Список категорий.
+     * @return Строка с состоянием бюджета для указанных категорий.
+     */
+    private String renderCategoryBudget(User user, List<String> categories) {
         Wallet wallet = user.getWallet();
         StringBuilder overview = new StringBuilder();
 
@@ -430,26 +737,25 @@ public class FinanceService {
             return "Не указаны категории.";
         }
 
+        CategoryAggregate aggregate;
+        Map<String, Money> budgets;
+        synchronized (wallet) {
+            aggregate = wallet.getCategoryAggregate();
+            budgets = wallet.getBudgets();
+        }
+
         for (String category : categories) {
             // Проверяем, существует ли категория
-            boolean categoryExists = wallet.getBudgets().containsKey(category) || wallet.getTransactions().stream()
-                    .anyMatch(t -> t.getCategory().equals(category));
-
-            if (!categoryExists) {
+            CategoryStats stats = aggregate.get(category);
+            if (stats == null) {
                 overview.append(String.format("\nБюджет для категории \"%s\" отсутствует.\n", category));
                 continue;
             }
 
-            // Определяем тип категории на основе транзакций
-            boolean isIncome = wallet.getTransactions().stream()
-                    .anyMatch(t -> t.getCategory().equals(category) && t.getType() == TransactionType.INCOME);
-
-            if (isIncome) {
+            // Определяем тип категории по агрегату
+            if (stats.getType() == TransactionType.INCOME) {
                 // Сумма доходов по категории
-                BigDecimal income = wallet.getTransactions().stream()
-                        .filter(t -> t.getType() == TransactionType.INCOME && t.getCategory().equals(category))
-                        .map(Transaction::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                Money income = stats.getIncomeTotal();
 
                 overview.append(
                         String.format(
@@ -459,9 +765,9 @@ public class FinanceService {
                 );
             } else {
                 // Получаем информацию о бюджете для категории
-                BigDecimal budget = wallet.getBudget(category);
-                BigDecimal spent = wallet.getBudgetSpent(category);
-                BigDecimal remain = wallet.getBudgetRemain(category);
+                Money budget = budgets.getOrDefault(category, Money.ZERO);
+                Money spent = stats.getSpentTotal();
+                Money remain = budget.minus(spent);
 
                 overview.append(
                         String.format(
@@ -477,45 +783,384 @@ public class FinanceService {
 
     /**
      * Получает список транзакций для нескольких категорий с учетом типа транзакций.
+     * Результат кэшируется до изменения кошелька.
      *
      * @param user Пользователь, для которого запрашиваются транзакции.
      * @param categories Список категорий.
      * @return Строка с описанием транзакций для указанных категорий.
      */
     public String getCategoryTransactions(User user, List<String> categories) {
-        Wallet wallet = user.getWallet();
-        StringBuilder transactionsList = new StringBuilder();
+        return reportCache.get(user, "category-transactions:" + String.join("\n", categories), () -> timed(CATEGORY_TRANSACTIONS_TIMER, () -> renderCategoryTransactions(user, categories)));
+    }
+
+    /**
+     * Формирует список транзакций по категориям без использования кэша.
+     *
+     * @param user Пользователь, для которого запрашиваются транзакции.
+     * @param categories Список категорий.
+     * @return Строка с описанием транзакций для указанных категорий.
+     */
+    private String renderCategoryTransactions(User user, List<String> categories) {
+        return render(out -> streamCategoryTransactions(user, categories, out));
+    }
+
 
+    /**
+     * Выводит транзакции пользователя за период постранично, не формируя весь список в памяти.
+     * Строки записываются в поток по одной; каждая строка завершается переводом строки.
+     * При разбиении на страницы после списка выводится номер страницы и общее количество операций.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакций (INCOME или EXPENSE) или null для всех транзакций.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @param page Номер страницы, начиная с 1.
+     * @param limit Количество операций на странице (0 - все операции без разбиения на страницы).
+     * @param out Поток вывода.
+     * @return Количество выведенных операций.
+     * @throws IllegalArgumentException Если номер страницы или размер страницы некорректны.
+     */
+    public int writeTransactions(User user, TransactionType type, long from, long to, int page, int limit, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            return streamTransactions(user, type, from, to, page, limit, out);
+        } finally {
+            WRITE_TRANSACTIONS_TIMER.recordSince(started);
+        }
+    }
+
+    /**
+     * Выводит транзакции построчно (см. writeTransactions).
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакций или null для всех транзакций.
+     * @param from Начало периода включительно.
+     * @param to Конец периода не включительно.
+     * @param page Номер страницы, начиная с 1.
+     * @param limit Количество операций на странице (0 - все операции).
+     * @param out Поток вывода.
+     * @return Количество выведенных операций.
+     */
+    private int streamTransactions(User user, TransactionType type, long from, long to, int page, int limit, PrintWriter out) {
+        if (page < 1 || limit < 0) {
+            throw new IllegalArgumentException("Номер страницы и количество операций на странице должны быть положительными числами.");
+        }
+
+        List<Transaction> transactions = user.getWallet().getTransactionsBetween(from, to);
+        // Операции типа считаются суммированием по снимку без создания объектов транзакций
+        int total = type == null
+                ? transactions.size()
+                : (int) CategoryStats.total(transactions, type, null).getCount(type);
+        String label = type == TransactionType.INCOME ? "доход" : "расход";
+
+        if (total == 0) {
+            out.print(type == null ? "Операций не найдено.\n" : String.format("Операций %sа не найдено.\n", label));
+            return 0;
+        }
+
+        long offset = limit == 0 ? 0 : (long) (page - 1) * limit;
+        int pages = limit == 0 ? 1 : (total + limit - 1) / limit;
+        if (offset >= total) {
+            out.print(String.format("Страница %d пуста: всего операций %d, страниц %d.\n", page, total, pages));
+            return 0;
+        }
+
+        out.print(type == null ? "Список всех операций:\n" : String.format("Список всех %sов:\n", label));
+        out.print("---------------------\n");
+
+        int written = 0;
+        if (type == null) {
+            // Страница - часть снимка: предыдущие страницы не читаются
+            int end = limit == 0 ? total : (int) Math.min(offset + limit, total);
+            for (Transaction t : transactions.subList((int) offset, end)) {
+                writeRow(out, t, true);
+                written++;
+            }
+        } else {
+            // Начало страницы находится по типам без чтения пропускаемых транзакций
+            int start = Transaction.indexOfType(transactions, type, offset);
+            for (Transaction t : transactions.subList(start, transactions.size())) {
+                if (t.getType() != type) {
+                    continue;
+                }
+                writeRow(out, t, true);
+                if (++written == limit) {
+                    break;
+                }
+            }
+        }
+
+        if (limit > 0) {
+            out.print(String.format("Страница %d из %d (всего операций: %d)\n", page, pages, total));
+        }
+        return written;
+    }
+
+    /**
+     * Выводит транзакции по нескольким категориям, не формируя весь список в памяти.
+     *
+     * @param user Пользователь, для которого запрашиваются транзакции.
+     * @param categories Список категорий.
+     * @param out Поток вывода.
+     */
+    public void writeCategoryTransactions(User user, List<String> categories, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            streamCategoryTransactions(user, categories, out);
+        } finally {
+            WRITE_CATEGORY_TRANSACTIONS_TIMER.recordSince(started);
+        }
+    }
+
+    /**
+     * Выводит транзакции по нескольким категориям построчно (см. writeCategoryTransactions).
+     *
+     * @param user Пользователь.
+     * @param categories Список категорий.
+     * @param out Поток вывода.
+     */
+    private void streamCategoryTransactions(User user, List<String> categories, PrintWriter out) {
         if (categories.isEmpty()) {
-            return "Не указаны категории.";
+            out.print("Не указаны категории.\n");
+            return;
         }
 
+        List<Transaction> transactions = user.getWallet().getTransactions();
+        boolean first = true;
         for (String category : categories) {
-            // Фильтруем транзакции по категории
-            List<Transaction> filteredTransactions = wallet.getTransactions().stream()
-                    .filter(t -> t.getCategory().equals(category))
-                    .toList();
+            // Сравниваем коды категорий вместо строк; неизвестная категория получает код -1 и не совпадет ни с чем
+            int categoryId = CategoryDictionary.find(category);
+            // Категории отделяются друг от друга пустой строкой
+            if (!first) {
+                out.print("\n");
+            }
+            first = false;
+
+            boolean found = false;
+            for (Transaction t : transactions) {
+                if (t.getCategoryId() != categoryId) {
+                    continue;
+                }
+                if (!found) {
+                    out.print(String.format("Транзакции для категории: %s\n", category));
+                    out.print("-------------------------\n");
+                    found = true;
+                }
+                writeRow(out, t, false);
+            }
 
             // Проверяем, есть ли транзакции
-            if (filteredTransactions.isEmpty()) {
-                transactionsList.append(String.format("\nТранзакции для категории \"%s\" отсутствуют.\n", category));
-                continue;
+            if (!found) {
+                out.print(String.format("Транзакции для категории \"%s\" отсутствуют.\n", category));
+            }
+        }
+    }
+
+    /**
+     * Выводит крупнейшие транзакции пользователя за период в порядке убывания суммы.
+     * Транзакции отбираются за один проход по истории ограниченной кучей: O(n log k) времени и O(k) памяти.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакций (INCOME или EXPENSE) или null для всех транзакций.
+     * @param category Категория транзакций или null для всех категорий.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @param limit Количество транзакций.
+     * @param out Поток вывода.
+     * @return Количество выведенных транзакций.
+     * @throws IllegalArgumentException Если количество транзакций не положительно.
+     */
+    public int writeTopTransactions(User user, TransactionType type, String category, long from, long to, int limit, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            TopN<Transaction> top = new TopN<>(limit, BY_AMOUNT);
+            // Неизвестная категория получает код -1: транзакций в ней нет
+            int categoryId = category == null ? -1 : CategoryDictionary.find(category);
+            if (category == null || categoryId >= 0) {
+                for (Transaction t : user.getWallet().getTransactionsBetween(from, to)) {
+                    if ((type == null || t.getType() == type) && (category == null || t.getCategoryId() == categoryId)) {
+                        top.offer(t);
+                    }
+                }
+            }
+
+            List<Transaction> largest = top.toList();
+            String label = type == null ? "операции" : type == TransactionType.INCOME ? "доходы" : "расходы";
+            String scope = category == null ? "" : String.format(" в категории \"%s\"", category);
+            if (largest.isEmpty()) {
+                String operations = type == null ? "Операций" : type == TransactionType.INCOME ? "Операций дохода" : "Операций расхода";
+                out.print(String.format("%s%s не найдено.\n", operations, scope));
+                return 0;
+            }
+
+            out.print(String.format("Крупнейшие %s%s (до %d):\n", label, scope, limit));
+            out.print("---------------------\n");
+            for (Transaction t : largest) {
+                writeRow(out, t, true);
+            }
+            return largest.size();
+        } finally {
+            TOP_TRANSACTIONS_TIMER.recordSince(started);
+        }
+    }
+
+    /**
+     * Выводит категории с наибольшей суммой транзакций указанного типа за период.
+     * За всё время суммы берутся из индекса категорий кошелька без обхода истории,
+     * за период - группировкой транзакций периода за один проход.
+     *
+     * @param user Пользователь.
+     * @param type Тип транзакций (INCOME или EXPENSE).
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @param limit Количество категорий.
+     * @param out Поток вывода.
+     * @return Количество выведенных категорий.
+     * @throws IllegalArgumentException Если количество категорий не положительно.
+     */
+    public int writeTopCategories(User user, TransactionType type, long from, long to, int limit, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            CategoryAggregate aggregate = aggregate(user.getWallet(), from, to);
+            List<String> categories = topCategories(aggregate, type, "", limit);
+            String label = type == TransactionType.INCOME ? "доходов" : "расходов";
+            if (categories.isEmpty()) {
+                out.print(String.format("Нет %s.\n", label));
+                return 0;
+            }
+
+            out.print(String.format("Крупнейшие категории %s (до %d):\n", label, limit));
+            for (int i = 0; i < categories.size(); i++) {
+                CategoryStats stats = aggregate.get(categories.get(i));
+                out.print(String.format("%d. %s: %s (операций: %d)\n", i + 1, categories.get(i),
+                        Money.ofMinor(stats.getTotalMinor(type)), stats.getCount(type)));
             }
+            return categories.size();
+        } finally {
+            TOP_CATEGORIES_TIMER.recordSince(started);
+        }
+    }
 
-            transactionsList.append(String.format("\nТранзакции для категории: %s\n", category));
-            transactionsList.append("-------------------------\n");
+    /**
+     * Выводит получателей, которым пользователь перевел больше всего средств за период.
+     * Переводы учитываются по расходным категориям вида "Перевод средств к <логин>".
+     *
+     * @param user Пользователь.
+     * @param from Начало периода включительно (миллисекунды от начала эпохи).
+     * @param to Конец периода не включительно (миллисекунды от начала эпохи).
+     * @param limit Количество получателей.
+     * @param out Поток вывода.
+     * @return Количество выведенных получателей.
+     * @throws IllegalArgumentException Если количество получателей не положительно.
+     */
+    public int writeTopRecipients(User user, long from, long to, int limit, PrintWriter out) {
+        long started = System.nanoTime();
+        try {
+            CategoryAggregate aggregate = aggregate(user.getWallet(), from, to);
+            List<String> categories = topCategories(aggregate, TransactionType.EXPENSE, Transfer.DEBIT_PREFIX, limit);
+            if (categories.isEmpty()) {
+                out.print("Переводов не найдено.\n");
+                return 0;
+            }
 
-            for (Transaction t : filteredTransactions) {
-                transactionsList.append(String.format(
-                        "%s - %s: %s\n",
-                        t.getDate(),
-                        t.getType() == TransactionType.INCOME ? "Доход" : "Расход",
-                        t.getAmount()
-                ));
+            out.print(String.format("Крупнейшие получатели переводов (до %d):\n", limit));
+            for (int i = 0; i < categories.size(); i++) {
+                CategoryStats stats = aggregate.get(categories.get(i));
+                out.print(String.format("%d. %s: %s (переводов: %d)\n", i + 1, categories.get(i).substring(Transfer.DEBIT_PREFIX.length()),
+                        stats.getSpentTotal(), stats.getCount(TransactionType.EXPENSE)));
+            }
+            return categories.size();
+        } finally {
+            TOP_RECIPIENTS_TIMER.recordSince(started);
+        }
+    }
+
+    /**
+     * Возвращает агрегат по категориям кошелька за период.
+     *
+     * @param wallet Кошелек.
+     * @param from Начало периода включительно.
+     * @param to Конец периода не включительно.
+     * @return Агрегат по категориям.
+     */
+    private static CategoryAggregate aggregate(Wallet wallet, long from, long to) {
+        return from == Long.MIN_VALUE && to == Long.MAX_VALUE
+                ? wallet.getCategoryAggregate()
+                : CategoryAggregate.of(wallet.getTransactionsBetween(from, to));
+    }
+
+    /**
+     * Отбирает категории с наибольшей суммой транзакций указанного типа ограниченной кучей.
+     * Категории с одинаковой суммой упорядочиваются по названию, поэтому порядок однозначен.
+     *
+     * @param aggregate Агрегат по категориям.
+     * @param type Тип транзакций.
+     * @param prefix Начало названия отбираемых категорий (пустая строка - все категории).
+     * @param limit Количество категорий.
+     * @return Категории в порядке убывания суммы.
+     */
+    static List<String> topCategories(CategoryAggregate aggregate, TransactionType type, String prefix, int limit) {
+        TopN<String> top = new TopN<>(limit, Comparator.comparingLong((String category) -> aggregate.get(category).getTotalMinor(type))
+                .thenComparing(Comparator.reverseOrder()));
+        for (String category : aggregate.getCategories()) {
+            if (aggregate.get(category).getCount(type) > 0 && category.startsWith(prefix)) {
+                top.offer(category);
             }
         }
+        return top.toList();
+    }
 
-        return transactionsList.toString().trim();
+    /**
+     * Выводит одну строку списка транзакций.
+     *
+     * @param out Поток вывода.
+     * @param t Транзакция.
+     * @param withCategory true, если нужно указать категорию транзакции.
+     */
+    private static void writeRow(PrintWriter out, Transaction t, boolean withCategory) {
+        out.print(t.getDate());
+        out.print(t.getType() == TransactionType.INCOME ? " - Доход: " : " - Расход: ");
+        out.print(t.getAmount());
+        if (withCategory) {
+            out.print(" (Категория: ");
+            out.print(t.getCategory());
+            out.print(')');
+        }
+        out.print('\n');
     }
 
-}
\ No newline at end of file
+    /**
+     * Формирует отчет, замеряя длительность формирования.
+     *
+     * @param timer Гистограмма длительностей отчета.
+     * @param renderer Функция, формирующая отчет.
+     * @return Текст отчета.
+     */
+    private static String timed(LatencyHistogram timer, Supplier<String> renderer) {
+        long started = System.nanoTime();
+        try {
+            return renderer.get();
+        } finally {
+            timer.recordSince(started);
+        }
+    }
+
+    /**
+     * Формирует текст отчета с помощью потокового метода вывода.
+     * Завершающий перевод строки отбрасывается, как и в остальных текстовых отчетах.
+     *
+     * @param writer Метод, выводящий отчет в поток.
+     * @return Текст отчета.
+     */
+    private static String render(Consumer<PrintWriter> writer) {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        writer.accept(out);
+        out.flush();
+        StringBuffer buffer = text.getBuffer();
+        if (buffer.length() > 0 && buffer.charAt(buffer.length() - 1) == '\n') {
+            buffer.setLength(buffer.length() - 1);
+        }
+        return buffer.toString();
+    }
+}
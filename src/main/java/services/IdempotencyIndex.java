@@ -0,0 +1,67 @@
+package services;
+
+import models.Transfer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Индекс недавних переводов по ключам идемпотентности.
+ * Ключ действует в пределах отправителя: разные пользователи могут использовать одинаковые ключи.
+ * Индекс хранит не более заданного количества переводов и при переполнении вытесняет самый старый,
+ * поэтому поиск и добавление занимают O(1) времени, а память не растет с числом переводов.
+ * Повтор запроса распознается, пока его перевод не вытеснен из индекса.
+ */
+final class IdempotencyIndex {
+    private final Map<String, Transfer> transfers;
+
+    /**
+     * Конструктор для создания индекса.
+     *
+     * @param capacity Максимальное количество запоминаемых переводов.
+     * @throws IllegalArgumentException Если вместимость не положительна.
+     */
+    IdempotencyIndex(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Вместимость индекса ключей должна быть положительным числом.");
+        }
+        // Порядок вставки: при переполнении вытесняется перевод, записанный раньше остальных
+        this.transfers = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Transfer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Находит перевод отправителя по ключу.
+     *
+     * @param sender Логин отправителя.
+     * @param key Ключ идемпотентности.
+     * @return Перевод или null, если ключ не использовался (или перевод уже вытеснен).
+     */
+    synchronized Transfer find(String sender, String key) {
+        return transfers.get(indexKey(sender, key));
+    }
+
+    /**
+     * Запоминает проведённый перевод по его ключу.
+     *
+     * @param transfer Перевод с ключом идемпотентности.
+     */
+    synchronized void put(Transfer transfer) {
+        transfers.put(indexKey(transfer.getSender(), transfer.getKey()), transfer);
+    }
+
+    /**
+     * Составляет ключ индекса из логина отправителя и ключа идемпотентности.
+     *
+     * @param sender Логин отправителя.
+     * @param key Ключ идемпотентности.
+     * @return Ключ индекса.
+     */
+    private static String indexKey(String sender, String key) {
+        return sender + '\u0000' + key;
+    }
+}
@@ -0,0 +1,83 @@
+package services;
+
+/**
+ * Итоги импорта выписки: количество строк, принятых и отклонённых операций, пакетов и длительность.
+ */
+public class ImportResult {
+    private final long rows;
+    private final long imported;
+    private final long rejected;
+    private final long batches;
+    private final long elapsedNanos;
+
+    /**
+     * Конструктор для создания итогов импорта.
+     *
+     * @param rows Количество прочитанных строк с операциями (без заголовка и пустых строк).
+     * @param imported Количество импортированных операций.
+     * @param rejected Количество отклонённых строк.
+     * @param batches Количество пакетов (фиксаций журнала).
+     * @param elapsedNanos Длительность импорта в наносекундах.
+     */
+    ImportResult(long rows, long imported, long rejected, long batches, long elapsedNanos) {
+        this.rows = rows;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Геттер для получения количества прочитанных строк с операциями.
+     *
+     * @return Количество строк.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Геттер для получения количества импортированных операций.
+     *
+     * @return Количество операций.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Геттер для получения количества отклонённых строк.
+     *
+     * @return Количество строк.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Геттер для получения количества пакетов.
+     *
+     * @return Количество пакетов.
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Геттер для получения длительности импорта.
+     *
+     * @return Длительность в наносекундах.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Возвращает скорость импорта.
+     *
+     * @return Количество прочитанных строк в секунду.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos > 0 ? rows * 1e9 / elapsedNanos : rows;
+    }
+}
@@ -0,0 +1,250 @@
+package services;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import models.*;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Сервис импорта операций из выписки банка в формате CSV.
+ * Файл читается потоково и применяется к кошельку пакетами: каждый пакет проверяется и добавляется
+ * в кошелек под одной блокировкой и фиксируется в журнале одной фиксацией.
+ * Ошибки в отдельных строках (неверный формат, категория другого типа, недостаточно средств)
+ * выводятся с номером строки и не прерывают импорт.
+ *
+ * Формат строки: дата, тип, сумма, категория; остальные поля (например, описание) не учитываются.
+ * - Дата: 2024-01-31, 2024-01-31T18:30:00 или 2024/01/31 18:30:00.
+ * - Тип: income или expense (или доход и расход).
+ * - Сумма: положительное число, например 150.00 (в файлах с разделителем ';' допускается 150,00).
+ * Первая строка пропускается, если её первое поле - date или дата.
+ */
+public class ImportService {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private static final LatencyHistogram BATCH_TIMER = Metrics.timer("import.batch");
+    private static final LongAdder IMPORTED = Metrics.counter("import.rows.imported");
+    private static final LongAdder REJECTED = Metrics.counter("import.rows.rejected");
+
+    private final AuthService authService;
+    private final int batchSize;
+
+    /**
+     * Конструктор для создания сервиса с размером пакета из системного свойства finance.import.batch.
+     *
+     * @param authService Сервис пользователей, через который фиксируются изменения.
+     */
+    public ImportService(AuthService authService) {
+        this(authService, Integer.getInteger("finance.import.batch", DEFAULT_BATCH_SIZE));
+    }
+
+    /**
+     * Конструктор для создания сервиса с указанным размером пакета.
+     *
+     * @param authService Сервис пользователей, через который фиксируются изменения.
+     * @param batchSize Количество строк в одном пакете.
+     * @throws IllegalArgumentException Если размер пакета не положителен.
+     */
+    public ImportService(AuthService authService, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Размер пакета должен быть положительным числом.");
+        }
+        this.authService = authService;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Импортирует операции из CSV в кошелек пользователя.
+     * Строки применяются в порядке следования в файле, поэтому выписку следует указывать
+     * от ранних операций к поздним: расход проверяется по балансу с учётом предыдущих строк.
+     *
+     * @param user Пользователь, в чей кошелек импортируются операции.
+     * @param reader Источник CSV (закрывается после импорта).
+     * @param errors Поток вывода сообщений об отклонённых строках.
+     * @return Итоги импорта.
+     * @throws IOException Исключение, если произошла ошибка при чтении.
+     */
+    public ImportResult importCsv(User user, Reader reader, PrintWriter errors) throws IOException {
+        long started = System.nanoTime();
+        List<String> fields = new ArrayList<>();
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        int[] lines = new int[batchSize];
+        // Ошибки разбора и ошибки кошелька выводятся вместе в порядке строк файла после применения пакета
+        Map<Integer, String> rejections = new TreeMap<>();
+        RowParser parser = new RowParser();
+        long rows = 0;
+        long imported = 0;
+        long batches = 0;
+
+        try (CsvReader csv = new CsvReader(reader)) {
+            boolean first = true;
+            while (csv.next(fields)) {
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                    if (isHeader(fields)) {
+                        continue;
+                    }
+                }
+
+                rows++;
+                try {
+                    batch.add(parser.parse(fields));
+                    lines[batch.size() - 1] = csv.getLine();
+                } catch (IllegalArgumentException e) {
+                    rejections.put(csv.getLine(), e.getMessage());
+                }
+                // Пакет применяется и при накоплении ошибок, чтобы файл из одних ошибок не занимал память
+                if (batch.size() == batchSize || rejections.size() == batchSize) {
+                    batches += batch.isEmpty() ? 0 : 1;
+                    imported += applyBatch(user, batch, lines, rejections, errors);
+                }
+            }
+        }
+        if (!batch.isEmpty() || !rejections.isEmpty()) {
+            batches += batch.isEmpty() ? 0 : 1;
+            imported += applyBatch(user, batch, lines, rejections, errors);
+        }
+        return new ImportResult(rows, imported, rows - imported, batches, System.nanoTime() - started);
+    }
+
+    /**
+     * Добавляет пакет операций в кошелек, фиксирует изменения и выводит отклонённые строки пакета.
+     *
+     * @param user Пользователь.
+     * @param batch Операции пакета (список очищается).
+     * @param lines Номера строк файла для операций пакета.
+     * @param rejections Отклонённые при разборе строки пакета: номер строки и причина (очищается).
+     * @param errors Поток вывода сообщений об отклонённых строках.
+     * @return Количество принятых операций.
+     */
+    private int applyBatch(User user, List<Transaction> batch, int[] lines, Map<Integer, String> rejections, PrintWriter errors) {
+        long started = System.nanoTime();
+        int accepted = 0;
+        if (!batch.isEmpty()) {
+            accepted = user.getWallet().importTransactions(batch, (message, index) -> rejections.put(lines[index], message));
+            authService.commit();
+            BATCH_TIMER.recordSince(started);
+        }
+        IMPORTED.add(accepted);
+        REJECTED.add(rejections.size());
+        for (Map.Entry<Integer, String> rejection : rejections.entrySet()) {
+            errors.print(String.format("Строка %d: %s\n", rejection.getKey(), rejection.getValue()));
+        }
+        rejections.clear();
+        batch.clear();
+        return accepted;
+    }
+
+    /**
+     * Проверяет, является ли запись строкой заголовка.
+     *
+     * @param fields Поля записи.
+     * @return true, если первое поле - date или дата.
+     */
+    private static boolean isHeader(List<String> fields) {
+        String first = fields.get(0).trim();
+        return first.equalsIgnoreCase("date") || first.equalsIgnoreCase("дата");
+    }
+
+    /**
+     * Разбор строк выписки в транзакции.
+     * Время последней разобранной даты запоминается, так как в выписке обычно много операций за один день.
+     */
+    private static class RowParser {
+        private final ZoneId zone = ZoneId.systemDefault();
+        private String lastDate;
+        private long lastTimestamp;
+
+        /**
+         * Создает транзакцию по полям строки.
+         *
+         * @param fields Поля строки.
+         * @return Транзакция.
+         * @throws IllegalArgumentException Если строка не соответствует формату.
+         */
+        Transaction parse(List<String> fields) {
+            if (fields.size() < 4) {
+                throw new IllegalArgumentException("Ожидается не менее 4 полей: дата, тип, сумма, категория.");
+            }
+            long timestamp = parseDate(fields.get(0).trim());
+            TransactionType type = parseType(fields.get(1).trim());
+            Money amount = parseAmount(fields.get(2).trim());
+            String category = fields.get(3).trim();
+            if (category.isEmpty()) {
+                throw new IllegalArgumentException("Не указана категория.");
+            }
+            return new Transaction(amount, timestamp, type, category);
+        }
+
+        /**
+         * Преобразует дату операции в метку эпохи.
+         *
+         * @param text Дата.
+         * @return Время в миллисекундах от начала эпохи.
+         * @throws IllegalArgumentException Если дата указана в неверном формате.
+         */
+        private long parseDate(String text) {
+            if (text.equals(lastDate)) {
+                return lastTimestamp;
+            }
+            try {
+                if (text.contains("/")) {
+                    lastTimestamp = Transaction.parseDate(text);
+                } else if (text.contains("T")) {
+                    lastTimestamp = LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli();
+                } else {
+                    lastTimestamp = LocalDate.parse(text).atStartOfDay(zone).toInstant().toEpochMilli();
+                }
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Неверный формат даты \"" + text + "\". Используйте, например: 2024-01-31 или 2024-01-31T18:30:00");
+            }
+            lastDate = text;
+            return lastTimestamp;
+        }
+
+        /**
+         * Определяет тип операции.
+         *
+         * @param text Тип операции.
+         * @return Тип транзакции.
+         * @throws IllegalArgumentException Если тип не распознан.
+         */
+        private static TransactionType parseType(String text) {
+            return switch (text.toLowerCase(Locale.ROOT)) {
+                case "income", "доход" -> TransactionType.INCOME;
+                case "expense", "расход" -> TransactionType.EXPENSE;
+                default -> throw new IllegalArgumentException("Неизвестный тип операции \"" + text + "\". Используйте income или expense.");
+            };
+        }
+
+        /**
+         * Разбирает сумму операции; десятичная запятая заменяется точкой.
+         *
+         * @param text Сумма.
+         * @return Сумма операции.
+         * @throws IllegalArgumentException Если сумма указана в неверном формате.
+         */
+        private static Money parseAmount(String text) {
+            try {
+                return Money.parse(text.indexOf('.') < 0 ? text.replace(',', '.') : text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Неверный формат суммы \"" + text + "\". Укажите число, например: 150.00");
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package services;
+
+import models.User;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кэш сформированных разделов отчетов с ограниченным размером и вытеснением
+ * давно не использованных разделов (LRU).
+ * Раздел хранится вместе с версией кошелька, по которой он построен, и возвращается из кэша,
+ * пока версия кошелька не изменилась. Повторный просмотр неизменного кошелька не требует пересчёта.
+ *
+ * Размер кэша ограничен и количеством разделов, и суммарной длиной их текста: списки транзакций
+ * большого кошелька занимают мегабайты, и ограничение только по количеству удерживало бы их в памяти.
+ * Раздел длиннее всего ограничения не кэшируется и формируется при каждом обращении.
+ */
+public class ReportCache {
+    private final int capacity;
+    private final long maxChars;
+    private final Map<String, Entry> entries;
+    // Суммарная длина текста разделов в кэше; изменяется под монитором entries
+    private long chars;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * Сформированный раздел отчета и версия кошелька, по которой он построен.
+     *
+     * @param version Версия кошелька.
+     * @param text Текст раздела.
+     */
+    private record Entry(long version, String text) {
+    }
+
+    /**
+     * Конструктор для создания кэша.
+     *
+     * @param capacity Максимальное количество хранимых разделов (0 - кэширование отключено).
+     * @param maxChars Максимальная суммарная длина текста хранимых разделов в символах.
+     */
+    public ReportCache(int capacity, long maxChars) {
+        this.capacity = Math.max(0, capacity);
+        this.maxChars = Math.max(0, maxChars);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Возвращает раздел отчета из кэша или формирует его заново, если кошелек изменился.
+     * Версия читается до формирования раздела, поэтому раздел, построенный во время изменения
+     * кошелька, никогда не будет выдан для новой версии.
+     *
+     * @param user Пользователь, для которого формируется отчет.
+     * @param section Ключ раздела (название и параметры отчета).
+     * @param renderer Функция, формирующая раздел.
+     * @return Текст раздела.
+     */
+    public String get(User user, String section, Supplier<String> renderer) {
+        long version = user.getWallet().getVersion();
+        String key = user.getUsername() + '\n' + section;
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version() == version) {
+                hits.incrementAndGet();
+                return entry.text();
+            }
+        }
+
+        misses.incrementAndGet();
+        String text = renderer.get();
+        if (capacity > 0 && text.length() <= maxChars) {
+            synchronized (entries) {
+                Entry previous = entries.put(key, new Entry(version, text));
+                if (previous != null) {
+                    chars -= previous.text().length();
+                }
+                chars += text.length();
+                evict();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Вытесняет давно не использованные разделы, пока кэш превышает ограничения.
+     * Вызывается под монитором entries.
+     */
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > capacity || chars > maxChars) && eldest.hasNext()) {
+            chars -= eldest.next().text().length();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Геттер для получения количества обращений, обслуженных из кэша.
+     *
+     * @return Количество попаданий.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Геттер для получения количества обращений, потребовавших формирования раздела.
+     *
+     * @return Количество промахов.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Возвращает текущее количество разделов в кэше.
+     *
+     * @return Количество разделов.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Возвращает суммарную длину текста разделов в кэше.
+     *
+     * @return Количество символов.
+     */
+    public long chars() {
+        synchronized (entries) {
+            return chars;
+        }
+    }
+}
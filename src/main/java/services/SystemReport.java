@@ -0,0 +1,137 @@
+package services;
+
+import models.*;
+
+import java.util.*;
+
+/**
+ * Общий отчет по всем пользователям: суммарный баланс, агрегаты по категориям
+ * и количество превышенных бюджетов.
+ * Отчет строится по частям (по группам пользователей и по участкам истории транзакций),
+ * а части объединяются методом merge. Все итоги - целочисленные суммы и счетчики,
+ * поэтому результат не зависит от того, как набор был разбит и в каком порядке объединялись части.
+ */
+public class SystemReport {
+    private final CategoryAggregate categories;
+    private long userCount;
+    private long totalBalance;
+    private long budgetCount;
+    private long budgetOverruns;
+    private long usersOverBudget;
+
+    /**
+     * Конструктор для создания пустого отчета.
+     */
+    SystemReport() {
+        this.categories = new CategoryAggregate();
+    }
+
+    /**
+     * Учитывает в отчете одного пользователя.
+     *
+     * @param balance Баланс пользователя в копейках.
+     * @param aggregate Агрегат транзакций пользователя по категориям.
+     * @param budgets Бюджеты пользователя.
+     */
+    void addUser(long balance, CategoryAggregate aggregate, Map<String, Money> budgets) {
+        long overruns = 0;
+        for (Map.Entry<String, Money> budget : budgets.entrySet()) {
+            CategoryStats stats = aggregate.get(budget.getKey());
+            long spent = stats != null ? stats.getTotalMinor(TransactionType.EXPENSE) : 0;
+            if (spent > budget.getValue().getMinorUnits()) {
+                overruns++;
+            }
+        }
+
+        userCount++;
+        totalBalance = Money.addMinor(totalBalance, balance);
+        categories.merge(aggregate);
+        budgetCount += budgets.size();
+        budgetOverruns += overruns;
+        if (overruns > 0) {
+            usersOverBudget++;
+        }
+    }
+
+    /**
+     * Объединяет с отчетом по другой группе пользователей.
+     *
+     * @param other Отчет по другой группе пользователей.
+     */
+    void merge(SystemReport other) {
+        userCount += other.userCount;
+        totalBalance = Money.addMinor(totalBalance, other.totalBalance);
+        categories.merge(other.categories);
+        budgetCount += other.budgetCount;
+        budgetOverruns += other.budgetOverruns;
+        usersOverBudget += other.usersOverBudget;
+    }
+
+    /**
+     * Геттер для получения количества пользователей в отчете.
+     *
+     * @return Количество пользователей.
+     */
+    public long getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Геттер для получения суммы балансов всех пользователей.
+     *
+     * @return Суммарный баланс (Money).
+     */
+    public Money getTotalBalance() {
+        return Money.ofMinor(totalBalance);
+    }
+
+    /**
+     * Геттер для получения агрегатов по категориям всех пользователей.
+     * Одноименные категории разных пользователей объединяются.
+     *
+     * @return Агрегат по категориям (CategoryAggregate).
+     */
+    public CategoryAggregate getCategories() {
+        return categories;
+    }
+
+    /**
+     * Геттер для получения количества установленных бюджетов.
+     *
+     * @return Количество бюджетов всех пользователей.
+     */
+    public long getBudgetCount() {
+        return budgetCount;
+    }
+
+    /**
+     * Геттер для получения количества бюджетов, расходы по которым превысили лимит.
+     *
+     * @return Количество превышенных бюджетов.
+     */
+    public long getBudgetOverruns() {
+        return budgetOverruns;
+    }
+
+    /**
+     * Геттер для получения количества пользователей, у которых превышен хотя бы один бюджет.
+     *
+     * @return Количество пользователей.
+     */
+    public long getUsersOverBudget() {
+        return usersOverBudget;
+    }
+
+    /**
+     * Возвращает категории с наибольшей суммой транзакций указанного типа.
+     * Категории с одинаковой суммой упорядочиваются по названию, поэтому порядок однозначен.
+     * Категории отбираются ограниченной кучей без сортировки всех категорий.
+     *
+     * @param type Тип транзакций.
+     * @param limit Максимальное количество категорий.
+     * @return Список категорий в порядке убывания суммы.
+     */
+    public List<String> getTopCategories(TransactionType type, int limit) {
+        return limit > 0 ? FinanceService.topCategories(categories, type, "", limit) : List.of();
+    }
+}
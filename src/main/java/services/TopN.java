@@ -0,0 +1,61 @@
+package services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Отбор наибольших элементов за один проход с ограниченной кучей.
+ * Куча хранит не более limit элементов, и её вершина - наименьший из отобранных: новый элемент
+ * заменяет вершину, только если он больше. Отбор из n элементов занимает O(n log k) времени и O(k) памяти.
+ *
+ * @param <T> Тип элементов.
+ */
+final class TopN<T> {
+    private final int limit;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Конструктор для создания отбора.
+     *
+     * @param limit Количество отбираемых элементов.
+     * @param order Порядок элементов: наибольшие по нему элементы попадают в результат.
+     * @throws IllegalArgumentException Если количество не положительно.
+     */
+    TopN(int limit, Comparator<? super T> order) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Количество отбираемых элементов должно быть положительным числом.");
+        }
+        this.limit = limit;
+        this.order = order;
+        // Куча растет по мере заполнения, поэтому большой limit не занимает память заранее
+        this.heap = new PriorityQueue<>(Math.min(limit, 64), order);
+    }
+
+    /**
+     * Предлагает элемент для отбора.
+     *
+     * @param element Элемент.
+     */
+    void offer(T element) {
+        if (heap.size() < limit) {
+            heap.add(element);
+        } else if (order.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * Возвращает отобранные элементы от наибольшего к наименьшему.
+     *
+     * @return Список отобранных элементов.
+     */
+    List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package services;
+
+import java.io.Serial;
+
+/**
+ * Исключение, сообщающее, почему перевод не выполнен.
+ * Причина позволяет вызывающему коду выбрать реакцию (например, код ответа HTTP),
+ * а сообщение предназначено для пользователя.
+ */
+public class TransferException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Перечисление причин отказа в переводе.
+     */
+    public enum Reason {
+        INSUFFICIENT_FUNDS, RECIPIENT_NOT_FOUND, REJECTED
+    }
+
+    private final Reason reason;
+
+    /**
+     * Конструктор для создания исключения.
+     *
+     * @param reason Причина отказа.
+     * @param message Описание причины для пользователя.
+     */
+    public TransferException(Reason reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * Геттер для получения причины отказа.
+     *
+     * @return Причина отказа (Reason).
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -1,27 +1,98 @@
 package storage;
 
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Класс для сохранения и загрузки данных в/из файла.
  * Использует потоки ввода/вывода для сериализации объектов.
  */
 public class FileStorage {
+    private static final LatencyHistogram SAVE_TIMER = Metrics.timer("storage.file.save");
+    private static final LatencyHistogram LOAD_TIMER = Metrics.timer("storage.file.load");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("storage.file.written.bytes");
+    private static final LongAdder BYTES_READ = Metrics.counter("storage.file.read.bytes");
 
     /**
      * Сохраняет данные в файл.
+     * Когда метод завершился, новое содержимое и замена файла записаны на диск, поэтому вызывающий
+     * может удалять записи журнала, учтённые в данных.
      *
      * @param data Данные, которые нужно сохранить.
      * @param filePath Путь к файлу для сохранения данных.
      * @throws IOException Исключение, если произошла ошибка при записи в файл.
      */
     public static void saveData(Object data, String filePath) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
+        // Пишем во временный файл и атомарно заменяем им старый, чтобы сбой не оставил файл недописанным
+        long started = System.nanoTime();
+        Path target = Paths.get(filePath);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile());
+             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(file))) {
             oos.writeObject(data);
+            oos.flush();
+            // Содержимое должно оказаться на диске раньше, чем переименование сделает его файлом данных
+            file.getChannel().force(true);
         } catch (IOException e) {
             System.out.println("Ошибка при сохранении данных в файл: " + e.getMessage());
             throw e;
         }
+        BYTES_WRITTEN.add(Files.size(tmp));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.toAbsolutePath().getParent());
+        SAVE_TIMER.recordSince(started);
+    }
+
+    /**
+     * Записывает на диск изменения каталога (создание, переименование и удаление файлов).
+     * Без этого после отключения питания переименование может быть потеряно, даже если содержимое
+     * файла уже записано. На платформах, где каталог нельзя открыть как файл (Windows), вызов ничего не делает.
+     *
+     * @param directory Каталог.
+     * @throws IOException Исключение, если не удалось записать изменения каталога на диск.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Сохраняет снимок данных вместе с порядковым номером журнала.
+     *
+     * @param data Данные, которые нужно сохранить.
+     * @param sequence Порядковый номер последней записи журнала, учтённой в данных.
+     * @param filePath Путь к файлу для сохранения данных.
+     * @throws IOException Исключение, если произошла ошибка при записи в файл.
+     */
+    public static void saveSnapshot(Serializable data, long sequence, String filePath) throws IOException {
+        saveData(new Snapshot(sequence, data), filePath);
+    }
+
+    /**
+     * Загружает снимок данных.
+     * Файлы, сохранённые без журнала, возвращаются как снимок с порядковым номером 0.
+     *
+     * @param filePath Путь к файлу, из которого загружаются данные.
+     * @return Загруженный снимок.
+     * @throws IOException Исключение, если произошла ошибка при чтении из файла.
+     * @throws ClassNotFoundException Исключение, если не удаётся найти класс для десериализации.
+     */
+    public static Snapshot loadSnapshot(String filePath) throws IOException, ClassNotFoundException {
+        // Десериализованный объект всегда реализует Serializable
+        Object data = loadData(filePath);
+        return data instanceof Snapshot snapshot ? snapshot : new Snapshot(0, (Serializable) data);
     }
 
     /**
@@ -33,8 +104,13 @@ public class FileStorage {
      * @throws ClassNotFoundException Исключение, если не удаётся найти класс для десериализации.
      */
     public static Object loadData(String filePath) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
-            return ois.readObject();
+        long started = System.nanoTime();
+        try (FileInputStream file = new FileInputStream(filePath);
+             ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(file))) {
+            Object data = ois.readObject();
+            BYTES_READ.add(file.getChannel().position());
+            LOAD_TIMER.recordSince(started);
+            return data;
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Ошибка при загрузке данных из файла: " + e.getMessage());
             throw e;
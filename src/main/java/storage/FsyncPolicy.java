@@ -0,0 +1,13 @@
+package storage;
+
+/**
+ * Перечисление политик сброса журнала на диск.
+ * Это перечисление определяет, когда записанные кадры журнала принудительно сохраняются на носитель:
+ * - ALWAYS: После каждой групповой фиксации (надёжно, но медленнее).
+ * - NEVER: Сброс выполняет операционная система (быстро, но последние записи могут потеряться при сбое питания).
+ * - BACKGROUND: Фиксацию и сброс выполняет фоновый поток сразу после команды; обработка команд не ждёт диска,
+ *   но при сбое могут потеряться изменения последних команд, ещё не записанные фоновым потоком.
+ */
+public enum FsyncPolicy {
+    ALWAYS, NEVER, BACKGROUND
+}
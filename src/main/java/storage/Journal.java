@@ -0,0 +1,544 @@
+package storage;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи (write-ahead log) для изменений кошельков.
+ * Записи накапливаются в памяти и фиксируются группой в виде одного кадра с контрольной суммой.
+ * При запуске журнал воспроизводится поверх последнего снимка данных.
+ *
+ * Формат файла: заголовок (сигнатура, базовый порядковый номер), затем кадры
+ * вида [длина][CRC32][количество записей][записи...]. Суммы записываются в копейках,
+ * время транзакций - меткой эпохи в миллисекундах.
+ *
+ * Журнал состоит из сегментов. Записи добавляются в активный сегмент (основной файл журнала);
+ * перед сохранением снимка активный сегмент закрывается и переименовывается в файл
+ * вида users.journal.<базовый номер>, а запись продолжается в новый активный сегмент.
+ * После сохранения снимка закрытые сегменты, полностью учтённые в нём, удаляются целиком,
+ * поэтому очистка журнала не требует его перечитывания и не задерживает добавление записей.
+ *
+ * Журнал использует два монитора. Монитор журнала защищает очередь записей и нумерацию и
+ * удерживается лишь на время добавления записи в очередь; монитор записи защищает файлы сегментов
+ * и удерживается на время ввода-вывода. Фиксация забирает очередь целиком и записывает её без
+ * монитора журнала, поэтому потоки, добавляющие записи, не ждут записи на диск.
+ * Порядок захвата: монитор записи, затем монитор журнала.
+ */
+public class Journal implements Closeable {
+    private static final int MAGIC = 0x464A5233; // "FJR3"
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final LatencyHistogram COMMIT_TIMER = Metrics.timer("storage.journal.commit");
+    private static final LongAdder BYTES_WRITTEN = Metrics.counter("storage.journal.written.bytes");
+    private static final LongAdder BYTES_READ = Metrics.counter("storage.journal.read.bytes");
+
+    private final Path path;
+    private final FsyncPolicy fsyncPolicy;
+    private final int groupSize;
+    private final Object writeLock;
+    // Под монитором журнала
+    private List<JournalRecord> pending;
+    private long nextSequence;
+    // Под монитором записи; закрытые сегменты хранятся по базовому порядковому номеру
+    private final TreeMap<Long, Path> sealed;
+    private FileChannel channel;
+    private long baseSequence;
+    private long writtenSequence;
+
+    /**
+     * Результат чтения файла сегмента.
+     *
+     * @param baseSequence Базовый порядковый номер сегмента.
+     * @param validEnd Смещение конца последнего целого кадра.
+     */
+    private record ScanResult(long baseSequence, long validEnd) {
+    }
+
+    /**
+     * Конструктор для открытия (или создания) файла журнала.
+     * Находит закрытые сегменты, проверяет целостность кадров активного сегмента
+     * и отбрасывает недописанный хвост, оставшийся после аварийного завершения.
+     *
+     * @param filePath Путь к файлу журнала.
+     * @param fsyncPolicy Политика сброса кадров на диск.
+     * @param groupSize Количество записей, при накоплении которого фиксация выполняется автоматически.
+     * @throws IOException Исключение, если не удалось открыть или прочитать журнал.
+     */
+    public Journal(String filePath, FsyncPolicy fsyncPolicy, int groupSize) throws IOException {
+        this.path = Paths.get(filePath);
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupSize = Math.max(1, groupSize);
+        this.writeLock = new Object();
+        this.pending = new ArrayList<>();
+        this.sealed = findSegments();
+        this.nextSequence = 1;
+        if (!sealed.isEmpty()) {
+            // Нумерация продолжается после последнего закрытого сегмента, даже если активный сегмент пуст
+            try (FileChannel last = FileChannel.open(sealed.lastEntry().getValue(), StandardOpenOption.READ)) {
+                scan(last, null);
+            }
+        }
+
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ScanResult result = scan(channel, null);
+            baseSequence = result.baseSequence();
+            channel.truncate(result.validEnd());
+            channel.position(result.validEnd());
+        } else {
+            this.baseSequence = nextSequence;
+            this.channel = createFile(path, nextSequence);
+        }
+        this.writtenSequence = nextSequence - 1;
+    }
+
+    /**
+     * Воспроизводит записи журнала с порядковым номером больше указанного.
+     *
+     * @param afterSequence Порядковый номер, уже учтённый в снимке данных.
+     * @param consumer Обработчик, применяющий запись к данным.
+     * @throws IOException Исключение, если произошла ошибка при чтении журнала.
+     */
+    public void replay(long afterSequence, Consumer<JournalRecord> consumer) throws IOException {
+        synchronized (writeLock) {
+            for (Map.Entry<Long, Path> segment : sealed.entrySet()) {
+                if (lastSequenceOf(segment.getKey()) <= afterSequence) {
+                    continue;
+                }
+                try (FileChannel file = FileChannel.open(segment.getValue(), StandardOpenOption.READ)) {
+                    scan(file, record -> {
+                        if (record.getSequence() > afterSequence) {
+                            consumer.accept(record);
+                        }
+                    });
+                }
+            }
+
+            long position = channel.position();
+            scan(channel, record -> {
+                if (record.getSequence() > afterSequence) {
+                    consumer.accept(record);
+                }
+            });
+            channel.position(position);
+        }
+    }
+
+    /**
+     * Добавляет запись в очередь на фиксацию и присваивает ей порядковый номер.
+     * Если в очереди накопилось groupSize записей, они фиксируются автоматически
+     * (кроме политики BACKGROUND, при которой фиксацию выполняет фоновый поток).
+     *
+     * @param record Запись журнала.
+     * @return Присвоенный записи порядковый номер.
+     * @throws IOException Исключение, если автоматическая фиксация не удалась.
+     */
+    public long append(JournalRecord record) throws IOException {
+        long sequence;
+        boolean full;
+        synchronized (this) {
+            sequence = nextSequence++;
+            record.setSequence(sequence);
+            pending.add(record);
+            full = pending.size() >= groupSize && fsyncPolicy != FsyncPolicy.BACKGROUND;
+        }
+        if (full) {
+            commit();
+        }
+        return sequence;
+    }
+
+    /**
+     * Добавляет пакет записей в очередь на фиксацию и присваивает им последовательные номера.
+     * Автоматическая фиксация (см. append) выполняется не чаще одного раза на пакет.
+     *
+     * @param records Записи журнала (не пустой список).
+     * @return Порядковый номер последней записи пакета.
+     * @throws IOException Исключение, если автоматическая фиксация не удалась.
+     */
+    public long appendAll(List<JournalRecord> records) throws IOException {
+        long sequence = 0;
+        boolean full;
+        synchronized (this) {
+            for (JournalRecord record : records) {
+                sequence = nextSequence++;
+                record.setSequence(sequence);
+                pending.add(record);
+            }
+            full = pending.size() >= groupSize && fsyncPolicy != FsyncPolicy.BACKGROUND;
+        }
+        if (full) {
+            commit();
+        }
+        return sequence;
+    }
+
+    /**
+     * Фиксирует накопленные записи одним кадром.
+     * В зависимости от политики кадр принудительно сбрасывается на диск.
+     * Записи, добавленные во время фиксации, попадают в следующий кадр.
+     *
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    public void commit() throws IOException {
+        synchronized (writeLock) {
+            List<JournalRecord> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            try {
+                writeFrame(batch);
+            } catch (IOException e) {
+                // Незаписанные записи возвращаются в начало очереди, чтобы не нарушить порядок
+                synchronized (this) {
+                    batch.addAll(pending);
+                    pending = batch;
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Записывает записи одним кадром в активный сегмент.
+     * Вызывается под монитором записи.
+     *
+     * @param records Записи с присвоенными номерами (не пустой список).
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    private void writeFrame(List<JournalRecord> records) throws IOException {
+        long started = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(records.size());
+        for (JournalRecord record : records) {
+            record.writeTo(out);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        frame.putInt(payload.length).putLong(crc.getValue()).put(payload).flip();
+        long position = channel.position();
+        try {
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            if (fsyncPolicy != FsyncPolicy.NEVER) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // Частично записанный кадр удаляется: иначе повторная запись оказалась бы после него,
+            // а при открытии журнал обрезается на первом повреждённом кадре вместе со всеми последующими
+            try {
+                channel.truncate(position);
+                channel.position(position);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        writtenSequence = records.get(records.size() - 1).getSequence();
+        BYTES_WRITTEN.add(FRAME_HEADER_SIZE + payload.length);
+        COMMIT_TIMER.recordSince(started);
+    }
+
+    /**
+     * Возвращает порядковый номер последней выданной записи.
+     * Запись с этим номером может ещё ожидать фиксации.
+     *
+     * @return Последний порядковый номер (0, если записей не было).
+     */
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Закрывает активный сегмент и начинает новый.
+     * Вызывается перед сохранением снимка: все записи с номером не больше возвращённого
+     * оказываются в закрытых сегментах, которые после сохранения удаляются методом truncate.
+     * Если в активном сегменте нет записей, он не закрывается.
+     *
+     * Записи, добавленные во время закрытия, попадают в новый сегмент.
+     *
+     * @return Порядковый номер последней записи в закрытых сегментах.
+     * @throws IOException Исключение, если не удалось зафиксировать записи или создать новый сегмент.
+     */
+    public long roll() throws IOException {
+        synchronized (writeLock) {
+            commit();
+            long last = writtenSequence;
+            if (last < baseSequence) {
+                return last;
+            }
+
+            channel.force(false);
+            channel.close();
+            Path segment = path.resolveSibling(String.format("%s.%019d", path.getFileName(), baseSequence));
+            try {
+                Files.move(path, segment, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                reopenActive(e);
+                throw e;
+            }
+
+            // Если работа прервётся до создания нового сегмента, при открытии он будет создан с тем же номером
+            try {
+                channel = createFile(path, last + 1);
+            } catch (IOException e) {
+                // Закрытый сегмент возвращается на место активного, чтобы журнал продолжал принимать записи
+                try {
+                    Files.move(segment, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                reopenActive(e);
+                throw e;
+            }
+            sealed.put(baseSequence, segment);
+            baseSequence = last + 1;
+            // Переименование и новый сегмент записываются на диск до того, как снимок позволит удалить сегменты
+            FileStorage.syncDirectory(path.toAbsolutePath().getParent());
+            return last;
+        }
+    }
+
+    /**
+     * Снова открывает активный сегмент после неудачного закрытия, чтобы добавление записей продолжилось.
+     * Вызывается под монитором записи.
+     *
+     * @param failure Исключение, к которому добавляется ошибка повторного открытия.
+     */
+    private void reopenActive(IOException failure) {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Удаляет из журнала записи, учтённые в сохранённом снимке данных.
+     * Закрытые сегменты, все записи которых учтены в снимке, удаляются целиком. Активный сегмент
+     * переписывается, только если в нём остались учтённые записи (сохранение без вызова roll).
+     * Записи, добавленные другими потоками во время сохранения, остаются в журнале.
+     * Нумерация записей продолжается, чтобы записи, уже учтённые в снимке, не применялись повторно.
+     *
+     * @param upToSequence Порядковый номер последней записи, учтённой в снимке.
+     * @throws IOException Исключение, если не удалось удалить сегменты или пересоздать файл журнала.
+     */
+    public void truncate(long upToSequence) throws IOException {
+        synchronized (writeLock) {
+            commit();
+
+            // Сегменты удаляются от старых к новым, поэтому прерванная очистка не оставляет пропусков в нумерации
+            Iterator<Map.Entry<Long, Path>> segments = sealed.entrySet().iterator();
+            while (segments.hasNext()) {
+                Map.Entry<Long, Path> segment = segments.next();
+                if (lastSequenceOf(segment.getKey()) > upToSequence) {
+                    break;
+                }
+                Files.deleteIfExists(segment.getValue());
+                segments.remove();
+            }
+
+            if (baseSequence > upToSequence || writtenSequence < baseSequence) {
+                return;
+            }
+            List<JournalRecord> remaining = new ArrayList<>();
+            if (upToSequence < writtenSequence) {
+                scan(channel, record -> {
+                    if (record.getSequence() > upToSequence) {
+                        remaining.add(record);
+                    }
+                });
+            }
+            rewrite(Math.min(upToSequence, writtenSequence) + 1, remaining);
+        }
+    }
+
+    /**
+     * Возвращает количество закрытых сегментов журнала.
+     *
+     * @return Количество закрытых сегментов.
+     */
+    public int getSealedSegmentCount() {
+        synchronized (writeLock) {
+            return sealed.size();
+        }
+    }
+
+    /**
+     * Атомарно заменяет файл журнала новым, содержащим только указанные записи.
+     * Вызывается под монитором записи.
+     *
+     * @param base Базовый порядковый номер нового файла.
+     * @param records Записи, которые нужно перенести (с уже присвоенными номерами).
+     * @throws IOException Исключение, если не удалось пересоздать файл журнала.
+     */
+    private void rewrite(long base, List<JournalRecord> records) throws IOException {
+        channel.close();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        channel = createFile(tmp, base);
+        if (!records.isEmpty()) {
+            writeFrame(records);
+        }
+        channel.force(false);
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileStorage.syncDirectory(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        baseSequence = base;
+    }
+
+    /**
+     * Фиксирует оставшиеся записи и закрывает файл журнала.
+     *
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            try {
+                commit();
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Создает пустой файл журнала с заголовком.
+     *
+     * @param file Путь к файлу.
+     * @param baseSequence Порядковый номер, с которого продолжается нумерация.
+     * @return Открытый канал, позиционированный в конец файла.
+     * @throws IOException Исключение, если не удалось создать файл.
+     */
+    private static FileChannel createFile(Path file, long baseSequence) throws IOException {
+        FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(baseSequence).flip();
+        while (header.hasRemaining()) {
+            created.write(header);
+        }
+        created.force(false);
+        return created;
+    }
+
+    /**
+     * Находит закрытые сегменты журнала рядом с активным сегментом.
+     *
+     * @return Закрытые сегменты по базовому порядковому номеру.
+     * @throws IOException Исключение, если не удалось прочитать каталог журнала.
+     */
+    private TreeMap<Long, Path> findSegments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        Path dir = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), file);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Возвращает номер последней записи закрытого сегмента: сегменты идут подряд,
+     * поэтому он на единицу меньше базового номера следующего сегмента.
+     *
+     * @param base Базовый порядковый номер закрытого сегмента.
+     * @return Порядковый номер последней записи сегмента.
+     */
+    private long lastSequenceOf(long base) {
+        Long next = sealed.higherKey(base);
+        return (next != null ? next : baseSequence) - 1;
+    }
+
+    /**
+     * Последовательно читает кадры сегмента журнала и проверяет их контрольные суммы.
+     * Чтение останавливается на первом повреждённом или недописанном кадре.
+     * Заодно вычисляет следующий порядковый номер.
+     *
+     * @param file Канал файла сегмента.
+     * @param consumer Обработчик записей (может быть null).
+     * @return Базовый номер и смещение конца последнего целого кадра.
+     * @throws IOException Исключение, если файл не является журналом или не читается.
+     */
+    private ScanResult scan(FileChannel file, Consumer<JournalRecord> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.position(0))));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Файл " + path + " не является журналом.");
+        }
+        long base = in.readLong();
+        long validEnd = HEADER_SIZE;
+        long lastSequence = base - 1;
+
+        while (true) {
+            int length;
+            long checksum;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readLong();
+                if (length < Integer.BYTES || validEnd + FRAME_HEADER_SIZE + length > file.size()) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != checksum) {
+                break;
+            }
+
+            DataInputStream frame = new DataInputStream(new ByteArrayInputStream(payload));
+            int count = frame.readInt();
+            for (int i = 0; i < count; i++) {
+                JournalRecord record = JournalRecord.readFrom(frame);
+                lastSequence = record.getSequence();
+                if (consumer != null) {
+                    consumer.accept(record);
+                }
+            }
+            validEnd += FRAME_HEADER_SIZE + length;
+        }
+
+        BYTES_READ.add(validEnd);
+        synchronized (this) {
+            nextSequence = Math.max(nextSequence, lastSequence + 1);
+        }
+        return new ScanResult(base, validEnd);
+    }
+}
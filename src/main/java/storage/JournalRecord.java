@@ -0,0 +1,285 @@
+package storage;
+
+import models.Money;
+import models.Transaction;
+import models.Transfer;
+import models.TransactionType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Класс, представляющий одну запись журнала изменений.
+ * Описывает регистрацию пользователя, транзакцию, перевод или установку бюджета
+ * и умеет записывать себя в компактном двоичном виде.
+ * Перевод записывается одной записью с обеими сторонами, поэтому после сбоя он восстанавливается
+ * в обоих кошельках или не восстанавливается ни в одном.
+ */
+public class JournalRecord {
+
+    /**
+     * Перечисление видов записей журнала.
+     */
+    public enum Kind {
+        REGISTER, INCOME, EXPENSE, BUDGET, TRANSFER
+    }
+
+    private final Kind kind;
+    private final String username;
+    private final String passwordHash;
+    private final String category;
+    private final Money amount;
+    private final long timestamp;
+    // Только для записей TRANSFER: номер перевода, получатель и ключ идемпотентности (может быть null)
+    private long transferId;
+    private String recipient;
+    private String key;
+    private long sequence;
+
+    // Наибольшая длина строки в записи: строки записываются через writeUTF, длина которого хранится в двух байтах
+    private static final int MAX_ENCODED_LENGTH = 65535;
+
+    private JournalRecord(Kind kind, String username, String passwordHash, String category, Money amount, long timestamp) {
+        requireEncodable(username);
+        requireEncodable(passwordHash);
+        requireEncodable(category);
+        this.kind = kind;
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.category = category;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Создает запись о регистрации пользователя.
+     *
+     * @param username Имя пользователя.
+     * @param passwordHash Хэш пароля пользователя.
+     * @return Запись журнала.
+     */
+    public static JournalRecord register(String username, String passwordHash) {
+        return new JournalRecord(Kind.REGISTER, username, passwordHash, null, null, 0);
+    }
+
+    /**
+     * Создает запись о транзакции в кошельке пользователя.
+     *
+     * @param username Имя владельца кошелька.
+     * @param transaction Добавленная транзакция.
+     * @return Запись журнала.
+     */
+    public static JournalRecord transaction(String username, Transaction transaction) {
+        Kind kind = transaction.getType() == TransactionType.INCOME ? Kind.INCOME : Kind.EXPENSE;
+        return new JournalRecord(kind, username, null, transaction.getCategory(), transaction.getAmount(), transaction.getTimestamp());
+    }
+
+    /**
+     * Создает запись о переводе между пользователями.
+     * Запись относится к отправителю и получателю одновременно.
+     *
+     * @param transfer Проведённый перевод.
+     * @return Запись журнала.
+     */
+    public static JournalRecord transfer(Transfer transfer) {
+        JournalRecord record = new JournalRecord(Kind.TRANSFER, transfer.getSender(), null, null,
+                transfer.getAmount(), transfer.getTimestamp());
+        record.transferId = transfer.getId();
+        record.recipient = requireEncodable(transfer.getRecipient());
+        record.key = requireEncodable(transfer.getKey());
+        return record;
+    }
+
+    /**
+     * Проверяет, что строку можно записать в запись журнала.
+     * Проверка выполняется при создании записи: запись, которую нельзя закодировать, не попадает
+     * в очередь журнала и не блокирует фиксацию записей других пользователей.
+     *
+     * @param value Строка или null.
+     * @return Та же строка.
+     * @throws IllegalArgumentException Если в кодировке modified UTF-8 строка длиннее 65535 байт.
+     */
+    private static String requireEncodable(String value) {
+        if (value == null || value.length() <= MAX_ENCODED_LENGTH / 3) {
+            return value;
+        }
+        long encoded = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            encoded += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        if (encoded > MAX_ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Строка длиной " + value.length() + " символов не помещается в запись журнала.");
+        }
+        return value;
+    }
+
+    /**
+     * Создает запись об установке бюджета.
+     *
+     * @param username Имя владельца кошелька.
+     * @param category Категория бюджета.
+     * @param amount Сумма бюджета.
+     * @return Запись журнала.
+     */
+    public static JournalRecord budget(String username, String category, Money amount) {
+        return new JournalRecord(Kind.BUDGET, username, null, category, amount, 0);
+    }
+
+    /**
+     * Записывает запись в двоичный поток.
+     *
+     * @param out Поток для записи.
+     * @throws IOException Исключение, если произошла ошибка при записи.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(kind.ordinal());
+        out.writeLong(sequence);
+        out.writeUTF(username);
+        switch (kind) {
+            case REGISTER -> out.writeUTF(passwordHash);
+            case INCOME, EXPENSE -> {
+                out.writeUTF(category);
+                out.writeLong(amount.getMinorUnits());
+                out.writeLong(timestamp);
+            }
+            case BUDGET -> {
+                out.writeUTF(category);
+                out.writeLong(amount.getMinorUnits());
+            }
+            case TRANSFER -> {
+                out.writeUTF(recipient);
+                out.writeBoolean(key != null);
+                if (key != null) {
+                    out.writeUTF(key);
+                }
+                out.writeLong(amount.getMinorUnits());
+                out.writeLong(timestamp);
+                out.writeLong(transferId);
+            }
+        }
+    }
+
+    /**
+     * Читает запись из двоичного потока.
+     *
+     * @param in Поток для чтения.
+     * @return Прочитанная запись.
+     * @throws IOException Исключение, если данные повреждены или произошла ошибка при чтении.
+     */
+    static JournalRecord readFrom(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= Kind.values().length) {
+            throw new IOException("Неизвестный тип записи журнала: " + ordinal);
+        }
+        Kind kind = Kind.values()[ordinal];
+        long sequence = in.readLong();
+        String username = in.readUTF();
+        JournalRecord record = switch (kind) {
+            case REGISTER -> register(username, in.readUTF());
+            case INCOME, EXPENSE -> new JournalRecord(kind, username, null, in.readUTF(), Money.ofMinor(in.readLong()), in.readLong());
+            case BUDGET -> budget(username, in.readUTF(), Money.ofMinor(in.readLong()));
+            case TRANSFER -> {
+                String recipient = in.readUTF();
+                String key = in.readBoolean() ? in.readUTF() : null;
+                Money amount = Money.ofMinor(in.readLong());
+                long timestamp = in.readLong();
+                yield transfer(new Transfer(in.readLong(), key, username, recipient, amount, timestamp));
+            }
+        };
+        record.sequence = sequence;
+        return record;
+    }
+
+    /**
+     * Восстанавливает транзакцию, описанную записью INCOME или EXPENSE.
+     *
+     * @return Транзакция (Transaction).
+     */
+    public Transaction toTransaction() {
+        TransactionType type = kind == Kind.INCOME ? TransactionType.INCOME : TransactionType.EXPENSE;
+        return new Transaction(amount, timestamp, type, category);
+    }
+
+    /**
+     * Восстанавливает перевод, описанный записью TRANSFER.
+     *
+     * @return Перевод (Transfer).
+     */
+    public Transfer toTransfer() {
+        return new Transfer(transferId, key, username, recipient, amount, timestamp);
+    }
+
+    /**
+     * Геттер для получения логина получателя перевода (только для записей TRANSFER).
+     *
+     * @return Логин получателя или null.
+     */
+    public String getRecipient() {
+        return recipient;
+    }
+
+    /**
+     * Геттер для получения вида записи.
+     *
+     * @return Вид записи (Kind).
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Геттер для получения порядкового номера записи в журнале.
+     *
+     * @return Порядковый номер.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Присваивает записи порядковый номер при добавлении в журнал.
+     *
+     * @param sequence Порядковый номер.
+     */
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * Геттер для получения имени пользователя, к которому относится запись.
+     *
+     * @return Имя пользователя.
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Геттер для получения хэша пароля (только для записей REGISTER).
+     *
+     * @return Хэш пароля или null.
+     */
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    /**
+     * Геттер для получения категории транзакции или бюджета.
+     *
+     * @return Категория или null.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Геттер для получения суммы транзакции или бюджета.
+     *
+     * @return Сумма (Money) или null.
+     */
+    public Money getAmount() {
+        return amount;
+    }
+}
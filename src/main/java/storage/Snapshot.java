@@ -0,0 +1,43 @@
+package storage;
+
+import java.io.Serializable;
+
+/**
+ * Класс, представляющий снимок данных вместе с порядковым номером журнала.
+ * Порядковый номер указывает последнюю запись журнала, уже учтённую в снимке.
+ */
+public class Snapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final Serializable data;
+
+    /**
+     * Конструктор для создания снимка.
+     *
+     * @param sequence Порядковый номер последней учтённой записи журнала.
+     * @param data Сохраняемые данные.
+     */
+    public Snapshot(long sequence, Serializable data) {
+        this.sequence = sequence;
+        this.data = data;
+    }
+
+    /**
+     * Геттер для получения порядкового номера последней учтённой записи журнала.
+     *
+     * @return Порядковый номер (0 для файлов, сохранённых без журнала).
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Геттер для получения сохранённых данных.
+     *
+     * @return Данные снимка.
+     */
+    public Serializable getData() {
+        return data;
+    }
+}
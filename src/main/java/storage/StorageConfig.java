@@ -0,0 +1,108 @@
+package storage;
+
+/**
+ * Класс с настройками хранения данных.
+ * Значения по умолчанию можно переопределить системными свойствами при запуске приложения:
+ * - finance.data.dir: Каталог с файлами данных (по умолчанию текущий каталог).
+ * - finance.journal: Включить журнал изменений (true/false, по умолчанию true).
+ * - finance.journal.fsync: Политика сброса журнала на диск (ALWAYS/NEVER/BACKGROUND, по умолчанию ALWAYS).
+ * - finance.journal.group: Максимальное количество записей в одной групповой фиксации (по умолчанию 64).
+ * - finance.snapshot.interval: Интервал фонового сохранения снимков в секундах (по умолчанию 60, 0 - отключено).
+ */
+public class StorageConfig {
+    private final String dataDir;
+    private final boolean journalEnabled;
+    private final FsyncPolicy fsyncPolicy;
+    private final int groupSize;
+    private final long snapshotInterval;
+
+    /**
+     * Конструктор для создания настроек хранения без фонового сохранения снимков.
+     *
+     * @param dataDir Каталог с файлами данных.
+     * @param journalEnabled Включен ли журнал изменений.
+     * @param fsyncPolicy Политика сброса журнала на диск.
+     * @param groupSize Максимальное количество записей в одной групповой фиксации.
+     */
+    public StorageConfig(String dataDir, boolean journalEnabled, FsyncPolicy fsyncPolicy, int groupSize) {
+        this(dataDir, journalEnabled, fsyncPolicy, groupSize, 0);
+    }
+
+    /**
+     * Конструктор для создания настроек хранения.
+     *
+     * @param dataDir Каталог с файлами данных.
+     * @param journalEnabled Включен ли журнал изменений.
+     * @param fsyncPolicy Политика сброса журнала на диск.
+     * @param groupSize Максимальное количество записей в одной групповой фиксации.
+     * @param snapshotInterval Интервал фонового сохранения снимков в секундах (0 - отключено).
+     */
+    public StorageConfig(String dataDir, boolean journalEnabled, FsyncPolicy fsyncPolicy, int groupSize, long snapshotInterval) {
+        this.dataDir = dataDir;
+        this.journalEnabled = journalEnabled;
+        this.fsyncPolicy = fsyncPolicy;
+        this.groupSize = groupSize;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Создает настройки хранения на основе системных свойств.
+     *
+     * @return Настройки хранения.
+     * @throws IllegalArgumentException Если указана неизвестная политика сброса журнала.
+     */
+    public static StorageConfig fromSystemProperties() {
+        return new StorageConfig(
+                System.getProperty("finance.data.dir", "."),
+                Boolean.parseBoolean(System.getProperty("finance.journal", "true")),
+                FsyncPolicy.valueOf(System.getProperty("finance.journal.fsync", "ALWAYS").toUpperCase()),
+                Integer.getInteger("finance.journal.group", 64),
+                Long.getLong("finance.snapshot.interval", 60)
+        );
+    }
+
+    /**
+     * Геттер для получения каталога с файлами данных.
+     *
+     * @return Путь к каталогу данных.
+     */
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Геттер для проверки, включен ли журнал изменений.
+     *
+     * @return true, если изменения записываются в журнал.
+     */
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /**
+     * Геттер для получения политики сброса журнала на диск.
+     *
+     * @return Политика сброса (FsyncPolicy).
+     */
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Геттер для получения максимального количества записей в одной групповой фиксации.
+     *
+     * @return Размер группы.
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * Геттер для получения интервала фонового сохранения снимков.
+     *
+     * @return Интервал в секундах (0 - фоновое сохранение отключено).
+     */
+    public long getSnapshotInterval() {
+        return snapshotInterval;
+    }
+}
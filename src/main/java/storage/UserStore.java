@@ -0,0 +1,591 @@
+package storage;
+
+import models.*;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Класс для хранения пользователей по отдельным сегментам (шардам).
+ * Каждый пользователь хранится в собственном файле, а имена и хэши паролей — в небольшом индексе.
+ * При запуске загружается только индекс; кошелек пользователя загружается при первом обращении к нему,
+ * а при сохранении записываются только изменённые сегменты.
+ *
+ * Структура каталога данных:
+ * - users.idx: Индекс имён пользователей и хэшей паролей.
+ * - users/: Сегменты пользователей, по одному файлу на пользователя.
+ * - users.journal: Журнал изменений (если включен) и его закрытые сегменты users.journal.<номер>.
+ * - users.dat: Единый файл прежних версий; переносится в сегменты при первом запуске.
+ *
+ * Хранилище можно использовать из нескольких потоков. Загрузка сегментов и регистрация
+ * выполняются под монитором хранилища; изменения кошельков отмечаются без его захвата,
+ * поэтому потоки, удерживающие монитор кошелька, не блокируются сохранением.
+ * Сохранения выполняются по одному под отдельным монитором; монитор хранилища удерживается
+ * только на время выбора сохраняемых сегментов, а сами сегменты записываются без него.
+ * Порядок захвата мониторов: сохранение, затем хранилище, затем кошелек, затем журнал.
+ *
+ * Запись на диск выполняют фоновые потоки сохранения. Если в настройках задан интервал снимков,
+ * они периодически сохраняют изменённые сегменты и удаляют учтённые в них сегменты журнала.
+ * Поэтому при перезапуске воспроизводятся только записи, сделанные после последнего снимка,
+ * и время восстановления ограничено интервалом снимков, а не всей историей изменений.
+ * Без журнала изменённые сегменты сохраняются в фоне после каждой команды, а с политикой
+ * BACKGROUND в фоне фиксируется и журнал; повторные запросы, пришедшие до начала записи,
+ * объединяются в одну запись. Поток обработки команд в этих режимах не ждёт диска.
+ */
+public class UserStore {
+    private static final String INDEX_FILE = "users.idx";
+    private static final String SHARD_DIR = "users";
+    private static final String JOURNAL_FILE = "users.journal";
+    private static final String LEGACY_FILE = "users.dat";
+
+    private final Path indexPath;
+    private final Path shardDir;
+    private final Map<String, String> credentials;
+    private final Map<String, User> loaded;
+    private final Map<String, List<JournalRecord>> replayBacklog;
+    private final Set<String> dirtyUsers;
+    private final Object saveLock;
+    private volatile boolean indexDirty;
+    private final ScheduledExecutorService worker;
+    private final AtomicBoolean commitQueued;
+    private final AtomicBoolean saveQueued;
+    private final boolean backgroundCommit;
+    private final long snapshotInterval;
+    private Journal journal;
+
+    /**
+     * Открывает хранилище пользователей и запускает периодическое сохранение снимков.
+     * Расписание запускается после завершения конструктора, чтобы фоновый поток
+     * не обращался к не до конца созданному хранилищу.
+     *
+     * @param config Настройки хранения данных.
+     * @return Открытое хранилище.
+     */
+    public static UserStore open(StorageConfig config) {
+        UserStore store = new UserStore(config);
+        store.start();
+        return store;
+    }
+
+    /**
+     * Конструктор для открытия хранилища пользователей.
+     * Загружает индекс (или переносит данные из файла прежней версии) и читает журнал изменений.
+     * Записи журнала откладываются до загрузки соответствующего кошелька.
+     * Ошибки загрузки выводятся в консоль, а хранилище начинает работу с доступными данными.
+     * Снимки по расписанию не сохраняются до вызова start (см. open).
+     *
+     * @param config Настройки хранения данных.
+     */
+    private UserStore(StorageConfig config) {
+        Path dataDir = Paths.get(config.getDataDir());
+        this.indexPath = dataDir.resolve(INDEX_FILE);
+        this.shardDir = dataDir.resolve(SHARD_DIR);
+        this.credentials = new ConcurrentHashMap<>();
+        this.loaded = new ConcurrentHashMap<>();
+        this.replayBacklog = new HashMap<>();
+        this.dirtyUsers = ConcurrentHashMap.newKeySet();
+        this.saveLock = new Object();
+        this.commitQueued = new AtomicBoolean();
+        this.saveQueued = new AtomicBoolean();
+        this.backgroundCommit = config.getFsyncPolicy() == FsyncPolicy.BACKGROUND;
+        this.snapshotInterval = config.getSnapshotInterval();
+        // Два потока: длительное сохранение снимка не задерживает фоновую фиксацию журнала
+        this.worker = Executors.newScheduledThreadPool(2, task -> {
+            Thread thread = new Thread(task, "finance-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            Files.createDirectories(shardDir);
+        } catch (IOException e) {
+            System.out.println("Не удалось создать каталог данных: " + e.getMessage());
+        }
+
+        long indexSequence = loadIndex(dataDir.resolve(LEGACY_FILE));
+
+        if (config.isJournalEnabled()) {
+            try {
+                journal = new Journal(dataDir.resolve(JOURNAL_FILE).toString(), config.getFsyncPolicy(), config.getGroupSize());
+                journal.replay(0, record -> deferRecord(record, indexSequence));
+            } catch (IOException e) {
+                System.out.println("Не удалось открыть журнал изменений: " + e.getMessage());
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * Запускает периодическое сохранение снимков, если в настройках задан интервал.
+     */
+    private void start() {
+        if (snapshotInterval > 0) {
+            worker.scheduleWithFixedDelay(this::snapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Проверяет, зарегистрирован ли пользователь.
+     *
+     * @param username Имя пользователя.
+     * @return true, если пользователь существует.
+     */
+    public boolean exists(String username) {
+        return credentials.containsKey(username);
+    }
+
+    /**
+     * Возвращает хэш пароля пользователя из индекса без загрузки его кошелька.
+     *
+     * @param username Имя пользователя.
+     * @return Хэш пароля или null, если пользователь не найден.
+     */
+    public String getPasswordHash(String username) {
+        return credentials.get(username);
+    }
+
+    /**
+     * Возвращает имена всех зарегистрированных пользователей.
+     *
+     * @return Множество имён пользователей.
+     */
+    public Set<String> getUsernames() {
+        return Collections.unmodifiableSet(credentials.keySet());
+    }
+
+    /**
+     * Возвращает пользователя, загружая его сегмент при первом обращении.
+     * К загруженному кошельку применяются отложенные записи журнала.
+     *
+     * @param username Имя пользователя.
+     * @return Пользователь или null, если он не найден или его сегмент не удалось прочитать.
+     */
+    public User get(String username) {
+        User user = loaded.get(username);
+        if (user != null || !credentials.containsKey(username)) {
+            return user;
+        }
+        return load(username);
+    }
+
+    /**
+     * Загружает сегмент пользователя и применяет к нему отложенные записи журнала.
+     * Повторная проверка под монитором исключает двойную загрузку одного сегмента.
+     *
+     * @param username Имя пользователя.
+     * @return Пользователь или null, если его сегмент не удалось прочитать.
+     */
+    private synchronized User load(String username) {
+        User user = loaded.get(username);
+        if (user != null) {
+            return user;
+        }
+
+        long shardSequence = 0;
+        Path shard = shardPath(username);
+        if (Files.exists(shard)) {
+            try {
+                Snapshot snapshot = FileStorage.loadSnapshot(shard.toString());
+                user = (User) snapshot.getData();
+                shardSequence = Math.max(snapshot.getSequence(), user.getWallet().getAppliedSequence());
+            } catch (IOException | ClassNotFoundException e) {
+                System.out.println("Не удалось загрузить данные пользователя " + username + ".");
+                return null;
+            }
+        } else {
+            // Пользователь зарегистрирован, но его сегмент еще не сохранялся
+            user = new User(username, credentials.get(username));
+            dirtyUsers.add(username);
+        }
+
+        List<JournalRecord> backlog = replayBacklog.remove(username);
+        if (backlog != null) {
+            for (JournalRecord record : backlog) {
+                if (record.getSequence() > shardSequence) {
+                    applyRecord(username, user.getWallet(), record);
+                    dirtyUsers.add(username);
+                }
+            }
+        }
+
+        attachListener(user);
+        loaded.put(username, user);
+        return user;
+    }
+
+    /**
+     * Регистрирует нового пользователя.
+     * В режиме журнала регистрация дописывается в журнал, иначе сохранение индекса и сегмента
+     * передаётся фоновому потоку.
+     *
+     * @param username Имя пользователя.
+     * @param passwordHash Хэш пароля.
+     * @return Созданный пользователь или null, если пользователь с таким именем уже существует.
+     */
+    public User create(String username, String passwordHash) {
+        User user;
+        synchronized (this) {
+            if (credentials.putIfAbsent(username, passwordHash) != null) {
+                return null;
+            }
+            user = new User(username, passwordHash);
+            loaded.put(username, user);
+            dirtyUsers.add(username);
+            indexDirty = true;
+            attachListener(user);
+
+            if (journal != null) {
+                appendRecord(JournalRecord.register(username, passwordHash));
+            }
+        }
+        commit();
+        return user;
+    }
+
+    /**
+     * Загружает всех пользователей.
+     * Операция читает все сегменты, поэтому её стоит использовать только для общих отчетов.
+     *
+     * @return Карта всех пользователей по имени.
+     */
+    public Map<String, User> loadAll() {
+        Map<String, User> all = new HashMap<>();
+        for (String username : credentials.keySet()) {
+            User user = get(username);
+            if (user != null) {
+                all.put(username, user);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Фиксирует изменения, сделанные после предыдущей фиксации.
+     * Записи журнала фиксируются сразу, а с политикой BACKGROUND - фоновым потоком.
+     * Без журнала фоновому потоку передаётся сохранение изменённых сегментов.
+     */
+    public void commit() {
+        if (journal == null) {
+            if (!dirtyUsers.isEmpty() || indexDirty) {
+                submit(saveQueued, this::snapshot);
+            }
+        } else if (backgroundCommit) {
+            submit(commitQueued, this::commitJournal);
+        } else {
+            commitJournal();
+        }
+    }
+
+    /**
+     * Фиксирует накопленные записи журнала, сообщая об ошибке записи в консоль.
+     */
+    private void commitJournal() {
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            System.out.println("Не удалось записать изменения в журнал: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Передаёт задачу фоновому потоку, если такая же задача ещё не ожидает выполнения.
+     * Флаг снимается перед выполнением задачи, поэтому изменения, сделанные во время выполнения,
+     * будут записаны следующим запуском.
+     *
+     * @param queued Флаг ожидающей задачи.
+     * @param task Задача записи на диск.
+     */
+    private void submit(AtomicBoolean queued, Runnable task) {
+        if (!queued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                queued.set(false);
+                task.run();
+            });
+        } catch (RejectedExecutionException e) {
+            // Хранилище закрыто: оставшиеся изменения записываются при закрытии
+            queued.set(false);
+        }
+    }
+
+    /**
+     * Сохраняет изменённые сегменты и индекс, после чего очищает журнал.
+     * Кошельки с отложенными записями журнала предварительно загружаются,
+     * чтобы эти записи попали в сегменты до очистки журнала.
+     *
+     * Сохранение не останавливает другие потоки: каждый кошелек сериализуется под своим монитором,
+     * а из журнала удаляются только записи, зафиксированные до начала сохранения.
+     * Кошелек снимается с учёта изменённых до записи, поэтому изменения во время записи не теряются.
+     * Перед записью сегментов активный сегмент журнала закрывается, и после сохранения
+     * закрытые сегменты удаляются целиком, без перечитывания журнала.
+     *
+     * @throws IOException Исключение, если не удалось записать данные.
+     */
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            long sequence = 0;
+            List<String> users;
+            boolean writeIndex;
+            boolean compact;
+            synchronized (this) {
+                for (String username : new ArrayList<>(replayBacklog.keySet())) {
+                    get(username);
+                }
+                if (journal != null) {
+                    sequence = journal.roll();
+                }
+                users = new ArrayList<>(dirtyUsers);
+                writeIndex = indexDirty;
+                indexDirty = false;
+                // Если какой-то сегмент не удалось прочитать, его записи остаются только в журнале
+                compact = replayBacklog.isEmpty();
+            }
+
+            for (String username : users) {
+                dirtyUsers.remove(username);
+                try {
+                    FileStorage.saveSnapshot(loaded.get(username), sequence, shardPath(username).toString());
+                } catch (IOException e) {
+                    dirtyUsers.add(username);
+                    throw e;
+                }
+            }
+
+            if (writeIndex) {
+                try {
+                    FileStorage.saveSnapshot(new HashMap<>(credentials), sequence, indexPath.toString());
+                } catch (IOException e) {
+                    indexDirty = true;
+                    throw e;
+                }
+            }
+
+            // Снимки и замена файлов уже записаны на диск (FileStorage.saveData), поэтому записи журнала можно удалить
+            if (journal != null && compact) {
+                journal.truncate(sequence);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет снимок данных, если с прошлого снимка что-то изменилось.
+     * Вызывается фоновым потоком по расписанию или по запросу фиксации; ошибки выводятся в консоль,
+     * а следующая попытка выполняется при следующем запуске.
+     */
+    private void snapshot() {
+        synchronized (this) {
+            if (dirtyUsers.isEmpty() && !indexDirty && replayBacklog.isEmpty()) {
+                return;
+            }
+        }
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Не удалось сохранить снимок данных: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Останавливает фоновые потоки сохранения и закрывает журнал, зафиксировав накопленные записи.
+     * Уже поставленные в очередь фиксации и сохранения выполняются до закрытия.
+     * Несохранённые сегменты не записываются: их изменения остаются в журнале.
+     */
+    public void close() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (saveLock) {
+            if (journal == null) {
+                return;
+            }
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("Не удалось закрыть журнал изменений: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Загружает индекс пользователей.
+     * Если индекса нет, но есть единый файл прежней версии, данные переносятся в сегменты.
+     *
+     * @param legacyPath Путь к единому файлу прежней версии.
+     * @return Порядковый номер журнала, учтённый в индексе.
+     */
+    @SuppressWarnings("unchecked")
+    private long loadIndex(Path legacyPath) {
+        try {
+            if (Files.exists(indexPath)) {
+                Snapshot snapshot = FileStorage.loadSnapshot(indexPath.toString());
+                credentials.putAll((Map<String, String>) snapshot.getData());
+                return snapshot.getSequence();
+            }
+            if (Files.exists(legacyPath)) {
+                return migrate(legacyPath);
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Не удалось загрузить индекс пользователей.");
+        }
+        return 0;
+    }
+
+    /**
+     * Переносит пользователей из единого файла прежней версии в отдельные сегменты.
+     * Исходный файл не удаляется.
+     *
+     * @param legacyPath Путь к единому файлу прежней версии.
+     * @return Порядковый номер журнала, учтённый в перенесённых данных.
+     * @throws IOException Исключение, если не удалось прочитать или записать данные.
+     * @throws ClassNotFoundException Исключение, если не удаётся найти класс для десериализации.
+     */
+    @SuppressWarnings("unchecked")
+    private long migrate(Path legacyPath) throws IOException, ClassNotFoundException {
+        Snapshot legacy = FileStorage.loadSnapshot(legacyPath.toString());
+        Map<String, User> users = (Map<String, User>) legacy.getData();
+
+        for (User user : users.values()) {
+            FileStorage.saveSnapshot(user, legacy.getSequence(), shardPath(user.getUsername()).toString());
+            credentials.put(user.getUsername(), user.getPasswordHash());
+        }
+        FileStorage.saveSnapshot(new HashMap<>(credentials), legacy.getSequence(), indexPath.toString());
+        return legacy.getSequence();
+    }
+
+    /**
+     * Распределяет запись журнала при запуске.
+     * Регистрации сразу попадают в индекс, остальные записи откладываются до загрузки кошелька,
+     * а перевод - до загрузки каждого из двух кошельков.
+     *
+     * @param record Запись журнала.
+     * @param indexSequence Порядковый номер журнала, учтённый в индексе.
+     */
+    private void deferRecord(JournalRecord record, long indexSequence) {
+        if (record.getKind() == JournalRecord.Kind.REGISTER) {
+            if (record.getSequence() > indexSequence && !credentials.containsKey(record.getUsername())) {
+                credentials.put(record.getUsername(), record.getPasswordHash());
+                indexDirty = true;
+            }
+            return;
+        }
+        replayBacklog.computeIfAbsent(record.getUsername(), u -> new ArrayList<>()).add(record);
+        if (record.getKind() == JournalRecord.Kind.TRANSFER) {
+            replayBacklog.computeIfAbsent(record.getRecipient(), u -> new ArrayList<>()).add(record);
+        }
+    }
+
+    /**
+     * Применяет запись журнала к кошельку.
+     * Из записи перевода применяется проводка, относящаяся к владельцу кошелька.
+     *
+     * @param username Имя владельца кошелька.
+     * @param wallet Кошелек пользователя.
+     * @param record Запись журнала.
+     */
+    private void applyRecord(String username, Wallet wallet, JournalRecord record) {
+        switch (record.getKind()) {
+            case INCOME, EXPENSE -> wallet.restoreTransaction(record.toTransaction());
+            case TRANSFER -> wallet.restoreTransaction(record.toTransfer().legOf(username));
+            case BUDGET -> wallet.restoreBudget(record.getCategory(), record.getAmount());
+            default -> { }
+        }
+        wallet.setAppliedSequence(record.getSequence());
+    }
+
+    /**
+     * Подключает кошелек пользователя к хранилищу: изменения отмечают сегмент как изменённый
+     * и записываются в журнал. Слушатель вызывается под монитором кошелька, поэтому номер записи
+     * журнала запоминается в кошельке атомарно вместе с самим изменением. Перевод записывается
+     * одной записью, номер которой запоминается в кошельках обоих участников.
+     *
+     * @param user Пользователь, чей кошелек нужно подключить.
+     */
+    private void attachListener(User user) {
+        String username = user.getUsername();
+        Wallet wallet = user.getWallet();
+        wallet.setListener(new WalletListener() {
+            @Override
+            public void onTransaction(Transaction transaction) {
+                dirtyUsers.add(username);
+                if (journal != null) {
+                    wallet.setAppliedSequence(appendRecord(JournalRecord.transaction(username, transaction)));
+                }
+            }
+
+            @Override
+            public void onTransactions(List<Transaction> transactions) {
+                dirtyUsers.add(username);
+                if (journal != null) {
+                    List<JournalRecord> records = new ArrayList<>(transactions.size());
+                    for (Transaction transaction : transactions) {
+                        records.add(JournalRecord.transaction(username, transaction));
+                    }
+                    try {
+                        wallet.setAppliedSequence(journal.appendAll(records));
+                    } catch (IOException e) {
+                        System.out.println("Не удалось записать изменения в журнал: " + e.getMessage());
+                    }
+                }
+            }
+
+            @Override
+            public void onTransfer(Transfer transfer, Wallet counterpart) {
+                dirtyUsers.add(username);
+                dirtyUsers.add(transfer.getRecipient());
+                if (journal != null) {
+                    long sequence = appendRecord(JournalRecord.transfer(transfer));
+                    wallet.setAppliedSequence(sequence);
+                    counterpart.setAppliedSequence(sequence);
+                }
+            }
+
+            @Override
+            public void onBudget(String category, Money amount) {
+                dirtyUsers.add(username);
+                if (journal != null) {
+                    wallet.setAppliedSequence(appendRecord(JournalRecord.budget(username, category, amount)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Добавляет запись в журнал, сообщая об ошибке записи в консоль.
+     *
+     * @param record Запись журнала.
+     * @return Порядковый номер записи (0, если запись не удалась).
+     */
+    private long appendRecord(JournalRecord record) {
+        try {
+            return journal.append(record);
+        } catch (IOException e) {
+            System.out.println("Не удалось записать изменения в журнал: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Возвращает путь к сегменту пользователя.
+     * Имя пользователя кодируется, чтобы его можно было безопасно использовать как имя файла.
+     *
+     * @param username Имя пользователя.
+     * @return Путь к файлу сегмента.
+     */
+    private Path shardPath(String username) {
+        return shardDir.resolve(URLEncoder.encode(username, StandardCharsets.UTF_8) + ".dat");
+    }
+}
@@ -1,9 +1,19 @@
 package ui;
 
+import metrics.Metrics;
 import services.*;
 import models.*;
-
-import java.math.BigDecimal;
+import storage.StorageConfig;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
@@ -13,13 +23,37 @@ import java.util.Scanner;
  * Обрабатывает команды пользователя и выполняет соответствующие действия.
  */
 public class CommandProcessor {
+    private static final String LISTING_OPTIONS = "[--from <date>] [--to <date>] [--page <n>] [--limit <n>]";
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final String SUMMARY_OPTIONS = "[--category <category>] [--from <date>] [--to <date>]";
+    private static final String TOP_OPTIONS = "[--from <date>] [--to <date>] [--limit <n>]";
+    private static final String TOP_TRANSACTION_OPTIONS = "[--category <category>] " + TOP_OPTIONS;
+    private static final int DEFAULT_TOP_SIZE = 10;
+
     private final AuthService authService;
     private final FinanceService financeService;
+    private final ImportService importService;
+    private final ExportService exportService;
+    private final String statsFile;
     private User currentUser;
 
     public CommandProcessor() {
-        this.authService = new AuthService();
+        this(StorageConfig.fromSystemProperties());
+    }
+
+    /**
+     * Конструктор для создания процессора команд с указанными настройками хранения данных.
+     * Показатели производительности сохраняются при выходе в файл из системного свойства
+     * finance.stats.file (по умолчанию stats.json в каталоге данных; пустое значение отключает сохранение).
+     *
+     * @param config Настройки хранения данных.
+     */
+    public CommandProcessor(StorageConfig config) {
+        this.authService = new AuthService(config);
         this.financeService = new FinanceService();
+        this.importService = new ImportService(authService);
+        this.exportService = new ExportService(1);
+        this.statsFile = System.getProperty("finance.stats.file", Paths.get(config.getDataDir(), "stats.json").toString());
     }
 
     /**
@@ -33,255 +67,428 @@ public class CommandProcessor {
                 System.out.println("Введите команду ('help' - просмотр списка команд):");
                 System.out.print(">> ");
                 String command = scanner.nextLine();
-                String[] parts = command.split(" ");
-                try {
-                    switch (parts[0]) {
-                        case "help":
-                            System.out.println("=====================================================================");
-                            System.out.println("Доступные команды: ");
-                            System.out.println("help - Показать доступные команды");
-                            System.out.println("register <username> <password> - Зарегистрировать нового пользователя");
-                            System.out.println("login <username> <password> - Войти в систему");
-                            System.out.println("logout - Выйти из учетной записи");
-                            System.out.println("exit - Выйти из приложения");
-                            System.out.println("\nКоманды для работы с кошельком:");
-                            System.out.println("-------------------------------");
-                            System.out.println("add-income <amount> <category> - Добавить доход");
-                            System.out.println("add-expense <amount> <category> - Добавить расход");
-                            System.out.println("set-budget <category> <amount> - Установить бюджет для категории");
-                            System.out.println("add-transfer <recipientUsername> <amount> - Отправить перевод другому пользователю");
-                            System.out.println("\nКоманды для вывода общей информации:");
-                            System.out.println("------------------------------------");
-                            System.out.println("show-overview - Показать обзор кошелька");
-                            System.out.println("    show-balance - Показать текущий баланс");
-                            System.out.println("    show-summary - Показать общую сумму доходов и расходов");
-                            System.out.println("    show-budget - Показать обзор бюджета");
-                            System.out.println("    show-transactions - Показать список всех операций");
-                            System.out.println("    show-category-budget <category1> [category2] ... - Показать обзор бюджета по выбранным категориям");
-                            System.out.println("    show-category-transactions <category1> [category2] ... - Показать список всех операций по выбранным категориям");
-                            System.out.println("\nКоманды для вывода информации по доходам:");
-                            System.out.println("-----------------------------------------");
-                            System.out.println("show-overview-income - Показать обзор кошелька по доходам");
-                            System.out.println("    show-summary-income - Показать общую сумму доходов");
-                            System.out.println("    show-budget-income - Показать обзор бюджета по доходам");
-                            System.out.println("    show-transactions-income - Показать список всех операций по доходам");
-                            System.out.println("\nКоманды для вывода информации по расходам:");
-                            System.out.println("------------------------------------------");
-                            System.out.println("show-overview-expense - Показать обзор кошелька по расходам");
-                            System.out.println("    show-summary-expense - Показать общую сумму расходов");
-                            System.out.println("    show-budget-expense - Показать обзор бюджета по расходам");
-                            System.out.println("    show-transactions-expense - Показать список всех операций по расходам");
-                            break;
-
-                        case "register":
-                            validateAndExecute(parts, "couple", "register <username> <password>", () -> {
-                                if (authService.register(parts[1], parts[2])) {
-                                    System.out.println("Пользователь зарегистрирован успешно.");
-                                } else {
-                                    System.out.println("Пользователь с таким именем уже существует.");
-                                }
-                            });
-                            break;
-
-                        case "login":
-                            validateAndExecute(parts, "couple", "login <username> <password>", () -> {
-                                currentUser = authService.login(parts[1], parts[2]);
-                                if (currentUser != null) {
-                                    System.out.println("Вход выполнен успешно.");
-                                } else {
-                                    System.out.println("Неверные учетные данные.");
-                                }
-                            });
-                            break;
-
-                        case "logout":
-                            validateAndExecute(parts, "single", "logout", () -> {
-                                currentUser = null;
-                                System.out.println("Вы вышли из системы.");
-                            });
-                            break;
-
-                        case "exit":
-                            if (parts.length != 1) {
-                                System.out.println("Ошибка: Команда не должна содержать аргументы. Используйте: exit");
-                            } else {
-                                authService.saveUsers();
-                                System.out.println("До свидания!");
-                                return;
-                            }
-                            break;
-
-                        /**
-                         * Команды для работы с кошельком
-                         */
-
-                        case "add-income":
-                            validateAndExecute(parts, "couple-wallet", "add-income <category> <amount>", () -> {
-                                try {
-                                    String category = parts[1];
-                                    BigDecimal amount = new BigDecimal(parts[2]);
-                                    financeService.addIncome(currentUser, category, amount);
-                                    System.out.println("Доход добавлен.");
-                                } catch (NumberFormatException e) {
-                                    System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 150.00");
-                                } catch (IllegalArgumentException e) {
-                                    System.out.println("Ошибка: " + e.getMessage());
-                                }
-                            });
-                            break;
-
-                        case "add-expense":
-                            validateAndExecute(parts, "couple-wallet", "add-expense <category> <amount>", () -> {
-                                try {
-                                    String category = parts[1];
-                                    BigDecimal amount = new BigDecimal(parts[2]);
-                                    financeService.addExpense(currentUser, category, amount);
-                                    System.out.println("Расход добавлен.");
-                                } catch (NumberFormatException e) {
-                                    System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 200.50");
-                                } catch (IllegalArgumentException e) {
-                                    System.out.println("Ошибка: " + e.getMessage());
-                                }
-                            });
-                            break;
-
-                        case "set-budget":
-                            validateAndExecute(parts, "couple-wallet", "set-budget <category> <amount>", () -> {
-                                try {
-                                    String category = parts[1];
-                                    BigDecimal amount = new BigDecimal(parts[2]);
-                                    financeService.setBudget(currentUser, category, amount);
-                                    System.out.println("Бюджет установлен для категории \"" + category + "\".");
-                                } catch (NumberFormatException e) {
-                                    System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 500.00");
-                                } catch (IllegalArgumentException e) {
-                                    System.out.println("Ошибка: " + e.getMessage());
-                                }
-                            });
-                            break;
-
-                        case "add-transfer":
-                            validateAndExecute(parts, "transfer", "transfer <recipientUsername> <amount>", () -> {
-                                try {
-                                    String recipientUsername = parts[1];
-                                    BigDecimal amount = new BigDecimal(parts[2]);
-
-                                    if (financeService.addTransfer(currentUser, recipientUsername, amount, authService)) {
-                                        System.out.println("Перевод успешно выполнен.");
-                                    } else {
-                                        System.out.println("Ошибка: Не удается выполнить перевод. Проверьте наличие средств и правильность данных.");
-                                    }
-                                } catch (NumberFormatException e) {
-                                    System.out.println("Ошибка: Неверный формат суммы. Используйте десятичное число, например: 150.00");
-                                }
-                            });
-                            break;
-
-                        /**
-                         * Команды для вывода общей информации
-                         */
-
-                        case "show-overview":
-                            validateAndExecute(parts, "single", "show-overview",
-                                    () -> System.out.println(financeService.getOverview(currentUser)));
-                            break;
-
-                        case "show-balance":
-                            validateAndExecute(parts, "single", "show-balance",
-                                    () -> System.out.println(financeService.getBalance(currentUser)));
-                            break;
-
-                        case "show-summary":
-                            validateAndExecute(parts, "single", "show-summary",
-                                    () -> System.out.println(financeService.getSummary(currentUser)));
-                            break;
-
-                        case "show-budget":
-                            validateAndExecute(parts, "single", "show-budget",
-                                    () -> System.out.println(financeService.getBudget(currentUser)));
-                            break;
-
-                        case "show-transactions":
-                            validateAndExecute(parts, "single", "show-transactions",
-                                    () -> System.out.println(financeService.getAllTransactions(currentUser)));
-                            break;
-
-                        case "show-category-budget":
-                            validateAndExecute(parts, "multiply", "show-category-budget <category1> [category2] ...", () -> {
-                                // Получаем категории из аргументов
-                                List<String> categories = Arrays.asList(Arrays.copyOfRange(parts, 1, parts.length));
-                                String result = financeService.getCategoryBudget(currentUser, categories);
-                                System.out.println(result);
-                            });
-                            break;
-
-                        case "show-category-transactions":
-                            validateAndExecute(parts, "multiply", "show-category-transactions <category1> [category2] ...", () -> {
-                                // Получаем категории из аргументов
-                                List<String> categories = Arrays.asList(Arrays.copyOfRange(parts, 1, parts.length));
-                                String result = financeService.getCategoryTransactions(currentUser, categories);
-                                System.out.println(result);
-                            });
-                            break;
-
-                        /**
-                         * Команды для вывода информации по доходам
-                         */
-
-                        case "show-overview-income":
-                            validateAndExecute(parts, "single", "show-overview-income",
-                                    () -> System.out.println(financeService.getIncomeOverview(currentUser)));
-                            break;
-
-                        case "show-summary-income":
-                            validateAndExecute(parts, "single", "show-summary-income",
-                                    () -> System.out.println(financeService.getIncomeSummary(currentUser)));
-                            break;
-
-                        case "show-budget-income":
-                            validateAndExecute(parts, "single", "show-budget-income",
-                                    () -> System.out.println(financeService.getIncomeBudget(currentUser)));
-                            break;
-
-                        case "show-transactions-income":
-                            validateAndExecute(parts, "single", "show-transactions-income",
-                                    () -> System.out.println(financeService.getIncomeTransactions(currentUser)));
-                            break;
-
-                        /**
-                         * Команды для вывода информации по расходам
-                         */
-
-                        case "show-overview-expense":
-                            validateAndExecute(parts, "single", "show-overview-expense",
-                                    () -> System.out.println(financeService.getExpenseOverview(currentUser)));
-                            break;
-
-                        case "show-summary-expense":
-                            validateAndExecute(parts, "single", "show-summary-expense",
-                                    () -> System.out.println(financeService.getExpenseSummary(currentUser)));
-                            break;
-
-                        case "show-budget-expense":
-                            validateAndExecute(parts, "single", "show-budget-expense",
-                                    () -> System.out.println(financeService.getExpenseBudget(currentUser)));
-                            break;
-
-                        case "show-transactions-expense":
-                            validateAndExecute(parts, "single", "show-transactions-expense",
-                                    () -> System.out.println(financeService.getExpenseTransactions(currentUser)));
-                            break;
-
-                        default:
-                            System.out.println("Неизвестная команда. Введите 'help' для вывода списка команд.");
-                    }
-                } catch (Exception e) {
-                    System.out.println("Ошибка: " + e.getMessage());
+                boolean running = execute(command);
+
+                // Фиксируем изменения, сделанные командой, в журнале
+                authService.commit();
+                if (!running) {
+                    return;
                 }
             }
         }
     }
 
+    /**
+     * Выполняет команды в пакетном режиме без приглашений к вводу.
+     * Команды читаются построчно до конца потока или до команды exit; пустые строки
+     * и строки, начинающиеся с '#', пропускаются. Вывод буферизуется, а изменения фиксируются
+     * в журнале один раз на commitEvery команд (или один раз в конце пакета, если commitEvery не положительно).
+     * В конце пакета данные сохраняются и выводится сводка о скорости обработки.
+     *
+     * @param reader Источник команд (файл или стандартный ввод).
+     * @param commitEvery Количество команд между фиксациями журнала (0 - одна фиксация на пакет).
+     * @throws IOException Исключение, если произошла ошибка при чтении команд.
+     */
+    public void runBatch(BufferedReader reader, int commitEvery) throws IOException {
+        PrintStream console = System.out;
+        // Вывод каждой команды не сбрасывается сразу: в пакетном режиме это основная часть накладных расходов
+        System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16),
+                false, console.charset()));
+
+        long started = System.nanoTime();
+        long commands = 0;
+        long commits = 0;
+        boolean running = true;
+        try {
+            String command;
+            while (running && (command = reader.readLine()) != null) {
+                if (command.isBlank() || command.startsWith("#")) {
+                    continue;
+                }
+                running = execute(command);
+                commands++;
+                if (commitEvery > 0 && commands % commitEvery == 0) {
+                    authService.commit();
+                    commits++;
+                }
+            }
+            authService.commit();
+            commits++;
+            if (running) {
+                authService.saveUsers();
+                saveStats();
+            }
+        } finally {
+            System.out.flush();
+            System.setOut(console);
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Пакет выполнен: %d команд за %.3f с (%.0f команд/с), фиксаций журнала: %d%n",
+                commands, seconds, seconds > 0 ? commands / seconds : commands, commits);
+    }
+
+    /**
+     * Разбирает и выполняет одну команду, замеряя длительность её выполнения.
+     * Неизвестные команды учитываются под общим именем command.unknown.
+     *
+     * @param command Строка команды.
+     * @return false, если была выполнена команда exit, иначе true.
+     */
+    private boolean execute(String command) {
+        long started = System.nanoTime();
+        String[] parts = command.split(" ");
+        String metric = parts[0];
+        try {
+            switch (parts[0]) {
+                case "help":
+                    System.out.println("=====================================================================");
+                    System.out.println("Доступные команды: ");
+                    System.out.println("help - Показать доступные команды");
+                    System.out.println("register <username> <password> - Зарегистрировать нового пользователя");
+                    System.out.println("login <username> <password> - Войти в систему");
+                    System.out.println("logout - Выйти из учетной записи");
+                    System.out.println("stats - Показать статистику производительности");
+                    System.out.println("exit - Выйти из приложения");
+                    System.out.println("\nКоманды для работы с кошельком:");
+                    System.out.println("-------------------------------");
+                    System.out.println("add-income <amount> <category> - Добавить доход");
+                    System.out.println("add-expense <amount> <category> - Добавить расход");
+                    System.out.println("set-budget <category> <amount> - Установить бюджет для категории");
+                    System.out.println("add-transfer <recipientUsername> <amount> [key] - Отправить перевод другому пользователю (повтор с тем же ключом не выполняется)");
+                    System.out.println("import <file> - Импортировать операции из выписки CSV (дата, тип, сумма, категория)");
+                    System.out.println("export <csv|jsonl> <file> - Выгрузить историю операций в файл CSV или JSON Lines");
+                    System.out.println("\nКоманды для вывода общей информации:");
+                    System.out.println("------------------------------------");
+                    System.out.println("show-overview - Показать обзор кошелька");
+                    System.out.println("    show-balance - Показать текущий баланс");
+                    System.out.println("    show-summary - Показать общую сумму доходов и расходов");
+                    System.out.println("    show-budget - Показать обзор бюджета");
+                    System.out.println("    show-transactions " + LISTING_OPTIONS + " - Показать список всех операций (за период, по страницам)");
+                    System.out.println("    show-category-budget <category1> [category2] ... - Показать обзор бюджета по выбранным категориям");
+                    System.out.println("    show-category-transactions <category1> [category2] ... - Показать список всех операций по выбранным категориям");
+                    System.out.println("\nКоманды для вывода информации по доходам:");
+                    System.out.println("-----------------------------------------");
+                    System.out.println("show-overview-income - Показать обзор кошелька по доходам");
+                    System.out.println("    show-summary-income " + SUMMARY_OPTIONS + " - Показать общую сумму доходов (за период, по категории)");
+                    System.out.println("    show-budget-income - Показать обзор бюджета по доходам");
+                    System.out.println("    show-transactions-income " + LISTING_OPTIONS + " - Показать список всех операций по доходам");
+                    System.out.println("\nКоманды для вывода информации по расходам:");
+                    System.out.println("------------------------------------------");
+                    System.out.println("show-overview-expense - Показать обзор кошелька по расходам");
+                    System.out.println("    show-summary-expense " + SUMMARY_OPTIONS + " - Показать общую сумму расходов (за период, по категории)");
+                    System.out.println("    show-budget-expense - Показать обзор бюджета по расходам");
+                    System.out.println("    show-transactions-expense " + LISTING_OPTIONS + " - Показать список всех операций по расходам");
+                    System.out.println("\nКоманды для поиска крупнейших операций:");
+                    System.out.println("--------------------------------------");
+                    System.out.println("show-top-transactions " + TOP_TRANSACTION_OPTIONS + " - Показать крупнейшие операции");
+                    System.out.println("    show-top-transactions-income " + TOP_TRANSACTION_OPTIONS + " - Показать крупнейшие доходы");
+                    System.out.println("    show-top-transactions-expense " + TOP_TRANSACTION_OPTIONS + " - Показать крупнейшие расходы");
+                    System.out.println("    show-top-categories-income " + TOP_OPTIONS + " - Показать категории с наибольшей суммой доходов");
+                    System.out.println("    show-top-categories-expense " + TOP_OPTIONS + " - Показать категории с наибольшей суммой расходов");
+                    System.out.println("    show-top-recipients " + TOP_OPTIONS + " - Показать получателей с наибольшей суммой переводов");
+                    System.out.println("\nДаты периода указываются в формате 2024-01-31 или 2024-01-31T18:30:00, обе границы включительно.");
+                    System.out.println("Страницы нумеруются с 1; если указан только --page, на странице выводится " + DEFAULT_PAGE_SIZE + " операций.");
+                    System.out.println("Если не указан --limit, команды show-top-* выводят " + DEFAULT_TOP_SIZE + " позиций.");
+                    break;
+
+                case "register":
+                    validateAndExecute(parts, "couple", "register <username> <password>", () -> {
+                        if (authService.register(parts[1], parts[2])) {
+                            System.out.println("Пользователь зарегистрирован успешно.");
+                        } else {
+                            System.out.println("Пользователь с таким именем уже существует.");
+                        }
+                    });
+                    break;
+
+                case "login":
+                    validateAndExecute(parts, "couple", "login <username> <password>", () -> {
+                        currentUser = authService.login(parts[1], parts[2]);
+                        if (currentUser != null) {
+                            System.out.println("Вход выполнен успешно.");
+                        } else {
+                            System.out.println("Неверные учетные данные.");
+                        }
+                    });
+                    break;
+
+                case "logout":
+                    validateAndExecute(parts, "single", "logout", () -> {
+                        currentUser = null;
+                        System.out.println("Вы вышли из системы.");
+                    });
+                    break;
+
+                case "stats":
+                    if (parts.length != 1) {
+                        System.out.println("Ошибка: Команда не должна содержать аргументы. Используйте: stats");
+                    } else {
+                        System.out.println(Metrics.render());
+                        System.out.printf("Кэш отчетов: попаданий %d, промахов %d%n",
+                                financeService.getCacheHits(), financeService.getCacheMisses());
+                    }
+                    break;
+
+                case "exit":
+                    if (parts.length != 1) {
+                        System.out.println("Ошибка: Команда не должна содержать аргументы. Используйте: exit");
+                    } else {
+                        authService.saveUsers();
+                        Metrics.timer("command.exit").recordSince(started);
+                        saveStats();
+                        System.out.println("До свидания!");
+                        return false;
+                    }
+                    break;
+
+                /**
+                 * Команды для работы с кошельком
+                 */
+
+                case "add-income":
+                    validateAndExecute(parts, "couple-wallet", "add-income <category> <amount>", () -> {
+                        try {
+                            String category = parts[1];
+                            Money amount = Money.parse(parts[2]);
+                            financeService.addIncome(currentUser, category, amount);
+                            System.out.println("Доход добавлен.");
+                        } catch (NumberFormatException e) {
+                            System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 150.00");
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Ошибка: " + e.getMessage());
+                        }
+                    });
+                    break;
+
+                case "add-expense":
+                    validateAndExecute(parts, "couple-wallet", "add-expense <category> <amount>", () -> {
+                        try {
+                            String category = parts[1];
+                            Money amount = Money.parse(parts[2]);
+                            if (financeService.exceedsBudget(currentUser, category, amount)) {
+                                System.out.println("Превышен лимит бюджета для категории: " + category);
+                            }
+                            financeService.addExpense(currentUser, category, amount);
+                            System.out.println("Расход добавлен.");
+                        } catch (NumberFormatException e) {
+                            System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 200.50");
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Ошибка: " + e.getMessage());
+                        }
+                    });
+                    break;
+
+                case "set-budget":
+                    validateAndExecute(parts, "couple-wallet", "set-budget <category> <amount>", () -> {
+                        try {
+                            String category = parts[1];
+                            Money amount = Money.parse(parts[2]);
+                            financeService.setBudget(currentUser, category, amount);
+                            System.out.println("Бюджет установлен для категории \"" + category + "\".");
+                        } catch (NumberFormatException e) {
+                            System.out.println("Ошибка: Неверный формат введенного значения. Укажите число, например: 500.00");
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Ошибка: " + e.getMessage());
+                        }
+                    });
+                    break;
+
+                case "add-transfer":
+                    validateAndExecute(parts, "transfer", "add-transfer <recipientUsername> <amount> [key]", () -> {
+                        try {
+                            String recipientUsername = parts[1];
+                            Money amount = Money.parse(parts[2]);
+                            String key = parts.length > 3 ? parts[3] : null;
+
+                            // Предупреждение о бюджете выводится, только если перевод действительно проведен (не повтор по ключу)
+                            Wallet wallet = currentUser.getWallet();
+                            boolean overBudget = financeService.exceedsBudget(currentUser, Transfer.DEBIT_PREFIX + recipientUsername, amount);
+                            long version = wallet.getVersion();
+                            financeService.transfer(currentUser, recipientUsername, amount, key, authService);
+                            if (overBudget && wallet.getVersion() != version) {
+                                System.out.println("Превышен лимит бюджета для категории: " + Transfer.DEBIT_PREFIX + recipientUsername);
+                            }
+                            System.out.println("Перевод успешно выполнен.");
+                        } catch (NumberFormatException e) {
+                            System.out.println("Ошибка: Неверный формат суммы. Используйте десятичное число, например: 150.00");
+                        } catch (TransferException e) {
+                            System.out.println("Ошибка: " + e.getMessage());
+                            System.out.println("Ошибка: Не удается выполнить перевод. Проверьте наличие средств и правильность данных.");
+                        } catch (IllegalArgumentException e) {
+                            System.out.println("Ошибка: " + e.getMessage());
+                        }
+                    });
+                    break;
+
+                case "import":
+                    validateAndExecute(parts, "file", "import <file>", () -> importStatement(parts[1]));
+                    break;
+
+                case "export":
+                    validateAndExecute(parts, "format-file", "export <csv|jsonl> <file>", () -> exportHistory(parts[1], parts[2]));
+                    break;
+
+                /**
+                 * Команды для вывода общей информации
+                 */
+
+                case "show-overview":
+                    validateAndExecute(parts, "single", "show-overview",
+                            () -> System.out.println(financeService.getOverview(currentUser)));
+                    break;
+
+                case "show-balance":
+                    validateAndExecute(parts, "single", "show-balance",
+                            () -> System.out.println(financeService.getBalance(currentUser)));
+                    break;
+
+                case "show-summary":
+                    validateAndExecute(parts, "single", "show-summary",
+                            () -> System.out.println(financeService.getSummary(currentUser)));
+                    break;
+
+                case "show-budget":
+                    validateAndExecute(parts, "single", "show-budget",
+                            () -> System.out.println(financeService.getBudget(currentUser)));
+                    break;
+
+                case "show-transactions":
+                    validateAndExecute(parts, "period", "show-transactions " + LISTING_OPTIONS,
+                            () -> writeTransactions(null, parts));
+                    break;
+
+                case "show-category-budget":
+                    validateAndExecute(parts, "multiply", "show-category-budget <category1> [category2] ...", () -> {
+                        // Получаем категории из аргументов
+                        List<String> categories = Arrays.asList(Arrays.copyOfRange(parts, 1, parts.length));
+                        String result = financeService.getCategoryBudget(currentUser, categories);
+                        System.out.println(result);
+                    });
+                    break;
+
+                case "show-category-transactions":
+                    validateAndExecute(parts, "multiply", "show-category-transactions <category1> [category2] ...", () -> {
+                        // Получаем категории из аргументов
+                        List<String> categories = Arrays.asList(Arrays.copyOfRange(parts, 1, parts.length));
+                        PrintWriter out = consoleWriter();
+                        financeService.writeCategoryTransactions(currentUser, categories, out);
+                        out.flush();
+                    });
+                    break;
+
+                /**
+                 * Команды для вывода информации по доходам
+                 */
+
+                case "show-overview-income":
+                    validateAndExecute(parts, "single", "show-overview-income",
+                            () -> System.out.println(financeService.getIncomeOverview(currentUser)));
+                    break;
+
+                case "show-summary-income":
+                    validateAndExecute(parts, "period", "show-summary-income " + SUMMARY_OPTIONS,
+                            () -> writeSummary(TransactionType.INCOME, parts));
+                    break;
+
+                case "show-budget-income":
+                    validateAndExecute(parts, "single", "show-budget-income",
+                            () -> System.out.println(financeService.getIncomeBudget(currentUser)));
+                    break;
+
+                case "show-transactions-income":
+                    validateAndExecute(parts, "period", "show-transactions-income " + LISTING_OPTIONS,
+                            () -> writeTransactions(TransactionType.INCOME, parts));
+                    break;
+
+                /**
+                 * Команды для вывода информации по расходам
+                 */
+
+                case "show-overview-expense":
+                    validateAndExecute(parts, "single", "show-overview-expense",
+                            () -> System.out.println(financeService.getExpenseOverview(currentUser)));
+                    break;
+
+                case "show-summary-expense":
+                    validateAndExecute(parts, "period", "show-summary-expense " + SUMMARY_OPTIONS,
+                            () -> writeSummary(TransactionType.EXPENSE, parts));
+                    break;
+
+                case "show-budget-expense":
+                    validateAndExecute(parts, "single", "show-budget-expense",
+                            () -> System.out.println(financeService.getExpenseBudget(currentUser)));
+                    break;
+
+                case "show-transactions-expense":
+                    validateAndExecute(parts, "period", "show-transactions-expense " + LISTING_OPTIONS,
+                            () -> writeTransactions(TransactionType.EXPENSE, parts));
+                    break;
+
+                /**
+                 * Команды для поиска крупнейших операций
+                 */
+
+                case "show-top-transactions":
+                    validateAndExecute(parts, "period", "show-top-transactions " + TOP_TRANSACTION_OPTIONS,
+                            () -> writeTopTransactions(null, parts));
+                    break;
+
+                case "show-top-transactions-income":
+                    validateAndExecute(parts, "period", "show-top-transactions-income " + TOP_TRANSACTION_OPTIONS,
+                            () -> writeTopTransactions(TransactionType.INCOME, parts));
+                    break;
+
+                case "show-top-transactions-expense":
+                    validateAndExecute(parts, "period", "show-top-transactions-expense " + TOP_TRANSACTION_OPTIONS,
+                            () -> writeTopTransactions(TransactionType.EXPENSE, parts));
+                    break;
+
+                case "show-top-categories-income":
+                    validateAndExecute(parts, "period", "show-top-categories-income " + TOP_OPTIONS,
+                            () -> writeTopCategories(TransactionType.INCOME, parts));
+                    break;
+
+                case "show-top-categories-expense":
+                    validateAndExecute(parts, "period", "show-top-categories-expense " + TOP_OPTIONS,
+                            () -> writeTopCategories(TransactionType.EXPENSE, parts));
+                    break;
+
+                case "show-top-recipients":
+                    validateAndExecute(parts, "period", "show-top-recipients " + TOP_OPTIONS, () -> {
+                        ListingOptions options = parseTopOptions(parts, false);
+                        PrintWriter out = consoleWriter();
+                        financeService.writeTopRecipients(currentUser, options.from, options.to, options.limit, out);
+                        out.flush();
+                    });
+                    break;
+
+                default:
+                    metric = "unknown";
+                    System.out.println("Неизвестная команда. Введите 'help' для вывода списка команд.");
+            }
+        } catch (Exception e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        }
+        Metrics.timer("command." + metric).recordSince(started);
+        return true;
+    }
+
+    /**
+     * Сохраняет показатели производительности в формате JSON, если задан файл для них.
+     * Ошибка записи выводится в консоль и не мешает завершению работы.
+     */
+    private void saveStats() {
+        if (statsFile.isEmpty()) {
+            return;
+        }
+        try {
+            Metrics.saveJson(Path.of(statsFile));
+        } catch (IOException e) {
+            System.out.println("Не удалось сохранить статистику: " + e.getMessage());
+        }
+    }
+
     /**
      * Проверяет, залогинен ли пользователь.
      * Если нет, выводит сообщение.
@@ -296,6 +503,244 @@ public class CommandProcessor {
         return true;
     }
 
+    /**
+     * Параметры вывода списка операций: период, страница и категория.
+     */
+    private static class ListingOptions {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        int page = 1;
+        int limit = 0;
+        String category;
+    }
+
+    /**
+     * Выводит список операций текущего пользователя построчно, не формируя весь список в памяти.
+     *
+     * @param type Тип операций или null для всех операций.
+     * @param parts Введенные части команды.
+     */
+    private void writeTransactions(TransactionType type, String[] parts) {
+        ListingOptions options = parseListingOptions(parts);
+        PrintWriter out = consoleWriter();
+        financeService.writeTransactions(currentUser, type, options.from, options.to, options.page, options.limit, out);
+        out.flush();
+    }
+
+    /**
+     * Выводит крупнейшие операции текущего пользователя.
+     *
+     * @param type Тип операций или null для всех операций.
+     * @param parts Введенные части команды.
+     */
+    private void writeTopTransactions(TransactionType type, String[] parts) {
+        ListingOptions options = parseTopOptions(parts, true);
+        PrintWriter out = consoleWriter();
+        financeService.writeTopTransactions(currentUser, type, options.category, options.from, options.to, options.limit, out);
+        out.flush();
+    }
+
+    /**
+     * Выводит категории текущего пользователя с наибольшей суммой операций.
+     *
+     * @param type Тип операций.
+     * @param parts Введенные части команды.
+     */
+    private void writeTopCategories(TransactionType type, String[] parts) {
+        ListingOptions options = parseTopOptions(parts, false);
+        PrintWriter out = consoleWriter();
+        financeService.writeTopCategories(currentUser, type, options.from, options.to, options.limit, out);
+        out.flush();
+    }
+
+    /**
+     * Выводит общую сумму доходов или расходов текущего пользователя.
+     * Без параметров выводится итог по всей истории, с параметрами - сумма за период и (или) по категории.
+     *
+     * @param type Тип операций.
+     * @param parts Введенные части команды.
+     */
+    private void writeSummary(TransactionType type, String[] parts) {
+        if (parts.length == 1) {
+            System.out.println(financeService.getSummaryByType(currentUser, type));
+            return;
+        }
+        ListingOptions options = parseSummaryOptions(parts);
+        System.out.println(financeService.getSummaryByType(currentUser, type, options.category, options.from, options.to));
+    }
+
+    /**
+     * Импортирует операции из выписки CSV в кошелек текущего пользователя.
+     * Отклонённые строки выводятся по мере импорта, в конце выводятся итоги.
+     *
+     * @param file Путь к файлу выписки.
+     */
+    private void importStatement(String file) {
+        PrintWriter out = consoleWriter();
+        try {
+            ImportResult result = importService.importCsv(currentUser,
+                    Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8), out);
+            out.print(String.format("Импортировано операций: %d из %d (отклонено: %d, пакетов: %d) за %.3f с (%.0f строк/с)\n",
+                    result.getImported(), result.getRows(), result.getRejected(), result.getBatches(),
+                    result.getElapsedNanos() / 1e9, result.getRowsPerSecond()));
+        } catch (IOException | UncheckedIOException e) {
+            out.print("Ошибка: Не удалось прочитать файл выписки: " + e.getMessage() + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Выгружает историю операций текущего пользователя в файл.
+     *
+     * @param format Формат файла (csv или jsonl).
+     * @param file Путь к файлу выгрузки.
+     */
+    private void exportHistory(String format, String file) {
+        try {
+            long started = System.nanoTime();
+            long rows = exportService.exportUser(currentUser, ExportFormat.parse(format), Path.of(file));
+            System.out.printf("Выгружено операций: %d в файл %s за %.3f с%n", rows, file, (System.nanoTime() - started) / 1e9);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Ошибка: Не удалось записать файл выгрузки: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Создает буферизованный поток вывода в консоль.
+     * Поток нужно сбросить после вывода; закрывать его не требуется.
+     *
+     * @return Поток вывода в консоль.
+     */
+    private static PrintWriter consoleWriter() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset())));
+    }
+
+    /**
+     * Разбирает необязательные параметры --from, --to, --page и --limit.
+     * Обе границы периода включаются в период с точностью, с которой они указаны (день или секунда).
+     *
+     * @param parts Введенные части команды (параметры начинаются со второго элемента).
+     * @return Параметры вывода списка операций.
+     * @throws IllegalArgumentException Если указан неизвестный параметр, дата или число в неверном формате.
+     */
+    private ListingOptions parseListingOptions(String[] parts) {
+        ListingOptions options = new ListingOptions();
+        boolean pageSet = false;
+        boolean limitSet = false;
+        for (int i = 1; i + 1 < parts.length; i += 2) {
+            switch (parts[i]) {
+                case "--from" -> options.from = parseDateBound(parts[i + 1], false);
+                case "--to" -> options.to = parseDateBound(parts[i + 1], true);
+                case "--page" -> {
+                    options.page = parsePositive(parts[i], parts[i + 1]);
+                    pageSet = true;
+                }
+                case "--limit" -> {
+                    options.limit = parsePositive(parts[i], parts[i + 1]);
+                    limitSet = true;
+                }
+                default -> throw new IllegalArgumentException("Неизвестный параметр \"" + parts[i] + "\". Используйте --from, --to, --page и --limit.");
+            }
+        }
+        if (pageSet && !limitSet) {
+            options.limit = DEFAULT_PAGE_SIZE;
+        }
+        return options;
+    }
+
+    /**
+     * Разбирает необязательные параметры команд show-top-*: --from, --to, --limit и (если разрешено) --category.
+     *
+     * @param parts Введенные части команды (параметры начинаются со второго элемента).
+     * @param withCategory true, если команда принимает параметр --category.
+     * @return Параметры отбора (по умолчанию отбирается DEFAULT_TOP_SIZE позиций).
+     * @throws IllegalArgumentException Если указан неизвестный параметр, дата или число в неверном формате.
+     */
+    private ListingOptions parseTopOptions(String[] parts, boolean withCategory) {
+        ListingOptions options = new ListingOptions();
+        options.limit = DEFAULT_TOP_SIZE;
+        for (int i = 1; i + 1 < parts.length; i += 2) {
+            switch (parts[i]) {
+                case "--from" -> options.from = parseDateBound(parts[i + 1], false);
+                case "--to" -> options.to = parseDateBound(parts[i + 1], true);
+                case "--limit" -> options.limit = parsePositive(parts[i], parts[i + 1]);
+                case "--category" -> {
+                    if (!withCategory) {
+                        throw new IllegalArgumentException("Команда не принимает параметр --category. Используйте --from, --to и --limit.");
+                    }
+                    options.category = parts[i + 1];
+                }
+                default -> throw new IllegalArgumentException("Неизвестный параметр \"" + parts[i] + "\". Используйте "
+                        + (withCategory ? "--category, " : "") + "--from, --to и --limit.");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Разбирает необязательные параметры команд show-summary-*: --category, --from и --to.
+     *
+     * @param parts Введенные части команды (параметры начинаются со второго элемента).
+     * @return Параметры отбора.
+     * @throws IllegalArgumentException Если указан неизвестный параметр или дата в неверном формате.
+     */
+    private ListingOptions parseSummaryOptions(String[] parts) {
+        ListingOptions options = new ListingOptions();
+        for (int i = 1; i + 1 < parts.length; i += 2) {
+            switch (parts[i]) {
+                case "--from" -> options.from = parseDateBound(parts[i + 1], false);
+                case "--to" -> options.to = parseDateBound(parts[i + 1], true);
+                case "--category" -> options.category = parts[i + 1];
+                default -> throw new IllegalArgumentException("Неизвестный параметр \"" + parts[i] + "\". Используйте --category, --from и --to.");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Разбирает положительное целое значение параметра.
+     *
+     * @param name Название параметра.
+     * @param text Значение параметра.
+     * @return Значение параметра.
+     * @throws IllegalArgumentException Если значение не является положительным целым числом.
+     */
+    private int parsePositive(String name, String text) {
+        try {
+            int value = Integer.parseInt(text);
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Сообщение об ошибке формируется ниже
+        }
+        throw new IllegalArgumentException("Значение параметра " + name + " должно быть положительным целым числом.");
+    }
+
+    /**
+     * Преобразует дату границы периода в метку эпохи.
+     *
+     * @param text Дата в формате 2024-01-31 или 2024-01-31T18:30:00.
+     * @param end true для конца периода: возвращается начало следующего дня (или секунды).
+     * @return Время в миллисекундах от начала эпохи.
+     * @throws IllegalArgumentException Если дата указана в неверном формате.
+     */
+    private long parseDateBound(String text, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            if (text.contains("T")) {
+                LocalDateTime dateTime = LocalDateTime.parse(text);
+                return (end ? dateTime.plusSeconds(1) : dateTime).atZone(zone).toInstant().toEpochMilli();
+            }
+            LocalDate date = LocalDate.parse(text);
+            return (end ? date.plusDays(1) : date).atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Неверный формат даты \"" + text + "\". Используйте, например: 2024-01-31 или 2024-01-31T18:30:00");
+        }
+    }
+
     /**
      * Вспомогательный метод для проверки и выполнения команды.
      * Проводит валидацию на основе типов аргументов, затем выполняет переданное действие.
@@ -316,6 +761,15 @@ public class CommandProcessor {
                 }
                 break;
 
+            case "period":
+                // Случай для команд с необязательными параметрами периода --from и --to
+                if (isUserLoggedIn()) {
+                    if (parts.length % 2 == 0) {
+                        System.out.println("Ошибка: Для каждого параметра периода укажите дату. Используйте: " + usage);
+                    } else action.run();
+                }
+                break;
+
             case "multiply":
                 // Случай, когда ожидается несколько аргументов (один или более)
                 if (isUserLoggedIn()) {
@@ -349,11 +803,29 @@ public class CommandProcessor {
                 }
                 break;
 
-            case "transfer":
-                // Случай для команд с аргументами логин получателя и сумма (для перевода другому пользователю)
+            case "file":
+                // Случай для команд с одним аргументом - путем к файлу
+                if (isUserLoggedIn()) {
+                    if (parts.length != 2) {
+                        System.out.println("Ошибка: Укажите путь к файлу (без пробелов). Используйте: " + usage);
+                    } else action.run();
+                }
+                break;
+
+            case "format-file":
+                // Случай для команд с аргументами формата и пути к файлу
                 if (isUserLoggedIn()) {
                     if (parts.length != 3) {
-                        System.out.println("Ошибка: Команда должна содержать логин получателя и сумму. Используйте: " + usage);
+                        System.out.println("Ошибка: Укажите формат (csv или jsonl) и путь к файлу (без пробелов). Используйте: " + usage);
+                    } else action.run();
+                }
+                break;
+
+            case "transfer":
+                // Случай для команд с аргументами логин получателя, сумма и необязательный ключ идемпотентности
+                if (isUserLoggedIn()) {
+                    if (parts.length != 3 && parts.length != 4) {
+                        System.out.println("Ошибка: Команда должна содержать логин получателя, сумму и, при необходимости, ключ перевода. Используйте: " + usage);
                     } else action.run();
                 }
                 break;
@@ -0,0 +1,409 @@
+package workload;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import models.Money;
+import models.User;
+import services.AuthService;
+import services.FinanceService;
+import services.TransferException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Генератор синтетической нагрузки для длительных (soak) испытаний и подготовки больших наборов данных.
+ * Регистрирует пользователей через AuthService и выполняет через FinanceService случайную смесь операций:
+ * доходы, расходы, бюджеты, переводы и отчеты. После каждой операции журнал фиксируется, как после команды.
+ *
+ * Случайные значения берутся из генератора с заданным начальным числом: при одном потоке и пустом
+ * каталоге данных последовательность операций, пользователей, категорий и сумм воспроизводится точно
+ * (отличается только время транзакций). Каждый поток получает собственный генератор, выделенный
+ * из общего, поэтому при нескольких потоках воспроизводится последовательность каждого потока.
+ *
+ * Во время работы каждые REPORT_INTERVAL_SECONDS секунд выводятся количество операций, скорость за интервал,
+ * занятая куча и размер каталога данных, а по итогам - скорость и перцентили длительности по видам операций
+ * (гистограммы workload.* реестра Metrics). Предупреждения и ошибки, которые сервисы выводят в консоль
+ * (например, о превышении бюджета), на время нагрузки подавляются; отклонённые операции подсчитываются.
+ */
+public class Workload {
+    /**
+     * Смесь операций по умолчанию (веса в процентах).
+     */
+    public static final String DEFAULT_MIX = "income=20,expense=40,budget=5,transfer=15,report=20";
+
+    /**
+     * Интервал вывода промежуточных показателей в секундах.
+     */
+    public static final int REPORT_INTERVAL_SECONDS = 10;
+
+    private static final String PASSWORD = "password";
+    private static final long INITIAL_INCOME_MINOR = 100_000_00L;
+    private static final List<String> INCOME_CATEGORIES = List.of("Зарплата", "Премия", "Проценты", "Подработка");
+    private static final List<String> EXPENSE_CATEGORIES = List.of("Продукты", "Транспорт", "Кафе", "Развлечения",
+            "Коммунальные услуги", "Здоровье", "Одежда", "Связь");
+
+    /**
+     * Перечисление видов операций нагрузки.
+     */
+    public enum Operation {
+        INCOME, EXPENSE, BUDGET, TRANSFER, REPORT;
+
+        private final LatencyHistogram timer = Metrics.timer("workload." + name().toLowerCase());
+    }
+
+    private final int users;
+    private final long seed;
+    private final Operation[] mix;
+    private final int threads;
+    private final long operations;
+    private final int seconds;
+    private final LongAdder completed;
+    private final LongAdder rejected;
+
+    /**
+     * Конструктор для создания генератора нагрузки.
+     *
+     * @param users Количество пользователей.
+     * @param seed Начальное число генератора случайных значений.
+     * @param mix Смесь операций вида "income=20,expense=40,...": вид операции и её вес.
+     * @param threads Количество потоков нагрузки.
+     * @param operations Общее количество операций (0 - без ограничения, до истечения времени).
+     * @param seconds Длительность нагрузки в секундах (0 - без ограничения, до выполнения всех операций).
+     * @throws IllegalArgumentException Если параметры не положительны, не задано ни количество операций,
+     *                                  ни длительность, или смесь операций записана неверно.
+     */
+    public Workload(int users, long seed, String mix, int threads, long operations, int seconds) {
+        if (users < 2 || threads < 1 || operations < 0 || seconds < 0) {
+            throw new IllegalArgumentException("Нужно не меньше двух пользователей и одного потока, количество операций и длительность не могут быть отрицательными.");
+        }
+        if (operations == 0 && seconds == 0) {
+            throw new IllegalArgumentException("Укажите количество операций или длительность нагрузки.");
+        }
+        this.users = users;
+        this.seed = seed;
+        this.mix = parseMix(mix);
+        this.threads = threads;
+        this.operations = operations;
+        this.seconds = seconds;
+        this.completed = new LongAdder();
+        this.rejected = new LongAdder();
+    }
+
+    /**
+     * Разбирает смесь операций в таблицу выбора: каждая операция занимает в таблице столько ячеек,
+     * каков её вес, поэтому выбор операции - одно случайное число.
+     *
+     * @param mix Смесь операций вида "income=20,expense=40,...".
+     * @return Таблица выбора операций.
+     * @throws IllegalArgumentException Если смесь записана неверно или сумма весов равна нулю.
+     */
+    private static Operation[] parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            try {
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException();
+                }
+                Operation operation = Operation.valueOf(pair[0].trim().toUpperCase());
+                int weight = Integer.parseInt(pair[1].trim());
+                if (weight < 0) {
+                    throw new IllegalArgumentException();
+                }
+                weights.put(operation, weight);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неверная смесь операций \"" + mix
+                        + "\". Используйте веса операций income, expense, budget, transfer и report, например: " + DEFAULT_MIX);
+            }
+        }
+
+        List<Operation> table = new ArrayList<>();
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            for (int i = 0; i < weight.getValue(); i++) {
+                table.add(weight.getKey());
+            }
+        }
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("Сумма весов операций должна быть положительной.");
+        }
+        return table.toArray(new Operation[0]);
+    }
+
+    /**
+     * Выполняет нагрузку: регистрирует недостающих пользователей (с начальным доходом),
+     * затем выполняет операции в заданном количестве потоков.
+     * Пользователи, уже зарегистрированные в каталоге данных, используются повторно.
+     *
+     * @param authService Сервис аутентификации, открытый на каталоге данных.
+     * @param financeService Финансовый сервис.
+     * @param dataDir Каталог данных (для измерения его размера).
+     * @param progress Поток вывода промежуточных показателей.
+     * @return Текст итогового отчета.
+     * @throws InterruptedException Исключение, если ожидание потоков нагрузки было прервано.
+     */
+    public String run(AuthService authService, FinanceService financeService, Path dataDir, PrintStream progress)
+            throws InterruptedException {
+        SplittableRandom root = new SplittableRandom(seed);
+        long heapBefore = usedHeapAfterGc();
+        long dataBefore = dataSize(dataDir);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "workload-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long started = System.nanoTime();
+        try {
+            long prepareStarted = System.nanoTime();
+            User[] accounts = prepareUsers(authService, financeService, root);
+            progress.printf("Пользователи подготовлены: %d за %.1f с%n", users, (System.nanoTime() - prepareStarted) / 1e9);
+
+            started = System.nanoTime();
+            long[] last = {0, started};
+            long startedAt = started;
+            reporter.scheduleAtFixedRate(() -> {
+                long now = System.nanoTime();
+                long done = completed.sum();
+                progress.printf("%6.0f с: операций %d (%.0f оп/с), куча %.1f МБ, данные %.1f МБ%n",
+                        (now - startedAt) / 1e9, done, (done - last[0]) / ((now - last[1]) / 1e9),
+                        usedHeap() / 1e6, dataSize(dataDir) / 1e6);
+                last[0] = done;
+                last[1] = now;
+            }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+            long deadline = seconds > 0 ? started + seconds * 1_000_000_000L : Long.MAX_VALUE;
+            AtomicReference<RuntimeException> failure = new AtomicReference<>();
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long share = operations == 0 ? Long.MAX_VALUE : operations / threads + (t < operations % threads ? 1 : 0);
+                SplittableRandom random = root.split();
+                Thread worker = new Thread(() -> {
+                    try {
+                        drive(authService, financeService, accounts, random, share, deadline);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }, "workload-" + t);
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        } finally {
+            reporter.shutdownNow();
+            System.setOut(console);
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        return report(elapsed, heapBefore, usedHeapAfterGc(), dataBefore, dataSize(dataDir));
+    }
+
+    /**
+     * Регистрирует пользователей user0 ... userN-1 и зачисляет новым пользователям начальный доход.
+     *
+     * @param authService Сервис аутентификации.
+     * @param financeService Финансовый сервис.
+     * @param random Генератор случайных значений.
+     * @return Пользователи.
+     */
+    private User[] prepareUsers(AuthService authService, FinanceService financeService, SplittableRandom random) {
+        User[] accounts = new User[users];
+        for (int i = 0; i < users; i++) {
+            String username = "user" + i;
+            boolean created = authService.register(username, PASSWORD);
+            accounts[i] = authService.getUser(username);
+            if (accounts[i] == null) {
+                throw new IllegalStateException("Не удалось загрузить пользователя " + username + ".");
+            }
+            if (created) {
+                financeService.addIncome(accounts[i], pick(random, INCOME_CATEGORIES), Money.ofMinor(INITIAL_INCOME_MINOR));
+            }
+        }
+        authService.commit();
+        return accounts;
+    }
+
+    /**
+     * Выполняет операции одного потока до исчерпания его доли или истечения времени.
+     *
+     * @param authService Сервис аутентификации.
+     * @param financeService Финансовый сервис.
+     * @param accounts Пользователи.
+     * @param random Генератор случайных значений потока.
+     * @param share Количество операций потока.
+     * @param deadline Момент окончания нагрузки (System.nanoTime()).
+     */
+    private void drive(AuthService authService, FinanceService financeService, User[] accounts,
+                       SplittableRandom random, long share, long deadline) {
+        for (long i = 0; i < share && System.nanoTime() < deadline; i++) {
+            Operation operation = mix[random.nextInt(mix.length)];
+            int from = random.nextInt(accounts.length);
+            User user = accounts[from];
+            long started = System.nanoTime();
+            try {
+                switch (operation) {
+                    case INCOME -> financeService.addIncome(user, pick(random, INCOME_CATEGORIES), amount(random, 1_000_00));
+                    case EXPENSE -> financeService.addExpense(user, pick(random, EXPENSE_CATEGORIES), amount(random, 200_00));
+                    case BUDGET -> financeService.setBudget(user, pick(random, EXPENSE_CATEGORIES), amount(random, 50_000_00));
+                    case TRANSFER -> {
+                        // Получатель выбирается среди остальных пользователей
+                        int to = random.nextInt(accounts.length - 1);
+                        User recipient = accounts[to >= from ? to + 1 : to];
+                        financeService.transfer(user, recipient.getUsername(), amount(random, 100_00), null, authService);
+                    }
+                    case REPORT -> {
+                        switch (random.nextInt(3)) {
+                            case 0 -> financeService.getSummary(user);
+                            case 1 -> financeService.getBudget(user);
+                            default -> financeService.getOverview(user);
+                        }
+                    }
+                }
+            } catch (IllegalArgumentException | ArithmeticException | TransferException e) {
+                // Например, расход сверх баланса: операция отклонена, нагрузка продолжается
+                rejected.increment();
+            }
+            if (operation != Operation.REPORT) {
+                authService.commit();
+            }
+            operation.timer.recordSince(started);
+            completed.increment();
+        }
+    }
+
+    /**
+     * Возвращает случайную сумму от 0.01 до указанной.
+     *
+     * @param random Генератор случайных значений.
+     * @param maxMinor Наибольшая сумма в копейках.
+     * @return Сумма.
+     */
+    private static Money amount(SplittableRandom random, long maxMinor) {
+        return Money.ofMinor(1 + random.nextLong(maxMinor));
+    }
+
+    /**
+     * Возвращает случайный элемент списка.
+     *
+     * @param random Генератор случайных значений.
+     * @param values Список.
+     * @return Элемент списка.
+     */
+    private static String pick(SplittableRandom random, List<String> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    /**
+     * Формирует итоговый отчет.
+     *
+     * @param elapsed Длительность нагрузки в секундах.
+     * @param heapBefore Занятая куча до нагрузки (после сборки мусора).
+     * @param heapAfter Занятая куча после нагрузки (после сборки мусора).
+     * @param dataBefore Размер каталога данных до нагрузки.
+     * @param dataAfter Размер каталога данных после нагрузки.
+     * @return Текст отчета.
+     */
+    private String report(double elapsed, long heapBefore, long heapAfter, long dataBefore, long dataAfter) {
+        StringBuilder text = new StringBuilder();
+        long done = completed.sum();
+        text.append(String.format("Нагрузка: %d пользователей, %d потоков, начальное число %d, смесь %s%n",
+                users, threads, seed, describeMix()));
+        text.append(String.format("Выполнено операций: %d за %.1f с (%.0f оп/с), отклонено: %d%n",
+                done, elapsed, done / elapsed, rejected.sum()));
+        text.append(String.format("Куча после сборки мусора: %.1f МБ -> %.1f МБ (%+.1f МБ)%n",
+                heapBefore / 1e6, heapAfter / 1e6, (heapAfter - heapBefore) / 1e6));
+        text.append(String.format("Каталог данных: %.1f МБ -> %.1f МБ%n", dataBefore / 1e6, dataAfter / 1e6));
+        text.append(String.format("%n%-10s %10s %10s %10s %10s %10s %10s%n",
+                "Операция", "Количество", "оп/с", "p50, мс", "p99, мс", "p99.9, мс", "max, мс"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram timer = operation.timer;
+            if (timer.getCount() == 0) {
+                continue;
+            }
+            text.append(String.format("%-10s %10d %10.0f %10.3f %10.3f %10.3f %10.3f%n",
+                    operation.name().toLowerCase(), timer.getCount(), timer.getCount() / elapsed,
+                    timer.getPercentileNanos(50) / 1e6, timer.getPercentileNanos(99) / 1e6,
+                    timer.getPercentileNanos(99.9) / 1e6, timer.getMaxNanos() / 1e6));
+        }
+        text.setLength(text.length() - System.lineSeparator().length());
+        return text.toString();
+    }
+
+    /**
+     * Описывает смесь операций в том же виде, в котором она задается.
+     *
+     * @return Смесь операций вида "income=20,expense=40,...".
+     */
+    private String describeMix() {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (Operation operation : mix) {
+            weights.merge(operation, 1, Integer::sum);
+        }
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            text.append(text.isEmpty() ? "" : ",").append(weight.getKey().name().toLowerCase()).append('=').append(weight.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Возвращает занятую часть кучи.
+     *
+     * @return Занятая куча в байтах.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Возвращает занятую часть кучи после сборки мусора, то есть объем удерживаемых данных.
+     *
+     * @return Занятая куча в байтах.
+     */
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return usedHeap();
+    }
+
+    /**
+     * Возвращает суммарный размер файлов каталога данных (индекс, сегменты пользователей и журнал).
+     *
+     * @param dataDir Каталог данных.
+     * @return Размер в байтах.
+     */
+    private static long dataSize(Path dataDir) {
+        try (Stream<Path> files = Files.walk(dataDir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    // Файл мог быть удалён фоновым сохранением во время обхода
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+}